@@ -252,6 +252,22 @@ public class Configuration  {
         return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_TIMEOUT.getKey());
     }
 
+    public int getNetworkMaxConnections() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_MAX_CONNECTIONS.getKey());
+    }
+
+    public int getNetworkMaxConnectionsPerRoute() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_MAX_CONNECTIONS_PER_ROUTE.getKey());
+    }
+
+    public int getNetworkKeepAlive() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_KEEP_ALIVE.getKey());
+    }
+
+    public int getNetworkIdleTimeout() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_IDLE_TIMEOUT.getKey());
+    }
+
     public int getNetworkCacheTimeInMillis() {
         return Integer.parseInt(ConfigurationOption.NETWORK_CACHE_TIME_IN_MILLIS.getDefaultValue());
     }
@@ -168,6 +168,34 @@ public enum ConfigurationOption implements ConfigOptionDef {
             Integer.class,
             false),
 
+    NETWORK_MAX_CONNECTIONS(
+            "duniter4j.network.maxConnections",
+            n("duniter4j.config.option.network.maxConnections.description"),
+            "100",
+            Integer.class,
+            false),
+
+    NETWORK_MAX_CONNECTIONS_PER_ROUTE(
+            "duniter4j.network.maxConnectionsPerRoute",
+            n("duniter4j.config.option.network.maxConnectionsPerRoute.description"),
+            "10",
+            Integer.class,
+            false),
+
+    NETWORK_KEEP_ALIVE(
+            "duniter4j.network.keepAlive",
+            n("duniter4j.config.option.network.keepAlive.description"),
+            "5000", // = 5 s (when the server send no Keep-Alive header)
+            Integer.class,
+            false),
+
+    NETWORK_IDLE_TIMEOUT(
+            "duniter4j.network.idleTimeout",
+            n("duniter4j.config.option.network.idleTimeout.description"),
+            "30000", // = 30 s
+            Integer.class,
+            false),
+
     NETWORK_CACHE_TIME_IN_MILLIS (
             "ucoin.network.cacheTimeInMillis",
             "ucoin.config.option.network.cacheTimeInMillis.description",
@@ -485,6 +485,8 @@ public class BlockchainBlock implements Serializable {
 
         private String[] outputs;
 
+        private String hash;
+
         public String[] getSignatures() {
             return signatures;
         }
@@ -541,6 +543,17 @@ public class BlockchainBlock implements Serializable {
             this.outputs = outputs;
         }
 
+        /**
+         * @return the transaction hash (as sent by the node, could be null)
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
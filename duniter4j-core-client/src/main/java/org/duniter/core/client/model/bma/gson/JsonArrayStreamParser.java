@@ -0,0 +1,163 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Split a JSON array of objects, while reading a stream, without deserialize (or copy) each item.
+ * The stream content is read once, into a byte buffer, and each object is given to the handler
+ * as a slice of this buffer.
+ * <br/>
+ * Braces inside strings (and escaped quotes) are ignored. Works on UTF-8 bytes, as JSON structural
+ * characters are never part of a multi-byte character.
+ */
+public class JsonArrayStreamParser {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    public interface ValueHandler {
+        /**
+         * Called for each object of the array. The bytes array should not be modified.
+         * @param bytes the buffer (could be shared with other values)
+         * @param offset start of the object, in the buffer
+         * @param length length of the object
+         */
+        void onValue(byte[] bytes, int offset, int length);
+    }
+
+    /**
+     * @return the number of values found
+     */
+    public int parse(InputStream is, ValueHandler handler) throws IOException, JsonParseException {
+        return parse(is, -1, handler);
+    }
+
+    /**
+     * @param expectedLength the stream length, if known (e.g. the HTTP Content-Length), or -1
+     * @return the number of values found
+     */
+    public int parse(InputStream is, long expectedLength, ValueHandler handler) throws IOException, JsonParseException {
+        byte[] buffer = new byte[expectedLength > 0 && expectedLength < Integer.MAX_VALUE
+                ? (int)expectedLength + 1 /*+1 to detect the end of stream without resizing*/
+                : DEFAULT_BUFFER_SIZE];
+        int length = 0; // bytes in buffer
+        int position = 0; // next byte to scan
+
+        int count = 0;
+        int depth = 0; // 0 = outside the array
+        int valueStart = -1;
+        boolean inString = false;
+        boolean escaped = false;
+
+        int read;
+        while (true) {
+            // Buffer is full: use a new one, with only the pending value.
+            // Slices already given to the handler keep the previous array
+            if (length == buffer.length) {
+                int keepFrom = valueStart != -1 ? valueStart : position;
+                byte[] newBuffer = new byte[(length - keepFrom) * 2 > buffer.length ? buffer.length * 2 : buffer.length];
+                System.arraycopy(buffer, keepFrom, newBuffer, 0, length - keepFrom);
+                length -= keepFrom;
+                position -= keepFrom;
+                if (valueStart != -1) valueStart = 0;
+                buffer = newBuffer;
+            }
+
+            read = is.read(buffer, length, buffer.length - length);
+            if (read == -1) break;
+            length += read;
+
+            for (; position < length; position++) {
+                byte b = buffer[position];
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    }
+                    else if (b == '\\') {
+                        escaped = true;
+                    }
+                    else if (b == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+
+                switch (b) {
+                    case '"':
+                        if (depth < 2) {
+                            throw new JsonParseException("unexpected string at " + position + ": only objects are expected in the array");
+                        }
+                        inString = true;
+                        break;
+                    case '[':
+                        if (depth == 0) {
+                            depth = 1; // start of the array
+                        }
+                        else if (depth == 1) {
+                            throw new JsonParseException("unexpected '[' at " + position + ": only objects are expected in the array");
+                        }
+                        break;
+                    case ']':
+                        if (depth == 1) {
+                            depth = 0; // end of the array
+                        }
+                        else if (depth == 0) {
+                            throw new JsonParseException("unexpected ']' at " + position);
+                        }
+                        break;
+                    case '{':
+                        if (depth == 0) {
+                            throw new JsonParseException("unexpected '{' at " + position + ": a JSON array is expected");
+                        }
+                        if (depth == 1) {
+                            valueStart = position;
+                        }
+                        depth++;
+                        break;
+                    case '}':
+                        if (depth <= 1) {
+                            throw new JsonParseException("unexpected '}' at " + position);
+                        }
+                        depth--;
+                        if (depth == 1) {
+                            handler.onValue(buffer, valueStart, position - valueStart + 1);
+                            valueStart = -1;
+                            count++;
+                        }
+                        break;
+                    default:
+                        // skip
+                }
+            }
+        }
+
+        if (depth != 0 || inString) {
+            throw new JsonParseException("unexpected end of JSON array");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,367 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.JsonParseException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read some top-level attributes of a block JSON, in a single forward scan.
+ * The scan stops as soon as all requested attributes have been found.
+ * Nested objects and arrays are skipped, so an attribute with the same name inside them will never match.
+ * <br/>
+ * This class is thread-safe.
+ */
+public class JsonBlockHeaderParser {
+
+    public enum Field {
+        NUMBER("number"),
+        CURRENCY("currency"),
+        HASH("hash"),
+        PREVIOUS_HASH("previousHash"),
+        ISSUER("issuer"),
+        MEDIAN_TIME("medianTime"),
+        INNER_HASH("inner_hash"),
+        NONCE("nonce"),
+        SIGNATURE("signature");
+
+        private final byte[] name;
+
+        Field(String name) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Block header attributes. Not found (or not requested) attributes are null, or -1 for numbers.
+     */
+    public static class Header {
+        private int number = -1;
+        private String currency;
+        private String hash;
+        private String previousHash;
+        private String issuer;
+        private long medianTime = -1;
+        private String innerHash;
+        private long nonce = -1;
+        private String signature;
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getPreviousHash() {
+            return previousHash;
+        }
+
+        public String getIssuer() {
+            return issuer;
+        }
+
+        public long getMedianTime() {
+            return medianTime;
+        }
+
+        public String getInnerHash() {
+            return innerHash;
+        }
+
+        public long getNonce() {
+            return nonce;
+        }
+
+        public String getSignature() {
+            return signature;
+        }
+    }
+
+    private final Field[] fields;
+    private final int fieldsMask;
+
+    /**
+     * Create a parser for all header fields
+     */
+    public JsonBlockHeaderParser() {
+        this(Field.values());
+    }
+
+    public JsonBlockHeaderParser(Field... fields) {
+        if (fields == null || fields.length == 0) {
+            throw new IllegalArgumentException("At least one field is required");
+        }
+        this.fields = fields;
+        int mask = 0;
+        for (Field field: fields) {
+            mask |= 1 << field.ordinal();
+        }
+        this.fieldsMask = mask;
+    }
+
+    public Header parse(String json) throws JsonParseException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    public Header parse(byte[] bytes, int offset, int length) throws JsonParseException {
+        final int end = offset + length;
+        Header header = new Header();
+
+        int i = skipWhitespaces(bytes, offset, end);
+        if (i >= end || bytes[i] != '{') {
+            throw new JsonParseException("JSON object expected");
+        }
+        i++;
+
+        int foundMask = 0;
+        while (true) {
+            i = skipWhitespaces(bytes, i, end);
+            if (i >= end) {
+                throw new JsonParseException("unexpected end of JSON object");
+            }
+            byte b = bytes[i];
+            if (b == '}') {
+                return header;
+            }
+            if (b == ',') {
+                i++;
+                continue;
+            }
+            if (b != '"') {
+                throw new JsonParseException("unexpected character at " + (i - offset));
+            }
+
+            // Read the attribute name
+            int nameStart = i + 1;
+            i = skipString(bytes, i, end);
+            int nameLength = i - 1 - nameStart;
+
+            i = skipWhitespaces(bytes, i, end);
+            if (i >= end || bytes[i] != ':') {
+                throw new JsonParseException("':' expected at " + (i - offset));
+            }
+            i = skipWhitespaces(bytes, i + 1, end);
+
+            // Read (or skip) the value
+            int valueStart = i;
+            i = skipValue(bytes, i, end);
+            Field field = getField(bytes, nameStart, nameLength);
+            if (field != null) {
+                setValue(header, field, bytes, valueStart, i);
+                foundMask |= 1 << field.ordinal();
+                if (foundMask == fieldsMask) {
+                    return header;
+                }
+            }
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    private Field getField(byte[] bytes, int offset, int length) {
+        for (Field field: fields) {
+            if (field.name.length != length) continue;
+            boolean same = true;
+            for (int j = 0; j < length && same; j++) {
+                same = bytes[offset + j] == field.name[j];
+            }
+            if (same) return field;
+        }
+        return null;
+    }
+
+    private void setValue(Header header, Field field, byte[] bytes, int start, int end) {
+        switch (field) {
+            case NUMBER:
+                header.number = (int)readLong(bytes, start, end);
+                break;
+            case MEDIAN_TIME:
+                header.medianTime = readLong(bytes, start, end);
+                break;
+            case CURRENCY:
+                header.currency = readString(bytes, start, end);
+                break;
+            case HASH:
+                header.hash = readString(bytes, start, end);
+                break;
+            case PREVIOUS_HASH:
+                header.previousHash = readString(bytes, start, end);
+                break;
+            case ISSUER:
+                header.issuer = readString(bytes, start, end);
+                break;
+            case INNER_HASH:
+                header.innerHash = readString(bytes, start, end);
+                break;
+            case NONCE:
+                header.nonce = readLong(bytes, start, end);
+                break;
+            case SIGNATURE:
+                header.signature = readString(bytes, start, end);
+                break;
+        }
+    }
+
+    private static long readLong(byte[] bytes, int start, int end) {
+        if (isNull(bytes, start, end)) return -1;
+        int i = start;
+        boolean negative = bytes[i] == '-';
+        if (negative) i++;
+        if (i >= end) {
+            throw new JsonParseException("number expected at " + start);
+        }
+        long result = 0;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b < '0' || b > '9') {
+                // Decimal part or exponent: not expected for these fields
+                throw new JsonParseException("integer expected at " + start);
+            }
+            result = result * 10 + (b - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    private static String readString(byte[] bytes, int start, int end) {
+        if (isNull(bytes, start, end)) return null;
+        if (bytes[start] != '"') {
+            throw new JsonParseException("string expected at " + start);
+        }
+        boolean hasEscape = false;
+        for (int i = start + 1; i < end - 1 && !hasEscape; i++) {
+            hasEscape = bytes[i] == '\\';
+        }
+        String value = new String(bytes, start + 1, end - start - 2, StandardCharsets.UTF_8);
+        return hasEscape ? unescape(value) : value;
+    }
+
+    private static boolean isNull(byte[] bytes, int start, int end) {
+        return end - start == 4 && bytes[start] == 'n' && bytes[start + 1] == 'u' && bytes[start + 2] == 'l' && bytes[start + 3] == 'l';
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 >= value.length()) {
+                sb.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch (next) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 >= value.length()) {
+                        throw new JsonParseException("invalid unicode escape sequence");
+                    }
+                    sb.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(next); // '"', '\\', '/'
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int skipWhitespaces(byte[] bytes, int i, int end) {
+        while (i < end && (bytes[i] == ' ' || bytes[i] == '\n' || bytes[i] == '\r' || bytes[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @param i position of the opening quote
+     * @return the position after the closing quote
+     */
+    private static int skipString(byte[] bytes, int i, int end) {
+        for (i++; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '\\') {
+                i++; // skip the escaped character
+            }
+            else if (b == '"') {
+                return i + 1;
+            }
+        }
+        throw new JsonParseException("unexpected end of JSON string");
+    }
+
+    /**
+     * @return the position after the value
+     */
+    private static int skipValue(byte[] bytes, int i, int end) {
+        if (i >= end) {
+            throw new JsonParseException("unexpected end of JSON object");
+        }
+        byte b = bytes[i];
+
+        // String
+        if (b == '"') {
+            return skipString(bytes, i, end);
+        }
+
+        // Object or array: skip nested values
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            for (; i < end; i++) {
+                b = bytes[i];
+                if (b == '"') {
+                    i = skipString(bytes, i, end) - 1;
+                }
+                else if (b == '{' || b == '[') {
+                    depth++;
+                }
+                else if (b == '}' || b == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+            }
+            throw new JsonParseException("unexpected end of JSON object");
+        }
+
+        // Number, boolean or null
+        while (i < end) {
+            b = bytes[i];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,42 @@
+package org.duniter.core.client.service;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.duniter.core.beans.Service;
+import org.duniter.core.client.model.local.Peer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking requests, with the same response handling as {@link HttpService}.
+ * Responses are parsed, and futures completed, by a dedicated executor (never by the I/O threads of the HTTP client).
+ */
+public interface AsyncHttpService extends Service {
+
+    <T> CompletableFuture<T> executeRequestAsync(HttpUriRequest request, Class<? extends T> resultClass);
+
+    <T> CompletableFuture<T> executeRequestAsync(HttpUriRequest request, Class<? extends T> resultClass, Class<?> errorClass);
+
+    <T> CompletableFuture<T> executeRequestAsync(Peer peer, String absolutePath, Class<? extends T> resultClass);
+}
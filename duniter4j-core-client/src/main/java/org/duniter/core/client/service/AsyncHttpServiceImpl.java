@@ -0,0 +1,251 @@
+package org.duniter.core.client.service;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.duniter.core.beans.InitializingBean;
+import org.duniter.core.client.config.Configuration;
+import org.duniter.core.client.model.bma.Error;
+import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.client.service.exception.HttpConnectException;
+import org.duniter.core.exception.TechnicalException;
+import org.nuiton.i18n.I18n;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP requests, using an async HTTP client (one I/O reactor, and a connection pool
+ * with the same limits as the blocking client).
+ * Responses are handled by the blocking {@link HttpServiceImpl} (same status checks, parsing and exceptions),
+ * on a small executor, so that the I/O reactor thread never parses JSON. This executor also evicts idle
+ * connections of the async pool.
+ */
+public class AsyncHttpServiceImpl implements AsyncHttpService, InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncHttpServiceImpl.class);
+
+    protected HttpServiceImpl httpService;
+    protected CloseableHttpAsyncClient httpAsyncClient;
+    protected PoolingNHttpClientConnectionManager asyncConnectionManager;
+    protected ScheduledThreadPoolExecutor executor;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        HttpService httpService = ServiceLocator.instance().getHttpService();
+        if (!(httpService instanceof HttpServiceImpl)) {
+            throw new TechnicalException(String.format("Unable to start the async HTTP client: an instance of [%s] is required, but got [%s]",
+                    HttpServiceImpl.class.getName(), httpService.getClass().getName()));
+        }
+        this.httpService = (HttpServiceImpl) httpService;
+        this.executor = createExecutor();
+        this.httpAsyncClient = createHttpAsyncClient();
+        startEviction();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (httpAsyncClient != null) {
+            httpAsyncClient.close();
+            httpAsyncClient = null;
+        }
+        if (asyncConnectionManager != null) {
+            asyncConnectionManager.shutdown();
+            asyncConnectionManager = null;
+        }
+        // The blocking service is closed by its owner
+        httpService = null;
+    }
+
+    public <T> CompletableFuture<T> executeRequestAsync(HttpUriRequest request, Class<? extends T> resultClass) {
+        return executeRequestAsync(request, resultClass, Error.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeRequestAsync(HttpUriRequest request, Class<? extends T> resultClass, Class<?> errorClass) {
+        final HttpServiceImpl httpService = this.httpService;
+        return executeRequestAsync(request, response -> (T) httpService.parseResponse(response, resultClass), errorClass);
+    }
+
+    public <T> CompletableFuture<T> executeRequestAsync(Peer peer, String absolutePath, Class<? extends T> resultClass) {
+        HttpGet httpGet = new HttpGet(httpService.getPath(peer, absolutePath));
+        return executeRequestAsync(httpGet, resultClass);
+    }
+
+    /**
+     * @return statistics of the async connection pool
+     */
+    public PoolStats getAsyncPoolStats() {
+        return asyncConnectionManager != null ? asyncConnectionManager.getTotalStats() : null;
+    }
+
+    /* -- Internal methods -- */
+
+    /**
+     * Create the executor used to handle responses (one thread per processor)
+     */
+    protected ScheduledThreadPoolExecutor createExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ScheduledThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "duniter4j-http-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    protected CloseableHttpAsyncClient createHttpAsyncClient() {
+        Configuration config = Configuration.instance();
+        int timeout = config.getNetworkTimeout();
+        try {
+            IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                    .setConnectTimeout(timeout)
+                    .setSoTimeout(timeout)
+                    .build();
+            asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        }
+        catch(IOReactorException e) {
+            throw new TechnicalException("Unable to start the async HTTP client: " + e.getMessage(), e);
+        }
+        asyncConnectionManager.setMaxTotal(config.getNetworkMaxConnections());
+        asyncConnectionManager.setDefaultMaxPerRoute(config.getNetworkMaxConnectionsPerRoute());
+
+        CloseableHttpAsyncClient httpAsyncClient = HttpAsyncClients.custom()
+                .setConnectionManager(asyncConnectionManager)
+                .setDefaultRequestConfig(httpService.getRequestConfig())
+                .setKeepAliveStrategy(httpService.getKeepAliveStrategy())
+                .build();
+        httpAsyncClient.start();
+        return httpAsyncClient;
+    }
+
+    /**
+     * Close expired and idle connections of the async pool, in background (the blocking service evicts its own pool)
+     */
+    protected void startEviction() {
+        final long idleTimeout = Configuration.instance().getNetworkIdleTimeout();
+        executor.scheduleWithFixedDelay(() -> evictConnections(idleTimeout),
+                HttpServiceImpl.EVICTION_INTERVAL, HttpServiceImpl.EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    protected void evictConnections(long idleTimeout) {
+        PoolingNHttpClientConnectionManager asyncConnectionManager = this.asyncConnectionManager;
+        if (asyncConnectionManager == null) return;
+        asyncConnectionManager.closeExpiredConnections();
+        asyncConnectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    protected <T> CompletableFuture<T> executeRequestAsync(final HttpUriRequest request, final HttpServiceImpl.ResponseParser<T> responseParser, final Class<?> errorClass) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final HttpServiceImpl httpService = this.httpService;
+        final ScheduledThreadPoolExecutor executor = this.executor;
+        if (httpAsyncClient == null || httpService == null || executor == null) {
+            result.completeExceptionally(new IllegalStateException("Async HTTP client is closed"));
+            return result;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Executing async request : " + request.getRequestLine());
+        }
+
+        Future<HttpResponse> future = httpAsyncClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                // Handle the response outside the I/O reactor thread
+                try {
+                    executor.execute(() -> {
+                        try {
+                            result.complete(httpService.handleResponse(request, response, responseParser, errorClass));
+                        }
+                        catch(IOException e) {
+                            result.completeExceptionally(new TechnicalException(e.getMessage(), e));
+                        }
+                        catch(RuntimeException e) {
+                            result.completeExceptionally(e);
+                        }
+                    });
+                }
+                catch(RejectedExecutionException e) {
+                    result.completeExceptionally(new IllegalStateException("Async HTTP client is closed"));
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.completeExceptionally(toRequestException(request, e));
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+
+        // Abort the request, if the caller cancels the result
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Convert a request failure, the same way as blocking requests
+     */
+    protected RuntimeException toRequestException(HttpUriRequest request, Exception e) {
+        if (e instanceof ConnectException) {
+            return new HttpConnectException(I18n.t("duniter4j.client.core.connect", request.toString()), e);
+        }
+        if (e instanceof SocketTimeoutException) {
+            return new TechnicalException(I18n.t("duniter4j.client.core.timeout"), e);
+        }
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        return new TechnicalException(e.getMessage(), e);
+    }
+}
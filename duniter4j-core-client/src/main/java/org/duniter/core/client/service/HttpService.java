@@ -27,7 +27,10 @@ import org.duniter.core.beans.Service;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.service.exception.PeerConnectionException;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.pool.PoolStats;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 
 /**
@@ -47,9 +50,33 @@ public interface HttpService extends Service {
 
     <T> T executeRequest(Peer peer, String absolutePath, Class<? extends T> resultClass);
 
+    /**
+     * Execute a GET request, then read the response content as a stream.
+     * The stream is closed after the handler returns.
+     */
+    <T> T executeRequest(Peer peer, String absolutePath, StreamHandler<T> handler);
+
     String getPath(Peer peer, String absolutePath);
 
     String getPath(String absolutePath);
 
     URIBuilder getURIBuilder(URI baseUri, String... path);
+
+    /**
+     * @return statistics of the connection pool (leased, pending and available connections)
+     */
+    PoolStats getPoolStats();
+
+    /**
+     * @return statistics of the connection pool, for a peer
+     */
+    PoolStats getPoolStats(Peer peer);
+
+    interface StreamHandler<T> {
+        /**
+         * @param content the response content
+         * @param contentLength the content length, or -1 if unknown
+         */
+        T handle(InputStream content, long contentLength) throws IOException;
+    }
 }
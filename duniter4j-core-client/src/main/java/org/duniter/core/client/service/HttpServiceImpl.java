@@ -43,6 +43,12 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.HttpHost;
+import org.apache.http.pool.PoolStats;
 import org.duniter.core.util.StringUtils;
 import org.nuiton.i18n.I18n;
 import org.slf4j.Logger;
@@ -54,6 +60,9 @@ import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by eis on 05/02/15.
@@ -64,9 +73,14 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
 
     public static final String URL_PEER_ALIVE = "/blockchain/parameters";
 
+    // Interval between two evictions of expired and idle connections (in ms)
+    protected static final long EVICTION_INTERVAL = 5000;
+
     protected Integer baseTimeOut;
     protected Gson gson;
     protected HttpClient httpClient;
+    protected PoolingHttpClientConnectionManager connectionManager;
+    protected ScheduledExecutorService evictionExecutor;
     protected Peer defaultPeer;
     private boolean debug;
 
@@ -115,6 +129,10 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
 
     @Override
     public void close() throws IOException {
+        if (evictionExecutor != null) {
+            evictionExecutor.shutdownNow();
+            evictionExecutor = null;
+        }
         if (httpClient instanceof CloseableHttpClient) {
             ((CloseableHttpClient)httpClient).close();
         }
@@ -122,6 +140,24 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
             ((Closeable)httpClient).close();
         }
         httpClient = null;
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+    }
+
+    public PoolStats getPoolStats() {
+        return connectionManager != null ? connectionManager.getTotalStats() : null;
+    }
+
+    public PoolStats getPoolStats(Peer peer) {
+        if (connectionManager == null) {
+            return null;
+        }
+        // Same target host as the route planner (with explicit port)
+        URI uri = URI.create(peer.getUrl());
+        int port = uri.getPort() > 0 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+        return connectionManager.getStats(new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme())));
     }
 
     public <T> T executeRequest(HttpUriRequest request, Class<? extends T> resultClass)  {
@@ -142,6 +178,19 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
         return executeRequest(httpClient, httpGet, resultClass);
     }
 
+    public <T> T executeRequest(Peer peer, String absolutePath, StreamHandler<T> handler)  {
+        HttpGet httpGet = new HttpGet(getPath(peer, absolutePath));
+        return executeRequest(httpClient, httpGet, response -> {
+            InputStream content = response.getEntity().getContent();
+            try {
+                return handler.handle(content, response.getEntity().getContentLength());
+            }
+            finally {
+                content.close();
+            }
+        }, Error.class);
+    }
+
     public String getPath(Peer peer, String absolutePath) {
         return new StringBuilder().append(peer.getUrl()).append(absolutePath).toString();
     }
@@ -180,12 +229,64 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
     }
 
     protected HttpClient createHttpClient() {
+        if (connectionManager == null) {
+            connectionManager = createConnectionManager();
+            startEviction();
+        }
+
         CloseableHttpClient httpClient = HttpClients.custom().setDefaultRequestConfig(getRequestConfig())
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(getKeepAliveStrategy())
                 // .setDefaultCredentialsProvider(getCredentialsProvider())
                 .build();
         return httpClient;
     }
 
+    /**
+     * Create a connection pool, shared by all requests (limited by options
+     * <code>duniter4j.network.maxConnections</code> and <code>duniter4j.network.maxConnectionsPerRoute</code>)
+     */
+    protected PoolingHttpClientConnectionManager createConnectionManager() {
+        Configuration config = Configuration.instance();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getNetworkMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getNetworkMaxConnectionsPerRoute());
+        return connectionManager;
+    }
+
+    /**
+     * Keep connections alive as long as the server allows it (Keep-Alive header),
+     * or <code>duniter4j.network.keepAlive</code> if not specified
+     */
+    protected ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+        final long defaultKeepAlive = Configuration.instance().getNetworkKeepAlive();
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : defaultKeepAlive;
+        };
+    }
+
+    /**
+     * Close expired and idle connections, in background (a server could have closed them)
+     */
+    protected void startEviction() {
+        final long idleTimeout = Configuration.instance().getNetworkIdleTimeout();
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "duniter4j-http-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictionExecutor.scheduleWithFixedDelay(() -> evictConnections(idleTimeout),
+                EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    protected void evictConnections(long idleTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager;
+        if (connectionManager == null) return;
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
     protected RequestConfig getRequestConfig() {
         // build request config for timeout
         return RequestConfig.custom().setSocketTimeout(baseTimeOut).setConnectTimeout(baseTimeOut).build();
@@ -197,8 +298,10 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
 
     @SuppressWarnings("unchecked")
     protected <T> T executeRequest(HttpClient httpClient, HttpUriRequest request, Class<? extends T> resultClass, Class<?> errorClass)  {
-        T result = null;
+        return executeRequest(httpClient, request, response -> (T) parseResponse(response, resultClass), errorClass);
+    }
 
+    protected <T> T executeRequest(HttpClient httpClient, HttpUriRequest request, ResponseParser<T> responseParser, Class<?> errorClass)  {
         if (log.isDebugEnabled()) {
             log.debug("Executing request : " + request.getRequestLine());
         }
@@ -207,38 +310,7 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
         try {
             response = httpClient.execute(request);
 
-            if (log.isDebugEnabled()) {
-                log.debug("Received response : " + response.getStatusLine());
-            }
-
-            switch (response.getStatusLine().getStatusCode()) {
-                case HttpStatus.SC_OK: {
-                    result = (T) parseResponse(response, resultClass);
-
-                    response.getEntity().consumeContent();
-                    break;
-                }
-                case HttpStatus.SC_UNAUTHORIZED:
-                case HttpStatus.SC_FORBIDDEN:
-                    throw new TechnicalException(I18n.t("duniter4j.client.authentication"));
-                case HttpStatus.SC_NOT_FOUND:
-                    throw new HttpNotFoundException(I18n.t("duniter4j.client.notFound", request.toString()));
-                case HttpStatus.SC_BAD_REQUEST:
-                    try {
-                        Object errorResponse = parseResponse(response, errorClass);
-                        if (errorResponse instanceof Error) {
-                            throw new HttpBadRequestException((Error)errorResponse);
-                        }
-                        else {
-                            throw new HttpBadRequestException(errorResponse.toString());
-                        }
-                    }
-                    catch(IOException e) {
-                        throw new HttpBadRequestException(I18n.t("duniter4j.client.status", response.getStatusLine().toString()));
-                    }
-                default:
-                    throw new TechnicalException(I18n.t("duniter4j.client.status", request.toString(), response.getStatusLine().toString()));
-            }
+            return handleResponse(request, response, responseParser, errorClass);
         }
         catch (ConnectException e) {
             throw new HttpConnectException(I18n.t("duniter4j.client.core.connect", request.toString()), e);
@@ -260,8 +332,44 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
                 }
             }
         }
+    }
 
-        return result;
+    /**
+     * Check the response status, then parse the response content
+     */
+    protected <T> T handleResponse(HttpUriRequest request, HttpResponse response, ResponseParser<T> responseParser, Class<?> errorClass) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("Received response : " + response.getStatusLine());
+        }
+
+        switch (response.getStatusLine().getStatusCode()) {
+            case HttpStatus.SC_OK: {
+                T result = responseParser.parse(response);
+
+                response.getEntity().consumeContent();
+                return result;
+            }
+            case HttpStatus.SC_UNAUTHORIZED:
+            case HttpStatus.SC_FORBIDDEN:
+                throw new TechnicalException(I18n.t("duniter4j.client.authentication"));
+            case HttpStatus.SC_NOT_FOUND:
+                throw new HttpNotFoundException(I18n.t("duniter4j.client.notFound", request.toString()));
+            case HttpStatus.SC_BAD_REQUEST:
+                try {
+                    Object errorResponse = parseResponse(response, errorClass);
+                    if (errorResponse instanceof Error) {
+                        throw new HttpBadRequestException((Error)errorResponse);
+                    }
+                    else {
+                        throw new HttpBadRequestException(errorResponse.toString());
+                    }
+                }
+                catch(IOException e) {
+                    throw new HttpBadRequestException(I18n.t("duniter4j.client.status", response.getStatusLine().toString()));
+                }
+            default:
+                throw new TechnicalException(I18n.t("duniter4j.client.status", request.toString(), response.getStatusLine().toString()));
+        }
     }
 
     protected Object parseResponse(HttpResponse response, Class<?> ResultClass) throws IOException {
@@ -331,6 +439,10 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
         return result;
     }
 
+    protected interface ResponseParser<T> {
+        T parse(HttpResponse response) throws IOException;
+    }
+
     protected String getContentAsString(InputStream content) throws IOException {
         Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8);
         StringBuilder result = new StringBuilder();
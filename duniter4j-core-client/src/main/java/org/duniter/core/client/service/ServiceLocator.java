@@ -116,6 +116,11 @@ public class ServiceLocator implements Closeable {
     public HttpService getHttpService() {
         return getBean(HttpService.class);
     }
+
+    public AsyncHttpService getAsyncHttpService() {
+        return getBean(AsyncHttpService.class);
+    }
+
     public PeerService getPeerService() {
         return getBean(PeerService.class);
     }
@@ -30,12 +30,15 @@ import org.duniter.core.client.service.HttpService;
 import org.duniter.core.client.service.local.PeerService;
 import org.duniter.core.client.service.ServiceLocator;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.duniter.core.client.service.AsyncHttpService;
+import org.apache.http.pool.PoolStats;
 import org.duniter.core.exception.TechnicalException;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by eis on 05/02/15.
@@ -43,6 +46,7 @@ import java.net.URL;
 public abstract class BaseRemoteServiceImpl implements Service, InitializingBean {
 
     protected HttpService httpService;
+    protected AsyncHttpService asyncHttpService;
     protected PeerService peerService;
 
     @Override
@@ -54,6 +58,7 @@ public abstract class BaseRemoteServiceImpl implements Service, InitializingBean
     @Override
     public void close() throws IOException {
         httpService = null;
+        asyncHttpService = null;
         peerService = null;
     }
 
@@ -61,6 +66,10 @@ public abstract class BaseRemoteServiceImpl implements Service, InitializingBean
         return httpService.executeRequest(peer, absolutePath, resultClass);
     }
 
+    public <T> T executeRequest(Peer peer, String absolutePath, HttpService.StreamHandler<T> handler)  {
+        return httpService.executeRequest(peer, absolutePath, handler);
+    }
+
     public <T> T executeRequest(long currencyId, String absolutePath, Class<? extends T> resultClass)  {
         Peer peer = peerService.getActivePeerByCurrencyId(currencyId);
         return httpService.executeRequest(peer, absolutePath, resultClass);
@@ -70,6 +79,15 @@ public abstract class BaseRemoteServiceImpl implements Service, InitializingBean
         return httpService.executeRequest(request, resultClass);
     }
 
+    public <T> CompletableFuture<T> executeRequestAsync(Peer peer, String absolutePath, Class<? extends T> resultClass)  {
+        return getAsyncHttpService().executeRequestAsync(peer, absolutePath, resultClass);
+    }
+
+    public <T> CompletableFuture<T> executeRequestAsync(long currencyId, String absolutePath, Class<? extends T> resultClass)  {
+        Peer peer = peerService.getActivePeerByCurrencyId(currencyId);
+        return getAsyncHttpService().executeRequestAsync(peer, absolutePath, resultClass);
+    }
+
     public String getPath(long currencyId, String aPath) {
         Peer peer = peerService.getActivePeerByCurrencyId(currencyId);
         return httpService.getPath(peer, aPath);
@@ -83,6 +101,20 @@ public abstract class BaseRemoteServiceImpl implements Service, InitializingBean
         return httpService.getURIBuilder(baseUri, path);
     }
 
+    public PoolStats getPoolStats(Peer peer) {
+        return httpService.getPoolStats(peer);
+    }
+
+    /**
+     * Get the async HTTP service (lazy loaded: the async client is started only if used)
+     */
+    protected AsyncHttpService getAsyncHttpService() {
+        if (asyncHttpService == null) {
+            asyncHttpService = ServiceLocator.instance().getAsyncHttpService();
+        }
+        return asyncHttpService;
+    }
+
     public URIBuilder getURIBuilder(URL baseUrl, String... path) {
         try {
             return httpService.getURIBuilder(baseUrl.toURI(), path);
@@ -27,6 +27,7 @@ import org.duniter.core.client.model.local.Identity;
 import org.duniter.core.client.model.bma.BlockchainBlock;
 import org.duniter.core.client.model.bma.BlockchainMemberships;
 import org.duniter.core.client.model.bma.BlockchainParameters;
+import org.duniter.core.client.model.bma.gson.JsonArrayStreamParser;
 import org.duniter.core.client.model.local.Currency;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.model.local.Wallet;
@@ -37,6 +38,7 @@ import org.duniter.core.client.service.exception.UidMatchAnotherPubkeyException;
 import org.duniter.core.util.websocket.WebsocketClientEndpoint;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface BlockchainRemoteService extends Service {
 
@@ -111,6 +113,28 @@ public interface BlockchainRemoteService extends Service {
      */
     String[] getBlocksAsJson(Peer peer, int count, int from);
 
+    /**
+     * Retrieve some blocks, as a JSON array string (array items are not split)
+     *
+     * @param peer  the peer to use for request
+     * @param count the number of blocks
+     * @param from  the first block number
+     * @return
+     */
+    String getBlocksAsJsonArray(Peer peer, int count, int from);
+
+    /**
+     * Retrieve some blocks, reading the response as a stream. Each block is given to the handler
+     * as raw JSON bytes (without any copy)
+     *
+     * @param peer  the peer to use for request
+     * @param count the number of blocks
+     * @param from  the first block number
+     * @param handler the handler, called for each block
+     * @return the number of blocks read
+     */
+    int getBlocksAsJson(Peer peer, int count, int from, JsonArrayStreamParser.ValueHandler handler);
+
     /**
      * Retrieve the current block (with short cache)
      *
@@ -133,6 +157,41 @@ public interface BlockchainRemoteService extends Service {
      */
     BlockchainBlock getCurrentBlock(Peer peer);
 
+    /**
+     * get the blockchain parameters (currency parameters), without blocking
+     *
+     * @param peer the peer to use for request
+     * @return a future of the parameters
+     */
+    CompletableFuture<BlockchainParameters> getParametersAsync(Peer peer);
+
+    /**
+     * Retrieve a block, by id (from 0 to current), without blocking
+     *
+     * @param peer the peer to use for request
+     * @param number the block number
+     * @return a future of the block (completed with a BlockNotFoundException, if not found)
+     */
+    CompletableFuture<BlockchainBlock> getBlockAsync(Peer peer, int number);
+
+    /**
+     * Retrieve the current block, without blocking
+     *
+     * @param peer the peer to use for request
+     * @return a future of the last block
+     */
+    CompletableFuture<BlockchainBlock> getCurrentBlockAsync(Peer peer);
+
+    /**
+     * Retrieve blocks, as a JSON array, without blocking
+     *
+     * @param peer the peer to use for request
+     * @param count the number of blocks
+     * @param from the first block number
+     * @return a future of the JSON array
+     */
+    CompletableFuture<String> getBlocksAsJsonArrayAsync(Peer peer, int count, int from);
+
     /**
      * Retrieve the currency data, from peer
      *
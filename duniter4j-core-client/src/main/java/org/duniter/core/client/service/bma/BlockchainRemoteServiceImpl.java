@@ -22,12 +22,14 @@ package org.duniter.core.client.service.bma;
  * #L%
  */
 
+import com.google.gson.JsonParseException;
 import org.duniter.core.client.config.Configuration;
 import org.duniter.core.client.model.bma.BlockchainBlock;
 import org.duniter.core.client.model.bma.BlockchainMemberships;
 import org.duniter.core.client.model.bma.BlockchainParameters;
 import org.duniter.core.client.model.bma.Protocol;
 import org.duniter.core.client.model.bma.gson.JsonArrayParser;
+import org.duniter.core.client.model.bma.gson.JsonArrayStreamParser;
 import org.duniter.core.client.model.local.Identity;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.model.local.Wallet;
@@ -53,6 +55,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implements BlockchainRemoteService {
 
@@ -189,15 +192,32 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     @Override
     public String[] getBlocksAsJson(Peer peer, int count, int from) {
-        // get blockchain parameter
-        String path = String.format(URL_BLOCKS_FROM, count, from);
-        String jsonBlocksStr = executeRequest(peer, path, String.class);
+        String jsonBlocksStr = getBlocksAsJsonArray(peer, count, from);
 
         // Parse only array content, but deserialize array item
         JsonArrayParser parser = new JsonArrayParser();
         return parser.getValuesAsArray(jsonBlocksStr);
     }
 
+    @Override
+    public String getBlocksAsJsonArray(Peer peer, int count, int from) {
+        String path = String.format(URL_BLOCKS_FROM, count, from);
+        return executeRequest(peer, path, String.class);
+    }
+
+    @Override
+    public int getBlocksAsJson(Peer peer, int count, int from, JsonArrayStreamParser.ValueHandler handler) {
+        String path = String.format(URL_BLOCKS_FROM, count, from);
+        return executeRequest(peer, path, (content, contentLength) -> {
+            try {
+                return new JsonArrayStreamParser().parse(content, contentLength, handler);
+            }
+            catch(JsonParseException e) {
+                throw new JsonSyntaxException(String.format("Invalid blocks from #%s (count=%s): %s", from, count, e.getMessage()), e);
+            }
+        });
+    }
+
     /**
      * Retrieve the current block (with short cache)
      *
@@ -225,6 +245,40 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
         return result;
     }
 
+    @Override
+    public CompletableFuture<BlockchainParameters> getParametersAsync(Peer peer) {
+        return executeRequestAsync(peer, URL_PARAMETERS, BlockchainParameters.class);
+    }
+
+    @Override
+    public CompletableFuture<BlockchainBlock> getBlockAsync(Peer peer, int number) {
+        String path = String.format(URL_BLOCK, number);
+        CompletableFuture<BlockchainBlock> result = new CompletableFuture<>();
+        this.<BlockchainBlock>executeRequestAsync(peer, path, BlockchainBlock.class).whenComplete((block, error) -> {
+            if (error == null) {
+                result.complete(block);
+            }
+            else if (error instanceof HttpNotFoundException) {
+                result.completeExceptionally(new BlockNotFoundException(String.format("Block #%s not found on peer [%s]", number, peer)));
+            }
+            else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<BlockchainBlock> getCurrentBlockAsync(Peer peer) {
+        return executeRequestAsync(peer, URL_BLOCK_CURRENT, BlockchainBlock.class);
+    }
+
+    @Override
+    public CompletableFuture<String> getBlocksAsJsonArrayAsync(Peer peer, int count, int from) {
+        String path = String.format(URL_BLOCKS_FROM, count, from);
+        return executeRequestAsync(peer, path, String.class);
+    }
+
     @Override
     public org.duniter.core.client.model.local.Currency getCurrencyFromPeer(Peer peer) {
         BlockchainParameters parameter = getParameters(peer);
@@ -28,6 +28,7 @@ import org.duniter.core.client.model.bma.NetworkPeering;
 import org.duniter.core.client.model.local.Peer;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by eis on 05/02/15.
@@ -39,4 +40,8 @@ public interface NetworkRemoteService extends Service {
     List<Peer> getPeers(Peer peer);
 
     List<Peer> findPeers(Peer peer, String status, EndpointProtocol endpointProtocol, Integer currentBlockNumber, String currentBlockHash);
+
+    CompletableFuture<NetworkPeering> getPeeringAsync(Peer peer);
+
+    CompletableFuture<List<Peer>> findPeersAsync(Peer peer, String status, EndpointProtocol endpointProtocol, Integer currentBlockNumber, String currentBlockHash);
 }
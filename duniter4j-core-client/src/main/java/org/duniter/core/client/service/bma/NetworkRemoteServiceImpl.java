@@ -24,6 +24,7 @@ package org.duniter.core.client.service.bma;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.duniter.core.client.model.bma.EndpointProtocol;
 import org.duniter.core.client.model.bma.NetworkPeering;
@@ -66,10 +67,29 @@ public class NetworkRemoteServiceImpl extends BaseRemoteServiceImpl implements N
     public List<Peer> findPeers(Peer peer, String status, EndpointProtocol endpointProtocol, Integer currentBlockNumber, String currentBlockHash) {
         ObjectUtils.checkNotNull(peer);
 
-        List<Peer> result = new ArrayList<Peer>();
-
         NetworkPeers remoteResult = httpService.executeRequest(peer, URL_PEERS, NetworkPeers.class);
 
+        return toPeers(remoteResult, status, endpointProtocol, currentBlockNumber, currentBlockHash);
+    }
+
+    @Override
+    public CompletableFuture<NetworkPeering> getPeeringAsync(Peer peer) {
+        return executeRequestAsync(peer, URL_PEERING, NetworkPeering.class);
+    }
+
+    @Override
+    public CompletableFuture<List<Peer>> findPeersAsync(Peer peer, String status, EndpointProtocol endpointProtocol, Integer currentBlockNumber, String currentBlockHash) {
+        ObjectUtils.checkNotNull(peer);
+
+        return this.<NetworkPeers>executeRequestAsync(peer, URL_PEERS, NetworkPeers.class)
+                .thenApply(remoteResult -> toPeers(remoteResult, status, endpointProtocol, currentBlockNumber, currentBlockHash));
+    }
+
+    /* -- Internal methods -- */
+
+    protected List<Peer> toPeers(NetworkPeers remoteResult, String status, EndpointProtocol endpointProtocol, Integer currentBlockNumber, String currentBlockHash) {
+        List<Peer> result = new ArrayList<Peer>();
+
         for (NetworkPeers.Peer remotePeer: remoteResult.peers) {
             boolean match = (status == null || status.equalsIgnoreCase(remotePeer.status))
                     && (currentBlockNumber == null || currentBlockNumber.equals(parseBlockNumber(remotePeer)))
@@ -95,8 +115,6 @@ public class NetworkRemoteServiceImpl extends BaseRemoteServiceImpl implements N
         return result;
     }
 
-    /* -- Internal methods -- */
-
     protected Peer toPeer(NetworkPeering.Endpoint source) {
         Peer target = new Peer();
         if (StringUtils.isNotBlank(source.ipv4)) {
@@ -30,6 +30,8 @@ import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.model.local.Wallet;
 import org.duniter.core.client.service.exception.InsufficientCreditException;
 
+import java.util.concurrent.CompletableFuture;
+
 
 public interface TransactionRemoteService extends Service {
 
@@ -40,6 +42,8 @@ public interface TransactionRemoteService extends Service {
 
     TxSource getSources(Peer peer, String pubKey);
 
+    CompletableFuture<TxSource> getSourcesAsync(Peer peer, String pubKey);
+
     long getCreditOrZero(long currencyId, String pubKey);
 
     Long getCredit(long currencyId, String pubKey);
@@ -47,6 +47,7 @@ import org.slf4j.LoggerFactory;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public class TransactionRemoteServiceImpl extends BaseRemoteServiceImpl implements TransactionRemoteService {
@@ -137,6 +138,11 @@ public class TransactionRemoteServiceImpl extends BaseRemoteServiceImpl implemen
 		return result;
 	}
 
+	public CompletableFuture<TxSource> getSourcesAsync(Peer peer, String pubKey) {
+		String path = String.format(URL_TX_SOURCES, pubKey);
+		return executeRequestAsync(peer, path, TxSource.class);
+	}
+
     public long getCreditOrZero(long currencyId, String pubKey) {
         Long credit = getCredit(currencyId, pubKey);
 
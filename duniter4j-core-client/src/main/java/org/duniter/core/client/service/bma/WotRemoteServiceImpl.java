@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.UnsupportedEncodingException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class WotRemoteServiceImpl extends BaseRemoteServiceImpl implements WotRemoteService {
 
@@ -281,6 +282,21 @@ public class WotRemoteServiceImpl extends BaseRemoteServiceImpl implements WotRe
         return result;
     }
 
+    public CompletableFuture<WotCertification> getCertifiedByAsync(long currencyId, String uid) {
+        String path = String.format(URL_CERTIFIED_BY, uid);
+        return executeRequestAsync(currencyId, path, WotCertification.class);
+    }
+
+    public CompletableFuture<WotCertification> getCertifiersOfAsync(long currencyId, String uid) {
+        String path = String.format(URL_CERTIFIERS_OF, uid);
+        return executeRequestAsync(currencyId, path, WotCertification.class);
+    }
+
+    public CompletableFuture<WotLookup> lookupAsync(Peer peer, String uidOrPubKey) {
+        String path = String.format(URL_LOOKUP, uidOrPubKey);
+        return executeRequestAsync(peer, path, WotLookup.class);
+    }
+
 
     public void sendIdentity(long currencyId, byte[] pubKey, byte[] secKey, String userId, String blockUid) {
         // http post /wot/add
@@ -0,0 +1,92 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JsonArrayStreamParserTest {
+
+    @Test
+    public void parse() throws Exception {
+        String obj = "{'id':'joe','ts':'2014-12-02T13:58:23.801+0100','foo':{'bar':{'v1':50019820,'v2':0,     'v3':0.001, 'v4':-100, 'v5':0.000001, 'v6':0.0, 'b':true}}}".replace("'", "\"");
+        String string = String.format("[%s,%s,%s,%s]", obj , obj , obj , obj );
+
+        List<String> result = parse(string, -1);
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(obj, result.get(0));
+        Assert.assertEquals(obj, result.get(3));
+
+        // With expected length
+        result = parse(string, string.getBytes(StandardCharsets.UTF_8).length);
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(obj, result.get(3));
+
+        result = parse("[]", -1);
+        Assert.assertEquals(0, result.size());
+    }
+
+    @Test
+    public void parseWithBracesInStrings() throws Exception {
+        String obj = "{'id':'jo}e','text':'a \\'{quoted}\\' text\\\\','utf8':'éà'}".replace("'", "\"");
+        String string = String.format("[%s,\n%s]", obj , obj);
+
+        List<String> result = parse(string, -1);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(obj, result.get(0));
+        Assert.assertEquals(obj, result.get(1));
+    }
+
+    @Test
+    public void parseLargeArray() throws Exception {
+        String obj = "{\"number\":1,\"hash\":\"ABCDEF\"}";
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(obj);
+        }
+        sb.append(']');
+
+        // Buffer will be resized many times
+        List<String> result = parse(sb.toString(), -1);
+        Assert.assertEquals(10000, result.size());
+        Assert.assertEquals(obj, result.get(9999));
+    }
+
+    @Test(expected = com.google.gson.JsonParseException.class)
+    public void parseIncomplete() throws Exception {
+        parse("[{\"number\":1}", -1);
+    }
+
+    private List<String> parse(String json, long expectedLength) throws Exception {
+        List<String> result = new ArrayList<>();
+        new JsonArrayStreamParser().parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), expectedLength,
+                (bytes, offset, length) -> result.add(new String(bytes, offset, length, StandardCharsets.UTF_8)));
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class JsonBlockHeaderParserTest {
+
+    @Test
+    public void parse() {
+        String json = ("{'version':2,'nonce':10,'number':12345,'powMin':3,'medianTime':1460000000," +
+                "'currency':'meta_brouzouf','issuer':'HnFcSms8jzwngtVomTTnzudZx7SHUQY8sVE1y8yBmULk'," +
+                "'hash':'00000A4C2B2A6AFA3C5B2A4F30D4B70A1CDB5F12EAAF3D0E1C8A5E67A2B9EA35'," +
+                "'previousHash':'000005B64C1F0E6B5D8E8B9AE7A1C6D9E4F0B1A2C3D4E5F60718293A4B5C6D7E'," +
+                "'identities':[],'transactions':[]," +
+                "'inner_hash':'C6D9E4F0B1A2C3D4E5F60718293A4B5C6D7E000005B64C1F0E6B5D8E8B9AE7A1'," +
+                "'signature':'dZx7SHUQY8sVE1y8yBmULk=='}").replace("'", "\"");
+
+        JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser().parse(json);
+        Assert.assertNotNull(header);
+        Assert.assertEquals(12345, header.getNumber());
+        Assert.assertEquals(1460000000L, header.getMedianTime());
+        Assert.assertEquals("meta_brouzouf", header.getCurrency());
+        Assert.assertEquals("HnFcSms8jzwngtVomTTnzudZx7SHUQY8sVE1y8yBmULk", header.getIssuer());
+        Assert.assertEquals("00000A4C2B2A6AFA3C5B2A4F30D4B70A1CDB5F12EAAF3D0E1C8A5E67A2B9EA35", header.getHash());
+        Assert.assertEquals("000005B64C1F0E6B5D8E8B9AE7A1C6D9E4F0B1A2C3D4E5F60718293A4B5C6D7E", header.getPreviousHash());
+        Assert.assertEquals("C6D9E4F0B1A2C3D4E5F60718293A4B5C6D7E000005B64C1F0E6B5D8E8B9AE7A1", header.getInnerHash());
+        Assert.assertEquals(10L, header.getNonce());
+        Assert.assertEquals("dZx7SHUQY8sVE1y8yBmULk==", header.getSignature());
+
+        // Same, from bytes
+        byte[] bytes = ("[" + json + "]").getBytes(StandardCharsets.UTF_8);
+        header = new JsonBlockHeaderParser().parse(bytes, 1, bytes.length - 2);
+        Assert.assertEquals(12345, header.getNumber());
+    }
+
+    @Test
+    public void parseIgnoreNestedFields() {
+        String json = ("{'identities':[{'number':99,'hash':'NESTED}'}],'sub':{'number':7,'hash':'NESTED'}," +
+                "'number' : 0 , 'hash' : 'ABC'}").replace("'", "\"");
+
+        JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser(JsonBlockHeaderParser.Field.NUMBER,
+                JsonBlockHeaderParser.Field.HASH).parse(json);
+        Assert.assertEquals(0, header.getNumber());
+        Assert.assertEquals("ABC", header.getHash());
+    }
+
+    @Test
+    public void parseStopWhenAllFound() {
+        // Content after requested fields is invalid: must not be read
+        String json = "{\"hash\":\"ABC\",\"number\":1, !!invalid!!";
+
+        JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser(JsonBlockHeaderParser.Field.NUMBER,
+                JsonBlockHeaderParser.Field.HASH).parse(json);
+        Assert.assertEquals(1, header.getNumber());
+        Assert.assertEquals("ABC", header.getHash());
+    }
+
+    @Test
+    public void parseMissingFields() {
+        JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser().parse("{\"currency\":\"meta\\\"brouzouf\",\"issuer\":null}");
+        Assert.assertEquals(-1, header.getNumber());
+        Assert.assertEquals("meta\"brouzouf", header.getCurrency());
+        Assert.assertNull(header.getIssuer());
+        Assert.assertNull(header.getHash());
+    }
+}
@@ -41,6 +41,9 @@ import org.junit.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 public class BlockchainRemoteServiceTest {
 
     private static final Logger log = LoggerFactory.getLogger(BlockchainRemoteServiceTest.class);
@@ -86,6 +89,19 @@ public class BlockchainRemoteServiceTest {
         }
     }
 
+    @Test
+    public void getBlockAsync() throws Exception {
+        Peer peer = createTestPeer();
+
+        CompletableFuture<BlockchainBlock> block0 = service.getBlockAsync(peer, 0);
+        CompletableFuture<BlockchainBlock> block1 = service.getBlockAsync(peer, 1);
+        CompletableFuture.allOf(block0, block1).get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(0, block0.get().getNumber().intValue());
+        Assert.assertEquals(1, block1.get().getNumber().intValue());
+        Assert.assertEquals(block0.get().getHash(), block1.get().getPreviousHash());
+    }
+
     @Test
     public void getBlocksAsJson() throws Exception {
 
@@ -38,6 +38,9 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.ESLoggerFactory;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.nuiton.config.ApplicationConfig;
 import org.nuiton.config.ApplicationConfigHelper;
 import org.nuiton.config.ApplicationConfigProvider;
@@ -48,6 +51,8 @@ import org.nuiton.i18n.init.UserI18nInitializer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
@@ -161,10 +166,150 @@ public class PluginSettings extends AbstractLifecycleComponent<PluginSettings> {
         return settings.getAsInt("duniter.bulk.size", 1000);
     }
 
+    public boolean isIndexParallelSyncEnable() {
+        return settings.getAsBoolean("duniter.blockchain.sync.parallel.enable", false);
+    }
+
+    public int getIndexParallelSyncMaxFetches() {
+        return settings.getAsInt("duniter.blockchain.sync.parallel.maxFetches", 4);
+    }
+
+    public boolean isIndexBulkProcessorEnable() {
+        return settings.getAsBoolean("duniter.bulk.processor.enable", false);
+    }
+
+    public int getIndexBulkProcessorConcurrentRequests() {
+        return settings.getAsInt("duniter.bulk.processor.concurrentRequests", 2);
+    }
+
+    public int getIndexBulkProcessorFlushSize() {
+        return settings.getAsInt("duniter.bulk.processor.flushSize", getIndexBulkSize());
+    }
+
+    public ByteSizeValue getIndexBulkProcessorFlushBytes() {
+        return settings.getAsBytesSize("duniter.bulk.processor.flushBytes", new ByteSizeValue(5, ByteSizeUnit.MB));
+    }
+
+    public TimeValue getIndexBulkProcessorFlushInterval() {
+        return settings.getAsTime("duniter.bulk.processor.flushInterval", TimeValue.timeValueSeconds(5));
+    }
+
+    public TimeValue getIndexBulkProcessorTimeout() {
+        return settings.getAsTime("duniter.bulk.processor.timeout", TimeValue.timeValueMinutes(2));
+    }
+
+    public int getIndexPipelineQueueSize() {
+        return settings.getAsInt("duniter.blockchain.sync.pipeline.queueSize", 2);
+    }
+
+    public int getIndexBlockHashRingSize() {
+        return settings.getAsInt("duniter.blockchain.hashRing.size", 2000);
+    }
+
+    public TimeValue getIndexNewBlockRefreshInterval() {
+        return settings.getAsTime("duniter.blockchain.newBlock.refreshInterval", TimeValue.timeValueSeconds(1));
+    }
+
+    public boolean isIndexBulkLoadEnable() {
+        return settings.getAsBoolean("duniter.blockchain.sync.bulkLoad.enable", true);
+    }
+
+    public int getIndexBulkLoadMinBlocks() {
+        return settings.getAsInt("duniter.blockchain.sync.bulkLoad.minBlocks", 10000);
+    }
+
+    public int getIndexBulkLoadMaxNumSegments() {
+        return settings.getAsInt("duniter.blockchain.sync.bulkLoad.maxNumSegments", 1);
+    }
+
+    public boolean isIndexBlockEventsEnable() {
+        return settings.getAsBoolean("duniter.blockchain.events.enable", true);
+    }
+
+    public boolean isIndexBalanceEnable() {
+        return settings.getAsBoolean("duniter.blockchain.balance.enable", true);
+    }
+
+    public boolean isWotGraphEnable() {
+        return settings.getAsBoolean("duniter.blockchain.wot.enable", true);
+    }
+
+    public boolean isIndexMonetaryStatsEnable() {
+        return settings.getAsBoolean("duniter.blockchain.stats.enable", true);
+    }
+
+    public TimeValue getIndexRepairInterval() {
+        return settings.getAsTime("duniter.blockchain.repair.interval", TimeValue.timeValueMinutes(1));
+    }
+
+    public int getIndexRepairMaxPeers() {
+        return settings.getAsInt("duniter.blockchain.repair.maxPeers", 5);
+    }
+
+    public int getIndexRepairMaxFetches() {
+        return settings.getAsInt("duniter.blockchain.repair.maxFetches", 3);
+    }
+
+    public int getVerifyWorkers() {
+        return settings.getAsInt("duniter.blockchain.verify.workers", 4);
+    }
+
+    public File getBlockchainSnapshotDirectory() {
+        String defaultDirectory = new File(settings.get("path.home", "."), "snapshots").getPath();
+        return new File(settings.get("duniter.blockchain.snapshot.dir", defaultDirectory));
+    }
+
+    public int getBlockchainSnapshotChunkSize() {
+        return settings.getAsInt("duniter.blockchain.snapshot.chunkSize", 1000);
+    }
+
+    /**
+     * @return a snapshot file to import on startup (before the blockchain sync), or null
+     */
+    public String getBlockchainSnapshotBootstrapFile() {
+        return settings.get("duniter.blockchain.snapshot.bootstrap");
+    }
+
+    public int getSyncMaxConcurrent() {
+        return settings.getAsInt("duniter.blockchain.sync.maxConcurrent", 2);
+    }
+
+    public int getSyncMaxBlocksPerRun() {
+        return settings.getAsInt("duniter.blockchain.sync.maxBlocksPerRun", 20000);
+    }
+
+    public TimeValue getSyncRetryDelay() {
+        return settings.getAsTime("duniter.blockchain.sync.retryDelay", TimeValue.timeValueMinutes(1));
+    }
+
+    public boolean isSyncAdaptiveBatchEnable() {
+        return settings.getAsBoolean("duniter.blockchain.sync.batch.adaptive", true);
+    }
+
+    public int getSyncBatchMinSize() {
+        return settings.getAsInt("duniter.blockchain.sync.batch.minSize", 10);
+    }
+
+    public int getSyncBatchMaxSize() {
+        return settings.getAsInt("duniter.blockchain.sync.batch.maxSize", 5000);
+    }
+
+    public ByteSizeValue getSyncBatchTargetBytes() {
+        return settings.getAsBytesSize("duniter.blockchain.sync.batch.targetBytes", new ByteSizeValue(2, ByteSizeUnit.MB));
+    }
+
+    public TimeValue getSyncBatchTargetTime() {
+        return settings.getAsTime("duniter.blockchain.sync.batch.targetTime", TimeValue.timeValueSeconds(5));
+    }
+
     public int getNodeForkResyncWindow() {
         return settings.getAsInt("duniter.fork.resync.window", 100);
     }
 
+    public boolean isForkArchiveEnable() {
+        return settings.getAsBoolean("duniter.fork.archive.enable", true);
+    }
+
     public String getDefaultStringAnalyzer() {
         return settings.get("duniter.string.analyzer", "english");
     }
@@ -193,6 +338,29 @@ public class PluginSettings extends AbstractLifecycleComponent<PluginSettings> {
         return settings.getAsInt("duniter.retry.waitDuration", 5000);
     }
 
+    /**
+     * Get peers to sync (one per currency), from the option <code>duniter.blockchain.sync.peers</code> (as 'host:port').
+     * If not set, use the node peer (<code>duniter.host</code> and <code>duniter.port</code>)
+     */
+    public List<Peer> getSyncPeers() {
+        String[] peers = settings.getAsArray("duniter.blockchain.sync.peers", null);
+        if (peers == null || peers.length == 0) {
+            return ImmutableList.of(checkAndGetPeer());
+        }
+
+        List<Peer> result = new ArrayList<>(peers.length);
+        for (String peer: peers) {
+            int separatorIndex = peer.lastIndexOf(':');
+            try {
+                result.add(new Peer(peer.substring(0, separatorIndex).trim(), Integer.parseInt(peer.substring(separatorIndex + 1).trim())));
+            }
+            catch(IndexOutOfBoundsException | NumberFormatException e) {
+                logger.error(String.format("Invalid peer [%s] in option 'duniter.blockchain.sync.peers': expected 'host:port'", peer));
+            }
+        }
+        return result;
+    }
+
     public Peer checkAndGetPeer() {
         if (StringUtils.isBlank(getNodeBmaHost())) {
             logger.error("ERROR: node host is required");
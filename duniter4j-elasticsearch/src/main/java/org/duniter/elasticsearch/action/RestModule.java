@@ -22,11 +22,17 @@ package org.duniter.elasticsearch.action;
  * #L%
  */
 
+import org.duniter.elasticsearch.action.currency.RestCurrencyBalancesAction;
 import org.duniter.elasticsearch.action.currency.RestCurrencyIndexAction;
+import org.duniter.elasticsearch.action.currency.RestCurrencyMonetaryStatsAction;
+import org.duniter.elasticsearch.action.currency.RestCurrencySnapshotAction;
+import org.duniter.elasticsearch.action.currency.RestCurrencyVerifyAction;
+import org.duniter.elasticsearch.action.currency.RestCurrencyWotAction;
 import org.duniter.elasticsearch.action.history.RestHistoryDeleteIndexAction;
 import org.duniter.elasticsearch.action.market.*;
 import org.duniter.elasticsearch.action.message.RestMessageInboxIndexAction;
 import org.duniter.elasticsearch.action.message.RestMessageOutboxIndexAction;
+import org.duniter.elasticsearch.action.node.RestNodeSyncStatsAction;
 import org.duniter.elasticsearch.action.registry.*;
 import org.duniter.elasticsearch.action.security.RestSecurityAuthAction;
 import org.duniter.elasticsearch.action.security.RestSecurityController;
@@ -45,6 +51,11 @@ public class RestModule extends AbstractModule implements Module {
 
         // Currency
         bind(RestCurrencyIndexAction.class).asEagerSingleton();
+        bind(RestCurrencyBalancesAction.class).asEagerSingleton();
+        bind(RestCurrencyWotAction.class).asEagerSingleton();
+        bind(RestCurrencyMonetaryStatsAction.class).asEagerSingleton();
+        bind(RestCurrencyVerifyAction.class).asEagerSingleton();
+        bind(RestCurrencySnapshotAction.class).asEagerSingleton();
 
         // Market
         bind(RestMarketRecordIndexAction.class).asEagerSingleton();
@@ -78,5 +89,8 @@ public class RestModule extends AbstractModule implements Module {
         // Message
         bind(RestMessageInboxIndexAction.class).asEagerSingleton();
         bind(RestMessageOutboxIndexAction.class).asEagerSingleton();
+
+        // Node
+        bind(RestNodeSyncStatsAction.class).asEagerSingleton();
     }
 }
\ No newline at end of file
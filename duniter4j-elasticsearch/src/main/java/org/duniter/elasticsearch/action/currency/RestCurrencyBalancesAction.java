@@ -0,0 +1,133 @@
+package org.duniter.elasticsearch.action.currency;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.duniter.core.util.StringUtils;
+import org.duniter.elasticsearch.action.security.RestSecurityController;
+import org.duniter.elasticsearch.model.Balance;
+import org.duniter.elasticsearch.rest.XContentRestResponse;
+import org.duniter.elasticsearch.rest.XContentThrowableRestResponse;
+import org.duniter.elasticsearch.service.blockchain.BalanceService;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.rest.*;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.duniter.elasticsearch.rest.RestXContentBuilder.restContentBuilder;
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+import static org.elasticsearch.rest.RestStatus.BAD_REQUEST;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Get balances of many pubkeys, in one request:
+ * <ul>
+ *     <li>GET /{currency}/balance/_multi?pubkeys=pubkey1,pubkey2</li>
+ *     <li>POST /{currency}/balance/_multi, with body <code>{"pubkeys": ["pubkey1", "pubkey2"]}</code></li>
+ * </ul>
+ */
+public class RestCurrencyBalancesAction extends BaseRestHandler {
+
+    private static final String PATH = "/{index}/" + BalanceService.BALANCE_TYPE + "/_multi";
+
+    private final BalanceService balanceService;
+
+    @Inject
+    public RestCurrencyBalancesAction(Settings settings, RestController controller, Client client,
+                                      RestSecurityController securityController,
+                                      BalanceService balanceService) {
+        super(settings, controller, client);
+        controller.registerHandler(GET, PATH, this);
+        controller.registerHandler(POST, PATH, this);
+        securityController.allow(GET, "/[^/]+/" + BalanceService.BALANCE_TYPE + "/_multi");
+        securityController.allow(POST, "/[^/]+/" + BalanceService.BALANCE_TYPE + "/_multi");
+        this.balanceService = balanceService;
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
+        String currencyName = request.param("index");
+
+        try {
+            Collection<String> pubkeys = getPubkeys(request);
+            if (pubkeys.isEmpty()) {
+                restChannel.sendResponse(new BytesRestResponse(BAD_REQUEST, "Missing 'pubkeys'"));
+                return;
+            }
+
+            List<Balance> balances = balanceService.getBalances(currencyName, pubkeys);
+
+            XContentBuilder builder = restContentBuilder(request).startObject()
+                    .field("blockNumber", balanceService.getLedgerNumber(currencyName))
+                    .startArray("balances");
+            for (Balance balance: balances) {
+                builder.startObject()
+                        .field(Balance.PROPERTY_PUBKEY, balance.getPubkey())
+                        .field(Balance.PROPERTY_AMOUNT, balance.getAmount())
+                        .field(Balance.PROPERTY_UD_COUNT, balance.getUdCount())
+                        .field(Balance.PROPERTY_MEMBER, balance.getMember())
+                        .endObject();
+            }
+            builder.endArray().endObject();
+
+            restChannel.sendResponse(new XContentRestResponse(request, OK, builder));
+        }
+        catch(Exception e) {
+            logger.error(e.getMessage(), e);
+            restChannel.sendResponse(new XContentThrowableRestResponse(request, e));
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected Collection<String> getPubkeys(RestRequest request) {
+        Collection<String> result = new LinkedHashSet<>();
+
+        // From the query string
+        String pubkeysParam = request.param("pubkeys");
+        if (StringUtils.isNotBlank(pubkeysParam)) {
+            for (String pubkey: pubkeysParam.split(",")) {
+                if (StringUtils.isNotBlank(pubkey)) result.add(pubkey.trim());
+            }
+        }
+
+        // From the body
+        if (request.hasContent()) {
+            Map<String, Object> content = XContentHelper.convertToMap(request.content(), false).v2();
+            Object pubkeys = content.get("pubkeys");
+            if (pubkeys instanceof Collection) {
+                for (Object pubkey: (Collection<?>) pubkeys) {
+                    if (pubkey != null) result.add(pubkey.toString());
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+package org.duniter.elasticsearch.action.currency;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.duniter.elasticsearch.action.security.RestSecurityController;
+import org.duniter.elasticsearch.model.MonetaryStats;
+import org.duniter.elasticsearch.rest.XContentRestResponse;
+import org.duniter.elasticsearch.rest.XContentThrowableRestResponse;
+import org.duniter.elasticsearch.service.blockchain.MonetaryStatsService;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import java.util.List;
+
+import static org.duniter.elasticsearch.rest.RestXContentBuilder.restContentBuilder;
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestStatus.BAD_REQUEST;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Get monetary stats series (pre-aggregated by day, week or month):
+ * GET /{currency}/stats/{period}?from=&lt;time&gt;&amp;to=&lt;time&gt;&amp;size=&lt;size&gt;
+ */
+public class RestCurrencyMonetaryStatsAction extends BaseRestHandler {
+
+    private static final int DEFAULT_SIZE = 1000;
+
+    private final MonetaryStatsService monetaryStatsService;
+
+    @Inject
+    public RestCurrencyMonetaryStatsAction(Settings settings, RestController controller, Client client,
+                                           RestSecurityController securityController,
+                                           MonetaryStatsService monetaryStatsService) {
+        super(settings, controller, client);
+        controller.registerHandler(GET, "/{index}/stats/{period}", this);
+        securityController.allow(GET, "/[^/]+/stats/[^/]+");
+        this.monetaryStatsService = monetaryStatsService;
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
+        String currencyName = request.param("index");
+        String period = request.param("period");
+
+        if (!MonetaryStatsService.isPeriod(period)) {
+            restChannel.sendResponse(new BytesRestResponse(BAD_REQUEST, String.format("Invalid period [%s]. Expected: day, week or month", period)));
+            return;
+        }
+
+        try {
+            Long fromTime = request.hasParam("from") ? request.paramAsLong("from", 0) : null;
+            Long toTime = request.hasParam("to") ? request.paramAsLong("to", 0) : null;
+            int size = request.paramAsInt("size", DEFAULT_SIZE);
+
+            List<MonetaryStats> series = monetaryStatsService.getStats(currencyName, period, fromTime, toTime, size);
+
+            XContentBuilder builder = restContentBuilder(request).startObject()
+                    .field(MonetaryStats.PROPERTY_PERIOD, period)
+                    .startArray("series");
+            for (MonetaryStats stats: series) {
+                builder.startObject()
+                        .field(MonetaryStats.PROPERTY_DATE, stats.getDate())
+                        .field(MonetaryStats.PROPERTY_TIME, stats.getTime())
+                        .field(MonetaryStats.PROPERTY_FIRST_BLOCK, stats.getFirstBlock())
+                        .field(MonetaryStats.PROPERTY_LAST_BLOCK, stats.getLastBlock())
+                        .field(MonetaryStats.PROPERTY_BLOCK_COUNT, stats.getBlockCount())
+                        .field(MonetaryStats.PROPERTY_MEMBERS_COUNT, stats.getMembersCount())
+                        .field(MonetaryStats.PROPERTY_MEMBERS_COUNT_MIN, stats.getMembersCountMin())
+                        .field(MonetaryStats.PROPERTY_MEMBERS_COUNT_MAX, stats.getMembersCountMax())
+                        .field(MonetaryStats.PROPERTY_MONETARY_MASS, stats.getMonetaryMass())
+                        .field(MonetaryStats.PROPERTY_DIVIDEND, stats.getDividend())
+                        .field(MonetaryStats.PROPERTY_UD_COUNT, stats.getUdCount())
+                        .endObject();
+            }
+            builder.endArray().endObject();
+
+            restChannel.sendResponse(new XContentRestResponse(request, OK, builder));
+        }
+        catch(Exception e) {
+            logger.error(e.getMessage(), e);
+            restChannel.sendResponse(new XContentThrowableRestResponse(request, e));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.duniter.elasticsearch.action.currency;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.duniter.elasticsearch.rest.XContentRestResponse;
+import org.duniter.elasticsearch.rest.XContentThrowableRestResponse;
+import org.duniter.elasticsearch.service.blockchain.BlockSnapshotService;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import java.io.File;
+
+import static org.duniter.elasticsearch.rest.RestXContentBuilder.restContentBuilder;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+import static org.elasticsearch.rest.RestStatus.BAD_REQUEST;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Export blocks into a snapshot file (in the snapshot directory), or import it:
+ * POST /{currency}/block/_snapshot?name=&lt;file name&gt;
+ * POST /{currency}/block/_restore?name=&lt;file name&gt;
+ * These actions are not allowed by the security filter (node administration only).
+ */
+public class RestCurrencySnapshotAction extends BaseRestHandler {
+
+    private final BlockSnapshotService blockSnapshotService;
+
+    @Inject
+    public RestCurrencySnapshotAction(Settings settings, RestController controller, Client client,
+                                      BlockSnapshotService blockSnapshotService) {
+        super(settings, controller, client);
+        controller.registerHandler(POST, "/{index}/block/_snapshot", this);
+        controller.registerHandler(POST, "/{index}/block/_restore", this);
+        this.blockSnapshotService = blockSnapshotService;
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
+        String currencyName = request.param("index");
+        String name = request.param("name");
+        if (name == null) {
+            restChannel.sendResponse(new BytesRestResponse(BAD_REQUEST, "Missing parameter 'name'"));
+            return;
+        }
+
+        try {
+            File file = blockSnapshotService.getSnapshotFile(name);
+            boolean isRestore = request.path().endsWith("/_restore");
+            int lastNumber = isRestore
+                    ? blockSnapshotService.importSnapshot(file)
+                    : blockSnapshotService.exportSnapshot(currencyName, file);
+
+            XContentBuilder builder = restContentBuilder(request).startObject()
+                    .field("currency", currencyName)
+                    .field("name", name)
+                    .field("lastNumber", lastNumber)
+                    .endObject();
+
+            restChannel.sendResponse(new XContentRestResponse(request, OK, builder));
+        }
+        catch(Exception e) {
+            logger.error(e.getMessage(), e);
+            restChannel.sendResponse(new XContentThrowableRestResponse(request, e));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.duniter.elasticsearch.action.currency;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.duniter.elasticsearch.model.ChainVerification;
+import org.duniter.elasticsearch.rest.XContentRestResponse;
+import org.duniter.elasticsearch.rest.XContentThrowableRestResponse;
+import org.duniter.elasticsearch.service.blockchain.BlockRangeSet;
+import org.duniter.elasticsearch.service.blockchain.BlockchainVerifierService;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import static org.duniter.elasticsearch.rest.RestXContentBuilder.restContentBuilder;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Verify the indexed blockchain (gaps and hash chain), then optionally re-index gaps and breaks:
+ * POST /{currency}/block/_verify?from=&lt;number&gt;&amp;to=&lt;number&gt;&amp;repair=true
+ * This action is not allowed by the security filter (node administration only).
+ */
+public class RestCurrencyVerifyAction extends BaseRestHandler {
+
+    private final BlockchainVerifierService blockchainVerifierService;
+
+    @Inject
+    public RestCurrencyVerifyAction(Settings settings, RestController controller, Client client,
+                                    BlockchainVerifierService blockchainVerifierService) {
+        super(settings, controller, client);
+        controller.registerHandler(POST, "/{index}/block/_verify", this);
+        this.blockchainVerifierService = blockchainVerifierService;
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
+        String currencyName = request.param("index");
+
+        try {
+            int fromNumber = request.paramAsInt("from", 0);
+            int toNumber = request.paramAsInt("to", -1);
+            boolean repair = request.paramAsBoolean("repair", false);
+
+            ChainVerification verification = blockchainVerifierService.verify(currencyName, fromNumber, toNumber);
+
+            XContentBuilder builder = restContentBuilder(request).startObject()
+                    .field(ChainVerification.PROPERTY_CURRENCY, verification.getCurrency())
+                    .field(ChainVerification.PROPERTY_FROM_NUMBER, verification.getFromNumber())
+                    .field(ChainVerification.PROPERTY_TO_NUMBER, verification.getToNumber())
+                    .field(ChainVerification.PROPERTY_BLOCK_COUNT, verification.getBlockCount())
+                    .field(ChainVerification.PROPERTY_VALID, verification.isValid())
+                    .array(ChainVerification.PROPERTY_GAPS, (Object[]) verification.getGaps())
+                    .array(ChainVerification.PROPERTY_BREAKS, (Object[]) verification.getBreaks())
+                    .field(ChainVerification.PROPERTY_DURATION, verification.getDuration());
+
+            // Re-index gaps and breaks (in background)
+            if (repair && !verification.isValid()) {
+                BlockRangeSet repairedBlocks = blockchainVerifierService.repair(verification);
+                builder.array("repair", repairedBlocks.toStrings().toArray());
+            }
+            builder.endObject();
+
+            restChannel.sendResponse(new XContentRestResponse(request, OK, builder));
+        }
+        catch(Exception e) {
+            logger.error(e.getMessage(), e);
+            restChannel.sendResponse(new XContentThrowableRestResponse(request, e));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.duniter.elasticsearch.action.currency;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.duniter.core.client.model.bma.BlockchainParameters;
+import org.duniter.elasticsearch.action.security.RestSecurityController;
+import org.duniter.elasticsearch.rest.XContentRestResponse;
+import org.duniter.elasticsearch.rest.XContentThrowableRestResponse;
+import org.duniter.elasticsearch.service.blockchain.WotGraph;
+import org.duniter.elasticsearch.service.blockchain.WotService;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import static org.duniter.elasticsearch.rest.RestXContentBuilder.restContentBuilder;
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestStatus.NOT_FOUND;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Query the web of trust of a currency (computed in memory):
+ * <ul>
+ *     <li>GET /{currency}/wot/{pubkey}/certifiers : valid certifications received</li>
+ *     <li>GET /{currency}/wot/{pubkey}/certified : valid certifications issued (and remaining stock)</li>
+ *     <li>GET /{currency}/wot/{pubkey}/distance : distance rule check</li>
+ *     <li>GET /{currency}/wot/_sentries : all sentries</li>
+ * </ul>
+ */
+public class RestCurrencyWotAction extends BaseRestHandler {
+
+    private static final String CERTIFIERS = "certifiers";
+    private static final String CERTIFIED = "certified";
+    private static final String DISTANCE = "distance";
+    private static final String SENTRIES = "_sentries";
+
+    private final WotService wotService;
+
+    @Inject
+    public RestCurrencyWotAction(Settings settings, RestController controller, Client client,
+                                 RestSecurityController securityController,
+                                 WotService wotService) {
+        super(settings, controller, client);
+        controller.registerHandler(GET, "/{index}/wot/{pubkey}/" + CERTIFIERS, this);
+        controller.registerHandler(GET, "/{index}/wot/{pubkey}/" + CERTIFIED, this);
+        controller.registerHandler(GET, "/{index}/wot/{pubkey}/" + DISTANCE, this);
+        controller.registerHandler(GET, "/{index}/wot/" + SENTRIES, this);
+        securityController.allow(GET, "/[^/]+/wot/.*");
+        this.wotService = wotService;
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
+        String currencyName = request.param("index");
+        String pubkey = request.param("pubkey");
+        String path = request.path();
+
+        try {
+            if (!wotService.isEnable()) {
+                restChannel.sendResponse(new BytesRestResponse(NOT_FOUND, "WoT graph is disabled"));
+                return;
+            }
+
+            XContentBuilder builder;
+            if (path.endsWith("/" + SENTRIES)) {
+                builder = toSentriesContent(request, currencyName);
+            }
+            else {
+                WotGraph graph = wotService.getGraph(currencyName);
+                int ordinal = graph.getOrdinal(pubkey);
+                if (ordinal == -1) {
+                    restChannel.sendResponse(new BytesRestResponse(NOT_FOUND, String.format("Unknown pubkey [%s]", pubkey)));
+                    return;
+                }
+
+                if (path.endsWith("/" + DISTANCE)) {
+                    builder = toDistanceContent(request, currencyName, pubkey);
+                }
+                else {
+                    builder = toCertificationsContent(request, currencyName, graph, ordinal, path.endsWith("/" + CERTIFIERS));
+                }
+            }
+
+            restChannel.sendResponse(new XContentRestResponse(request, OK, builder));
+        }
+        catch(Exception e) {
+            logger.error(e.getMessage(), e);
+            restChannel.sendResponse(new XContentThrowableRestResponse(request, e));
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected XContentBuilder toCertificationsContent(RestRequest request, String currencyName, WotGraph graph, int ordinal, boolean received) throws IOException {
+        BlockchainParameters params = wotService.getParameters(currencyName);
+        long minTime = wotService.getMinCertificationTime(currencyName);
+        long sigValidity = params != null && params.getSigValidity() != null ? params.getSigValidity() : 0;
+        int[] ordinals = received ? graph.getCertifiers(ordinal, minTime) : graph.getCertified(ordinal, minTime);
+
+        XContentBuilder builder = restContentBuilder(request).startObject()
+                .field("pubkey", graph.getPubkey(ordinal))
+                .field("isMember", graph.isMember(ordinal))
+                .field("blockNumber", graph.getNumber());
+        if (!received && params != null && params.getSigStock() != null) {
+            builder.field("sigStock", params.getSigStock());
+            builder.field("sigStockRemaining", Math.max(0, params.getSigStock() - ordinals.length));
+        }
+
+        builder.startArray(received ? CERTIFIERS : CERTIFIED);
+        for (int other: ordinals) {
+            long time = received ? graph.getCertificationTime(other, ordinal) : graph.getCertificationTime(ordinal, other);
+            builder.startObject()
+                    .field("pubkey", graph.getPubkey(other))
+                    .field("isMember", graph.isMember(other))
+                    .field("time", time)
+                    .field("expiresOn", time + sigValidity)
+                    .endObject();
+        }
+        builder.endArray().endObject();
+        return builder;
+    }
+
+    protected XContentBuilder toDistanceContent(RestRequest request, String currencyName, String pubkey) throws IOException {
+        WotService.Distance distance = wotService.getDistance(currencyName, pubkey);
+        return restContentBuilder(request).startObject()
+                .field("pubkey", pubkey)
+                .field("sentries", distance.sentries)
+                .field("reached", distance.reached)
+                .field("xpercent", distance.xpercent)
+                .field("stepMax", distance.stepMax)
+                .field("outdistanced", distance.outdistanced)
+                .endObject();
+    }
+
+    protected XContentBuilder toSentriesContent(RestRequest request, String currencyName) throws IOException {
+        WotGraph graph = wotService.getGraph(currencyName);
+        int ySentries = wotService.getYSentries(currencyName);
+        BitSet sentries = graph.getSentries(ySentries, wotService.getMinCertificationTime(currencyName));
+
+        XContentBuilder builder = restContentBuilder(request).startObject()
+                .field("blockNumber", graph.getNumber())
+                .field("membersCount", graph.getMembersCount())
+                .field("ySentries", ySentries)
+                .field("count", sentries.cardinality())
+                .startArray("sentries");
+        for (int ordinal = sentries.nextSetBit(0); ordinal >= 0; ordinal = sentries.nextSetBit(ordinal + 1)) {
+            builder.value(graph.getPubkey(ordinal));
+        }
+        builder.endArray().endObject();
+        return builder;
+    }
+}
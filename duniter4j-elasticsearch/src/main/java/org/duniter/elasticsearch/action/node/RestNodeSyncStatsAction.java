@@ -0,0 +1,68 @@
+package org.duniter.elasticsearch.action.node;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.duniter.elasticsearch.rest.XContentRestResponse;
+import org.duniter.elasticsearch.rest.XContentThrowableRestResponse;
+import org.duniter.elasticsearch.service.BlockchainService;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import static org.duniter.elasticsearch.rest.RestXContentBuilder.restContentBuilder;
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Get the blockchain sync metrics (fetch, parse, bulk, fork and repair), by currency and by peer:
+ * GET /_duniter/sync/stats?currency=&lt;currency&gt;
+ * This action is not allowed by the security filter (node administration only).
+ */
+public class RestNodeSyncStatsAction extends BaseRestHandler {
+
+    private final BlockchainService blockchainService;
+
+    @Inject
+    public RestNodeSyncStatsAction(Settings settings, RestController controller, Client client,
+                                   BlockchainService blockchainService) {
+        super(settings, controller, client);
+        controller.registerHandler(GET, "/_duniter/sync/stats", this);
+        this.blockchainService = blockchainService;
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
+        try {
+            XContentBuilder builder = restContentBuilder(request).startObject();
+            blockchainService.getSyncMetrics().toXContent(builder, request, request.param("currency"));
+            builder.endObject();
+
+            restChannel.sendResponse(new XContentRestResponse(request, OK, builder));
+        }
+        catch(Exception e) {
+            logger.error(e.getMessage(), e);
+            restChannel.sendResponse(new XContentThrowableRestResponse(request, e));
+        }
+    }
+}
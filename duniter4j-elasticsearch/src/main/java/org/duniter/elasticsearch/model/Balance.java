@@ -0,0 +1,105 @@
+package org.duniter.elasticsearch.model;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Balance of an account (a pubkey), computed from indexed blocks.
+ * Outputs locked by another condition than a single SIG(pubkey) are counted on a balance of the condition
+ * (with a null pubkey).
+ * Amounts are in base units (e.g. amount x 10^base)
+ */
+public class Balance implements Serializable {
+
+    public static final String PROPERTY_PUBKEY = "pubkey";
+    public static final String PROPERTY_CONDITION = "condition";
+    public static final String PROPERTY_AMOUNT = "amount";
+    public static final String PROPERTY_UD_COUNT = "udCount";
+    public static final String PROPERTY_MEMBER = "member";
+    public static final String PROPERTY_BLOCK_NUMBER = "blockNumber";
+
+    private String pubkey;
+    private String condition;
+    private Long amount;
+    private Integer udCount;
+    private Boolean member;
+    private Integer blockNumber;
+
+    public String getPubkey() {
+        return pubkey;
+    }
+
+    public void setPubkey(String pubkey) {
+        this.pubkey = pubkey;
+    }
+
+    /**
+     * @return the output condition (e.g. 'SIG(A) && XHX(B)'), or null for a pubkey balance
+     */
+    public String getCondition() {
+        return condition;
+    }
+
+    public void setCondition(String condition) {
+        this.condition = condition;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * @return number of universal dividends received
+     */
+    public Integer getUdCount() {
+        return udCount;
+    }
+
+    public void setUdCount(Integer udCount) {
+        this.udCount = udCount;
+    }
+
+    public Boolean getMember() {
+        return member;
+    }
+
+    public void setMember(Boolean member) {
+        this.member = member;
+    }
+
+    /**
+     * @return the last block that changed this balance
+     */
+    public Integer getBlockNumber() {
+        return blockNumber;
+    }
+
+    public void setBlockNumber(Integer blockNumber) {
+        this.blockNumber = blockNumber;
+    }
+}
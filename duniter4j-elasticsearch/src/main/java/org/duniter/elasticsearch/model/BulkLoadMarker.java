@@ -0,0 +1,93 @@
+package org.duniter.elasticsearch.model;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Marker stored in a currency index, while the index uses bulk-load settings.
+ * It keeps the original index settings, so they can be restored (even after a crash).
+ */
+public class BulkLoadMarker implements Serializable {
+
+    public static final String PROPERTY_CURRENCY = "currency";
+    public static final String PROPERTY_REFRESH_INTERVAL = "refreshInterval";
+    public static final String PROPERTY_NUMBER_OF_REPLICAS = "numberOfReplicas";
+    public static final String PROPERTY_TRANSLOG_DURABILITY = "translogDurability";
+    public static final String PROPERTY_TIME = "time";
+
+    private String currency;
+    private String refreshInterval;
+    private String numberOfReplicas;
+    private String translogDurability;
+    private Long time;
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    /**
+     * @return the original 'index.refresh_interval', or null if not set
+     */
+    public String getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(String refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @return the original 'index.number_of_replicas', or null if not set
+     */
+    public String getNumberOfReplicas() {
+        return numberOfReplicas;
+    }
+
+    public void setNumberOfReplicas(String numberOfReplicas) {
+        this.numberOfReplicas = numberOfReplicas;
+    }
+
+    /**
+     * @return the original 'index.translog.durability', or null if not set
+     */
+    public String getTranslogDurability() {
+        return translogDurability;
+    }
+
+    public void setTranslogDurability(String translogDurability) {
+        this.translogDurability = translogDurability;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+}
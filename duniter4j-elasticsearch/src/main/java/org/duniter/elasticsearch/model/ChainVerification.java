@@ -0,0 +1,120 @@
+package org.duniter.elasticsearch.model;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Result of a verification of the indexed blockchain of a currency (see BlockchainVerifierService)
+ */
+public class ChainVerification implements Serializable {
+
+    public static final String PROPERTY_CURRENCY = "currency";
+    public static final String PROPERTY_FROM_NUMBER = "fromNumber";
+    public static final String PROPERTY_TO_NUMBER = "toNumber";
+    public static final String PROPERTY_BLOCK_COUNT = "blockCount";
+    public static final String PROPERTY_GAPS = "gaps";
+    public static final String PROPERTY_BREAKS = "breaks";
+    public static final String PROPERTY_VALID = "valid";
+    public static final String PROPERTY_DURATION = "duration";
+
+    private String currency;
+    private Integer fromNumber;
+    private Integer toNumber;
+    private Long blockCount;
+    private String[] gaps;
+    private String[] breaks;
+    private Long duration;
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public Integer getFromNumber() {
+        return fromNumber;
+    }
+
+    public void setFromNumber(Integer fromNumber) {
+        this.fromNumber = fromNumber;
+    }
+
+    public Integer getToNumber() {
+        return toNumber;
+    }
+
+    public void setToNumber(Integer toNumber) {
+        this.toNumber = toNumber;
+    }
+
+    /**
+     * @return number of verified blocks
+     */
+    public Long getBlockCount() {
+        return blockCount;
+    }
+
+    public void setBlockCount(Long blockCount) {
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * @return block numbers (or ranges, as 'from-to') not found in the index
+     */
+    public String[] getGaps() {
+        return gaps;
+    }
+
+    public void setGaps(String[] gaps) {
+        this.gaps = gaps;
+    }
+
+    /**
+     * @return block numbers (or ranges, as 'from-to') whose 'previousHash' is not the hash of the previous block
+     */
+    public String[] getBreaks() {
+        return breaks;
+    }
+
+    public void setBreaks(String[] breaks) {
+        this.breaks = breaks;
+    }
+
+    public boolean isValid() {
+        return (gaps == null || gaps.length == 0) && (breaks == null || breaks.length == 0);
+    }
+
+    /**
+     * @return verification duration (ms)
+     */
+    public Long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Long duration) {
+        this.duration = duration;
+    }
+}
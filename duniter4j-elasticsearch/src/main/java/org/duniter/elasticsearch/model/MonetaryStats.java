@@ -0,0 +1,175 @@
+package org.duniter.elasticsearch.model;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Monetary statistics of a currency, aggregated over a period (a day, a week or a month).
+ * Amounts are in base units (e.g. amount x 10^base)
+ */
+public class MonetaryStats implements Serializable {
+
+    public static final String PROPERTY_PERIOD = "period";
+    public static final String PROPERTY_DATE = "date";
+    public static final String PROPERTY_TIME = "time";
+    public static final String PROPERTY_FIRST_BLOCK = "firstBlock";
+    public static final String PROPERTY_LAST_BLOCK = "lastBlock";
+    public static final String PROPERTY_BLOCK_COUNT = "blockCount";
+    public static final String PROPERTY_MEMBERS_COUNT = "membersCount";
+    public static final String PROPERTY_MEMBERS_COUNT_MIN = "membersCountMin";
+    public static final String PROPERTY_MEMBERS_COUNT_MAX = "membersCountMax";
+    public static final String PROPERTY_MONETARY_MASS = "monetaryMass";
+    public static final String PROPERTY_DIVIDEND = "dividend";
+    public static final String PROPERTY_UD_COUNT = "udCount";
+
+    private String period;
+    private String date;
+    private Long time;
+    private Integer firstBlock;
+    private Integer lastBlock;
+    private Integer blockCount;
+    private Integer membersCount;
+    private Integer membersCountMin;
+    private Integer membersCountMax;
+    private Long monetaryMass;
+    private Long dividend;
+    private Integer udCount;
+
+    /**
+     * @return 'day', 'week' or 'month'
+     */
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    /**
+     * @return first day of the period (ISO format, e.g. '2016-11-01')
+     */
+    public String getDate() {
+        return date;
+    }
+
+    public void setDate(String date) {
+        this.date = date;
+    }
+
+    /**
+     * @return start of the period, in seconds (UTC)
+     */
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+
+    public Integer getFirstBlock() {
+        return firstBlock;
+    }
+
+    public void setFirstBlock(Integer firstBlock) {
+        this.firstBlock = firstBlock;
+    }
+
+    public Integer getLastBlock() {
+        return lastBlock;
+    }
+
+    public void setLastBlock(Integer lastBlock) {
+        this.lastBlock = lastBlock;
+    }
+
+    public Integer getBlockCount() {
+        return blockCount;
+    }
+
+    public void setBlockCount(Integer blockCount) {
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * @return members count, at the last block of the period
+     */
+    public Integer getMembersCount() {
+        return membersCount;
+    }
+
+    public void setMembersCount(Integer membersCount) {
+        this.membersCount = membersCount;
+    }
+
+    public Integer getMembersCountMin() {
+        return membersCountMin;
+    }
+
+    public void setMembersCountMin(Integer membersCountMin) {
+        this.membersCountMin = membersCountMin;
+    }
+
+    public Integer getMembersCountMax() {
+        return membersCountMax;
+    }
+
+    public void setMembersCountMax(Integer membersCountMax) {
+        this.membersCountMax = membersCountMax;
+    }
+
+    /**
+     * @return monetary mass, at the last block of the period
+     */
+    public Long getMonetaryMass() {
+        return monetaryMass;
+    }
+
+    public void setMonetaryMass(Long monetaryMass) {
+        this.monetaryMass = monetaryMass;
+    }
+
+    /**
+     * @return the last universal dividend of the period (or null if none)
+     */
+    public Long getDividend() {
+        return dividend;
+    }
+
+    public void setDividend(Long dividend) {
+        this.dividend = dividend;
+    }
+
+    /**
+     * @return number of universal dividends created in the period
+     */
+    public Integer getUdCount() {
+        return udCount;
+    }
+
+    public void setUdCount(Integer udCount) {
+        this.udCount = udCount;
+    }
+}
@@ -0,0 +1,103 @@
+package org.duniter.elasticsearch.model;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * State of the blockchain sync of a currency, stored in the currency index.
+ * Used to resume the sync, without querying all indexed blocks.
+ */
+public class SyncCheckpoint implements Serializable {
+
+    public static final String PROPERTY_CURRENCY = "currency";
+    public static final String PROPERTY_NUMBER = "number";
+    public static final String PROPERTY_HASH = "hash";
+    public static final String PROPERTY_PEER = "peer";
+    public static final String PROPERTY_MISSING_BLOCKS = "missingBlocks";
+    public static final String PROPERTY_TIME = "time";
+
+    private String currency;
+    private Integer number;
+    private String hash;
+    private String peer;
+    private String[] missingBlocks;
+    private Long time;
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    /**
+     * @return the last block number, such as all previous blocks are indexed (or listed in missing blocks)
+     */
+    public Integer getNumber() {
+        return number;
+    }
+
+    public void setNumber(Integer number) {
+        this.number = number;
+    }
+
+    /**
+     * @return the hash of the block <code>number</code>, or null if unknown
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getPeer() {
+        return peer;
+    }
+
+    public void setPeer(String peer) {
+        this.peer = peer;
+    }
+
+    /**
+     * @return block numbers (or ranges, as 'from-to') that could not be indexed
+     */
+    public String[] getMissingBlocks() {
+        return missingBlocks;
+    }
+
+    public void setMissingBlocks(String[] missingBlocks) {
+        this.missingBlocks = missingBlocks;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+}
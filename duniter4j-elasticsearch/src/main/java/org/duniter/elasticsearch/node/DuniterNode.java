@@ -24,9 +24,14 @@ package org.duniter.elasticsearch.node;
 
 import org.duniter.core.client.model.elasticsearch.Currency;
 import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.StringUtils;
 import org.duniter.elasticsearch.PluginSettings;
 import org.duniter.elasticsearch.action.security.RestSecurityController;
 import org.duniter.elasticsearch.service.*;
+import org.duniter.elasticsearch.service.blockchain.BlockEventService;
+import org.duniter.elasticsearch.service.blockchain.BlockSnapshotService;
+import org.duniter.elasticsearch.service.blockchain.BlockchainSyncScheduler;
 import org.duniter.elasticsearch.service.synchro.SynchroService;
 import org.duniter.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
@@ -38,6 +43,8 @@ import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.rest.RestRequest;
 
+import java.io.File;
+
 /**
  * Created by blavenie on 17/06/16.
  */
@@ -75,7 +82,8 @@ public class DuniterNode extends AbstractLifecycleComponent<DuniterNode> {
 
     @Override
     protected void doClose() {
-
+        injector.getInstance(BlockchainSyncScheduler.class).close();
+        injector.getInstance(BlockchainService.class).close();
     }
 
     protected void createIndices() {
@@ -127,25 +135,45 @@ public class DuniterNode extends AbstractLifecycleComponent<DuniterNode> {
     protected void synchronize() {
         if (pluginSettings.enableBlockchainSync()) {
 
-            Peer peer = pluginSettings.checkAndGetPeer();
+            // Index blocks of each currency (and listen if new block appear), in background
+            BlockchainSyncScheduler syncScheduler = injector.getInstance(BlockchainSyncScheduler.class);
+            for (Peer peer: pluginSettings.getSyncPeers()) {
+                syncScheduler.schedule(peer, () -> initBlockchainSync(peer));
+            }
+        }
 
-            // Index (or refresh) node's currency
-            Currency currency = injector.getInstance(RegistryService.class).indexCurrencyFromPeer(peer, true);
+        if (pluginSettings.enableDataSync()) {
+            // Synchronize
+            injector.getInstance(SynchroService.class).synchronize();
+        }
+    }
 
-            // Add access to currency index
+    protected void initBlockchainSync(Peer peer) {
+        // Index (or refresh) node's currency
+        Currency currency = injector.getInstance(RegistryService.class).indexCurrencyFromPeer(peer, true);
+
+        // Add access to currency index
+        injector.getInstance(RestSecurityController.class).allowIndexType(RestRequest.Method.GET,
+                currency.getCurrencyName(),
+                BlockchainService.BLOCK_TYPE);
+        injector.getInstance(RestSecurityController.class).allowIndexType(RestRequest.Method.GET,
+                currency.getCurrencyName(),
+                BlockchainService.FORK_ARCHIVE_TYPE);
+        for (String eventType: BlockEventService.EVENT_TYPES) {
             injector.getInstance(RestSecurityController.class).allowIndexType(RestRequest.Method.GET,
                     currency.getCurrencyName(),
-                    BlockchainService.BLOCK_TYPE);
-
-            // Index blocks (and listen if new block appear)
-            injector.getInstance(BlockchainService.class)
-                    .indexLastBlocks(peer)
-                    .listenAndIndexNewBlock(peer);
+                    eventType);
         }
 
-        if (pluginSettings.enableDataSync()) {
-            // Synchronize
-            injector.getInstance(SynchroService.class).synchronize();
+        // Bootstrap from a snapshot, if any (next sync will only fetch missing blocks)
+        String snapshotFile = pluginSettings.getBlockchainSnapshotBootstrapFile();
+        if (StringUtils.isNotBlank(snapshotFile)) {
+            try {
+                injector.getInstance(BlockSnapshotService.class).importSnapshot(currency.getCurrencyName(), new File(snapshotFile));
+            }
+            catch(TechnicalException e) {
+                logger.error(String.format("Unable to import blockchain snapshot: %s", e.getMessage()), e);
+            }
         }
     }
 }
@@ -23,6 +23,7 @@ package org.duniter.elasticsearch.service;
  */
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -31,28 +32,49 @@ import org.duniter.core.client.model.bma.BlockchainBlock;
 import org.duniter.core.client.model.bma.BlockchainParameters;
 import org.duniter.core.client.model.bma.EndpointProtocol;
 import org.duniter.core.client.model.bma.gson.GsonUtils;
-import org.duniter.core.client.model.bma.gson.JsonAttributeParser;
+import org.duniter.core.client.model.bma.gson.JsonBlockHeaderParser;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.service.bma.BlockchainRemoteService;
 import org.duniter.core.client.service.bma.NetworkRemoteService;
 import org.duniter.core.client.service.exception.BlockNotFoundException;
 import org.duniter.core.client.service.exception.HttpBadRequestException;
 import org.duniter.core.client.service.exception.JsonSyntaxException;
+import org.duniter.core.exception.BusinessException;
 import org.duniter.core.exception.TechnicalException;
 import org.duniter.core.model.NullProgressionModel;
 import org.duniter.core.model.ProgressionModel;
-import org.duniter.core.model.ProgressionModelImpl;
 import org.duniter.core.util.CollectionUtils;
 import org.duniter.core.util.ObjectUtils;
 import org.duniter.core.util.StringUtils;
 import org.duniter.elasticsearch.PluginSettings;
 import org.duniter.elasticsearch.exception.DuplicateIndexIdException;
+import org.duniter.elasticsearch.model.SyncCheckpoint;
+import org.duniter.elasticsearch.service.blockchain.AdaptiveBatchSizer;
+import org.duniter.elasticsearch.service.blockchain.BlockHashRing;
+import org.duniter.elasticsearch.service.blockchain.BlockRangeSet;
+import org.duniter.elasticsearch.service.blockchain.BalanceService;
+import org.duniter.elasticsearch.service.blockchain.BlockEventService;
+import org.duniter.elasticsearch.service.blockchain.BlockRepositoryService;
+import org.duniter.elasticsearch.service.blockchain.BulkLoadService;
+import org.duniter.elasticsearch.service.blockchain.MonetaryStatsService;
+import org.duniter.elasticsearch.service.blockchain.PeerScoreBoard;
+import org.duniter.elasticsearch.service.blockchain.SyncMetrics;
+import org.duniter.elasticsearch.service.blockchain.WotService;
 import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.admin.indices.exists.types.TypesExistsResponse;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
@@ -60,10 +82,17 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
@@ -74,7 +103,11 @@ import org.elasticsearch.search.sort.SortOrder;
 import org.nuiton.i18n.I18n;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Benoit on 30/03/2015.
@@ -83,30 +116,77 @@ public class BlockchainService extends AbstractService {
 
     public static final String BLOCK_TYPE = "block";
     public static final String CURRENT_BLOCK_ID = "current";
+    public static final String SYNC_CHECKPOINT_TYPE = "checkpoint";
+    public static final String SYNC_CHECKPOINT_ID = "sync";
+    public static final String FORK_ARCHIVE_TYPE = "fork";
 
-    private static final int SYNC_MISSING_BLOCK_MAX_RETRY = 5;
+    // Hash prefixes indexed in the sub-field 'hash.prefix' (shorter prefixes use a prefix query on 'hash')
+    public static final int HASH_PREFIX_MIN_LENGTH = 4;
+    public static final int HASH_PREFIX_MAX_LENGTH = 16;
 
     private final ProgressionModel nullProgressionModel = new NullProgressionModel();
 
     private BlockchainRemoteService blockchainRemoteService;
+    private NetworkRemoteService networkRemoteService;
     private RegistryService registryService;
+    private BlockRepositoryService blockRepositoryService;
+    private BulkLoadService bulkLoadService;
+    private BlockEventService blockEventService;
+    private BalanceService balanceService;
+    private WotService wotService;
+    private MonetaryStatsService monetaryStatsService;
     private ThreadPool threadPool;
 
-    private JsonAttributeParser blockNumberParser = new JsonAttributeParser("number");
-    private JsonAttributeParser blockCurrencyParser = new JsonAttributeParser("currency");
-    private JsonAttributeParser blockHashParser = new JsonAttributeParser("hash");
-    private JsonAttributeParser blockPreviousHashParser = new JsonAttributeParser("previousHash");
+    private final JsonBlockHeaderParser blockHeaderParser = new JsonBlockHeaderParser(
+            JsonBlockHeaderParser.Field.NUMBER,
+            JsonBlockHeaderParser.Field.CURRENCY,
+            JsonBlockHeaderParser.Field.HASH,
+            JsonBlockHeaderParser.Field.PREVIOUS_HASH);
+    private final JsonBlockHeaderParser blockNumberAndHashParser = new JsonBlockHeaderParser(
+            JsonBlockHeaderParser.Field.NUMBER,
+            JsonBlockHeaderParser.Field.HASH);
 
     private Gson gson;
 
+    private BulkProcessor bulkProcessor;
+    // Sync run of each request added to the bulk processor (by identity), until processed
+    private final Map<ActionRequest, BulkProcessorRun> bulkProcessorRuns = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<String, SyncCheckpoint> syncCheckpoints = new ConcurrentHashMap<>();
+    private final Set<String> noSyncCheckpoints = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingSyncCheckpointSaves = ConcurrentHashMap.newKeySet();
+    // Lock of checkpoint updates (read-modify-write), by currency
+    private final Map<String, Object> syncCheckpointLocks = new ConcurrentHashMap<>();
+    private final Map<String, BlockHashRing> blockHashRings = new ConcurrentHashMap<>();
+    private final BlockingQueue<NewBlock> newBlockQueue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean newBlockDrainScheduled = new AtomicBoolean(false);
+    private final Set<String> pendingRefreshIndices = ConcurrentHashMap.newKeySet();
+    private ExecutorService newBlockExecutor;
+    private final PeerScoreBoard peerScores = new PeerScoreBoard();
+    private final AdaptiveBatchSizer batchSizer;
+    private final SyncMetrics syncMetrics = new SyncMetrics();
+    private final Map<String, Boolean> hashPrefixFields = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> repairJobs = new ConcurrentHashMap<>();
+    private final Set<String> runningRepairs = ConcurrentHashMap.newKeySet();
+    private final Map<String, Peer> syncPeers = new ConcurrentHashMap<>();
+    private ExecutorService repairExecutor;
+    private ExecutorService syncExecutor;
+
     @Inject
     public BlockchainService(Client client, PluginSettings settings, ThreadPool threadPool,
                              final ServiceLocator serviceLocator){
         super("duniter.blockchain", client, settings);
         this.gson = GsonUtils.newBuilder().create();
         this.threadPool = threadPool;
+        this.batchSizer = pluginSettings.isSyncAdaptiveBatchEnable()
+                ? new AdaptiveBatchSizer(pluginSettings.getIndexBulkSize(),
+                        pluginSettings.getSyncBatchMinSize(),
+                        pluginSettings.getSyncBatchMaxSize(),
+                        pluginSettings.getSyncBatchTargetBytes().bytes(),
+                        pluginSettings.getSyncBatchTargetTime().millis())
+                : null;
         threadPool.scheduleOnStarted(() -> {
             blockchainRemoteService = serviceLocator.getBlockchainRemoteService();
+            networkRemoteService = serviceLocator.getNetworkRemoteService();
         });
     }
 
@@ -115,9 +195,43 @@ public class BlockchainService extends AbstractService {
         this.registryService = registryService;
     }
 
+    @Inject
+    public void setBlockRepositoryService(BlockRepositoryService blockRepositoryService) {
+        this.blockRepositoryService = blockRepositoryService;
+    }
+
+    @Inject
+    public void setBulkLoadService(BulkLoadService bulkLoadService) {
+        this.bulkLoadService = bulkLoadService;
+    }
+
+    @Inject
+    public void setBlockEventService(BlockEventService blockEventService) {
+        this.blockEventService = blockEventService;
+    }
+
+    @Inject
+    public void setBalanceService(BalanceService balanceService) {
+        this.balanceService = balanceService;
+    }
+
+    @Inject
+    public void setWotService(WotService wotService) {
+        this.wotService = wotService;
+    }
+
+    @Inject
+    public void setMonetaryStatsService(MonetaryStatsService monetaryStatsService) {
+        this.monetaryStatsService = monetaryStatsService;
+    }
+
+    public SyncMetrics getSyncMetrics() {
+        return syncMetrics;
+    }
+
     public BlockchainService listenAndIndexNewBlock(Peer peer){
         blockchainRemoteService.addNewBlockListener(peer, message -> {
-            indexLastBlockFromJson(peer, message);
+            enqueueNewBlock(peer, message);
         });
         return this;
     }
@@ -128,11 +242,28 @@ public class BlockchainService extends AbstractService {
     }
 
     public BlockchainService indexLastBlocks(Peer peer, ProgressionModel progressionModel) {
+        indexNextBlocks(peer, -1, progressionModel);
+        return this;
+    }
+
+    /**
+     * Index blocks from the last indexed block, up to <code>maxBlockCount</code> blocks
+     * (e.g. to let other currencies sync, between two calls).
+     * When the bulk-load profile is used, it is kept between calls, and restored only when the sync is finished
+     * (or has failed).
+     * @param maxBlockCount max number of blocks to index, or -1 to index all blocks
+     * @return true if the index is up to date with the peer current block
+     */
+    public boolean indexNextBlocks(Peer peer, int maxBlockCount, ProgressionModel progressionModel) {
         boolean bulkIndex = pluginSettings.isIndexBulkEnable();
+        boolean parallelIndex = bulkIndex && pluginSettings.isIndexParallelSyncEnable();
 
         progressionModel.setStatus(ProgressionModel.Status.RUNNING);
         progressionModel.setTotal(100);
         long timeStart = System.currentTimeMillis();
+        String bulkLoadIndex = null; // index in bulk-load mode, during this call
+        boolean keepBulkLoad = false; // true if the bulk-load mode should be kept, for the next call
+        boolean syncFinished = false;
 
         try {
             // Get the blockchain name from node
@@ -140,9 +271,10 @@ public class BlockchainService extends AbstractService {
             if (parameter == null) {
                 progressionModel.setStatus(ProgressionModel.Status.FAILED);
                 logger.error(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.remoteParametersError",peer));
-                return this;
+                return false;
             }
             String currencyName = parameter.getCurrency();
+            syncPeers.put(currencyName, peer);
 
             progressionModel.setTask(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.task", currencyName, peer));
             logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.task", currencyName, peer));
@@ -154,35 +286,64 @@ public class BlockchainService extends AbstractService {
 
             // Check if index exists
             createIndexIfNotExists(currencyName, true/*wait cluster health*/);
+            bulkLoadService.restoreIfStale(currencyName);
+            if (bulkLoadService.isBulkLoad(currencyName)) {
+                bulkLoadIndex = currencyName; // kept by the previous call
+            }
+            createForkArchiveTypeIfNotExists(currencyName);
+            blockEventService.createTypesIfNotExists(currencyName);
+            balanceService.createTypesIfNotExists(currencyName);
+            monetaryStatsService.createTypesIfNotExists(currencyName);
+
+            // Load last block hashes
+            getBlockHashRing(currencyName);
 
             // Then index all blocks
             BlockchainBlock peerCurrentBlock = blockchainRemoteService.getCurrentBlock(peer);
 
             if (peerCurrentBlock != null) {
                 final int peerCurrentBlockNumber = peerCurrentBlock.getNumber();
+                int lastNumber = peerCurrentBlockNumber;
+                String lastHash = peerCurrentBlock.getHash();
 
                 // Get the last indexed block number
                 int startNumber = 0;
+                String indexedStartPreviousHash = null;
+                Collection<String> missingBlocks = new LinkedHashSet<>();
+
+                // Check if a previous sync has been done, using the sync checkpoint (one GET)
+                SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+                if (checkpoint != null && checkpoint.getNumber() != null) {
+                    startNumber = checkpoint.getNumber() + 1;
+                    indexedStartPreviousHash = checkpoint.getHash();
+
+                    // Blocks still missing from a previous sync
+                    if (checkpoint.getMissingBlocks() != null) {
+                        missingBlocks.addAll(Arrays.asList(checkpoint.getMissingBlocks()));
+                    }
+                }
 
-                // Check if a previous sync has been done
-                BlockchainBlock indexedCurrentBlock = getCurrentBlock(currencyName);
-                if (indexedCurrentBlock != null && indexedCurrentBlock.getNumber() != null) {
-                    int indexedCurrentBlockNumber = indexedCurrentBlock.getNumber();
+                // No checkpoint (index filled by an older version): use indexed blocks
+                else {
+                    BlockchainBlock indexedCurrentBlock = getCurrentBlock(currencyName);
+                    if (indexedCurrentBlock != null && indexedCurrentBlock.getNumber() != null) {
+                        int indexedCurrentBlockNumber = indexedCurrentBlock.getNumber();
 
-                    // Make sure this block has been indexed by its number (not only with _id='current')
-                    indexedCurrentBlock = getBlockById(currencyName, indexedCurrentBlockNumber);
+                        // Make sure this block has been indexed by its number (not only with _id='current')
+                        indexedCurrentBlock = blockRepositoryService.getBlockHeader(currencyName, indexedCurrentBlockNumber);
 
-                    // If current block exists on index, by _id=number AND _id=current
-                    // then keep it and sync only next blocks
-                    if (indexedCurrentBlock != null) {
-                        startNumber = indexedCurrentBlockNumber + 1;
+                        // If current block exists on index, by _id=number AND _id=current
+                        // then keep it and sync only next blocks
+                        if (indexedCurrentBlock != null) {
+                            startNumber = indexedCurrentBlockNumber + 1;
+                        }
                     }
-                }
 
-                // When current block not found,
-                // try to use the max(number), because block with _id='current' may not has been indexed
-                if (startNumber <= 1 ){
-                    startNumber = getMaxBlockNumber(currencyName) + 1;
+                    // When current block not found,
+                    // try to use the max(number), because block with _id='current' may not has been indexed
+                    if (startNumber <= 1 ){
+                        startNumber = getMaxBlockNumber(currencyName) + 1;
+                    }
                 }
 
                 // If some block has been already indexed: detect and resolve fork
@@ -196,51 +357,142 @@ public class BlockchainService extends AbstractService {
                         // block not exists: use a fake hash for fork detection (will force to compare previous blocks)
                         peerStartPreviousHash = "--";
                     }
-                    boolean resolved = detectAndResolveFork(peer, currencyName, peerStartPreviousHash, startNumber - 1);
-                    if (!resolved) {
-                        // Bad blockchain ! skipping sync
-                        logger.error(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.invalidBlockchain", currencyName, peer));
-                        return this;
+
+                    // Same hash as the checkpoint: no fork, so skip indexed blocks lookup
+                    if (indexedStartPreviousHash == null || !indexedStartPreviousHash.equals(peerStartPreviousHash)) {
+                        boolean resolved = detectAndResolveFork(peer, currencyName, peerStartPreviousHash, startNumber - 1);
+                        if (!resolved) {
+                            // Bad blockchain ! skipping sync
+                            logger.error(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.invalidBlockchain", currencyName, peer));
+                            return false;
+                        }
                     }
                 }
 
                 if (startNumber <= peerCurrentBlockNumber) {
-                    Collection<String> missingBlocks = bulkIndex
-                            ? indexBlocksUsingBulk(peer, currencyName, startNumber, peerCurrentBlockNumber, progressionModel)
-                            : indexBlocksNoBulk(peer, currencyName, startNumber, peerCurrentBlockNumber, progressionModel);
-
-                    // If some blocks are missing, try to get it using other peers
-                    if (CollectionUtils.isNotEmpty(missingBlocks)) {
-                        progressionModel.setTask(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.otherPeers.task", currencyName));
-                        missingBlocks = indexMissingBlocksFromOtherPeers(peer, peerCurrentBlock, missingBlocks, 1);
+                    // Large sync (e.g. new index): switch index settings into bulk-load mode
+                    // (original settings will be restored when the sync ends, or at next start if the node stopped)
+                    if (bulkLoadIndex == null && bulkIndex && bulkLoadService.isBulkLoadNeed(peerCurrentBlockNumber - startNumber + 1)) {
+                        bulkLoadIndex = currencyName;
+                        bulkLoadService.startBulkLoad(currencyName);
                     }
 
-                    if (CollectionUtils.isEmpty(missingBlocks)) {
-                        logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.succeed", currencyName, peer, (System.currentTimeMillis() - timeStart)));
-                        progressionModel.setStatus(ProgressionModel.Status.SUCCESS);
+                    // Limit the number of blocks to index
+                    if (maxBlockCount > 0 && peerCurrentBlockNumber - startNumber + 1 > maxBlockCount) {
+                        lastNumber = startNumber + maxBlockCount - 1;
+                        lastHash = null;
                     }
-                    else {
-                        logger.warn(String.format("[%s] [%s] Could not indexed all blocks. Missing %s blocks.", currencyName, peer, missingBlocks.size()));
-                        progressionModel.setStatus(ProgressionModel.Status.FAILED);
+
+                    // Use parallel download, only if more than one batch is need
+                    boolean useParallel = parallelIndex
+                            && (lastNumber - startNumber) > pluginSettings.getIndexBulkSize();
+
+                    Collection<String> syncMissingBlocks = useParallel
+                            ? indexBlocksUsingParallelBulk(peer, currencyName, startNumber, lastNumber, progressionModel)
+                            : (bulkIndex
+                                ? indexBlocksUsingBulk(peer, currencyName, startNumber, lastNumber, progressionModel)
+                                : indexBlocksNoBulk(peer, currencyName, startNumber, lastNumber, progressionModel));
+                    if (progressionModel.getStatus() == ProgressionModel.Status.STOPPED) {
+                        return false;
                     }
+                    if (syncMissingBlocks != null) {
+                        missingBlocks.addAll(syncMissingBlocks);
+                    }
+                    if (lastHash == null) {
+                        lastHash = getBlockHashRing(currencyName).getHash(lastNumber);
+                    }
+                }
+                else if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("[%s] [%s] Already up to date at block #%s.", currencyName, peer, peerCurrentBlockNumber));
+                }
+
+                // Save the checkpoint, for the next sync
+                saveSyncCheckpoint(currencyName, peer, lastNumber, lastHash, missingBlocks);
+
+                // Apply new blocks to balances, WoT and stats
+                balanceService.updateBalances(currencyName, lastNumber);
+                wotService.updateGraph(currencyName, lastNumber);
+                monetaryStatsService.updateStats(currencyName, lastNumber);
+
+                // Not finished: next blocks will be indexed by the next call (keeping the bulk-load mode)
+                if (lastNumber < peerCurrentBlockNumber) {
+                    logger.info(String.format("[%s] [%s] Indexed blocks up to #%s (current is #%s), in %s ms", currencyName, peer,
+                            lastNumber, peerCurrentBlockNumber, System.currentTimeMillis() - timeStart));
+                    progressionModel.setStatus(ProgressionModel.Status.SUCCESS);
+                    keepBulkLoad = true;
+                    return false;
+                }
+
+                syncFinished = true;
+
+                if (CollectionUtils.isEmpty(missingBlocks)) {
+                    logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.succeed", currencyName, peer, (System.currentTimeMillis() - timeStart)));
+                    progressionModel.setStatus(ProgressionModel.Status.SUCCESS);
                 }
                 else {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug(String.format("[%s] [%s] Already up to date at block #%s.", currencyName, peer, peerCurrentBlockNumber));
-                    }
+                    // Missing blocks will be fetched in background, from other peers
+                    logger.warn(String.format("[%s] [%s] Could not indexed all blocks. Missing blocks %s will be repaired in background.", currencyName, peer,
+                            BlockRangeSet.parse(missingBlocks)));
+                    scheduleMissingBlocksRepair(peer, currencyName);
                     progressionModel.setStatus(ProgressionModel.Status.SUCCESS);
                 }
+                return true;
             }
         } catch(Exception e) {
             logger.error("Error during indexBlocksFromNode: " + e.getMessage(), e);
             progressionModel.setStatus(ProgressionModel.Status.FAILED);
         }
+        finally {
+            // Restore index settings, if bulk-load was used and the sync is finished or has failed
+            // (optimize the index only when the sync is finished)
+            if (bulkLoadIndex != null && !keepBulkLoad) {
+                try {
+                    bulkLoadService.stopBulkLoad(bulkLoadIndex, syncFinished);
+                }
+                catch(Exception e) {
+                    logger.error(String.format("[%s] Unable to restore index settings, after bulk-load: %s", bulkLoadIndex, e.getMessage()), e);
+                }
+            }
+        }
 
-        return this;
+        return false;
+    }
+
+    /**
+     * Close the bulk processor (if any), waiting for pending bulk requests
+     */
+    public void close() {
+        repairJobs.values().forEach(job -> job.cancel(false));
+        repairJobs.clear();
+        if (repairExecutor != null) {
+            repairExecutor.shutdownNow();
+        }
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+        balanceService.close();
+
+        if (bulkProcessor != null) {
+            try {
+                bulkProcessor.awaitClose(30, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e) {
+                // silent
+            }
+            bulkProcessor = null;
+        }
     }
 
     public BlockchainService deleteIndex(String currencyName) {
+        cancelMissingBlocksRepair(currencyName);
         deleteIndexIfExists(currencyName);
+        syncCheckpoints.remove(currencyName);
+        noSyncCheckpoints.remove(currencyName);
+        blockHashRings.remove(currencyName);
+        balanceService.clearCache(currencyName);
+        wotService.clearCache(currencyName);
+        syncMetrics.clear(currencyName);
+        hashPrefixFields.remove(currencyName);
         return this;
     }
 
@@ -268,9 +520,30 @@ public class BlockchainService extends AbstractService {
                 .put("number_of_shards", 1)
                 .put("number_of_replicas", 1)
                 //.put("analyzer", createDefaultAnalyzer())
+                // Hash prefixes (see createBlockType())
+                .put("analysis.filter.hash_prefix.type", "edge_ngram")
+                .put("analysis.filter.hash_prefix.min_gram", HASH_PREFIX_MIN_LENGTH)
+                .put("analysis.filter.hash_prefix.max_gram", HASH_PREFIX_MAX_LENGTH)
+                .put("analysis.analyzer.hash_prefix.type", "custom")
+                .put("analysis.analyzer.hash_prefix.tokenizer", "keyword")
+                .putArray("analysis.analyzer.hash_prefix.filter", "uppercase", "hash_prefix")
+                .put("analysis.analyzer.hash_search.type", "custom")
+                .put("analysis.analyzer.hash_search.tokenizer", "keyword")
+                .putArray("analysis.analyzer.hash_search.filter", "uppercase")
                 .build();
         createIndexRequestBuilder.setSettings(indexSettings);
         createIndexRequestBuilder.addMapping(BLOCK_TYPE, createBlockType());
+        createIndexRequestBuilder.addMapping(SYNC_CHECKPOINT_TYPE, createSyncCheckpointType());
+        createIndexRequestBuilder.addMapping(FORK_ARCHIVE_TYPE, createForkArchiveType());
+        createIndexRequestBuilder.addMapping(BulkLoadService.BULK_LOAD_MARKER_TYPE, bulkLoadService.createBulkLoadMarkerType());
+        for (String eventType: BlockEventService.EVENT_TYPES) {
+            createIndexRequestBuilder.addMapping(eventType, blockEventService.createEventType(eventType));
+        }
+        createIndexRequestBuilder.addMapping(BalanceService.BALANCE_TYPE, balanceService.createBalanceType());
+        createIndexRequestBuilder.addMapping(BalanceService.LEDGER_TYPE, balanceService.createLedgerType());
+        createIndexRequestBuilder.addMapping(BalanceService.LEDGER_SOURCE_TYPE, balanceService.createLedgerSourceType());
+        createIndexRequestBuilder.addMapping(MonetaryStatsService.STATS_TYPE, monetaryStatsService.createStatsType());
+        createIndexRequestBuilder.addMapping(MonetaryStatsService.STATS_STATE_TYPE, monetaryStatsService.createStatsStateType());
         createIndexRequestBuilder.execute().actionGet();
     }
 
@@ -279,7 +552,7 @@ public class BlockchainService extends AbstractService {
         ObjectUtils.checkNotNull(block.getCurrency(), "block attribute 'blockchain' could not be null");
         ObjectUtils.checkNotNull(block.getNumber(), "block attribute 'number' could not be null");
 
-        BlockchainBlock existingBlock = getBlockById(block.getCurrency(), block.getNumber());
+        BlockchainBlock existingBlock = blockRepositoryService.getBlockHeader(block.getCurrency(), block.getNumber());
         if (existingBlock != null) {
             throw new DuplicateIndexIdException(String.format("Block with number [%s] already exists.", block.getNumber()));
         }
@@ -300,7 +573,7 @@ public class BlockchainService extends AbstractService {
         ObjectUtils.checkNotNull(block.getNumber(), "block attribute 'number' could not be null");
         ObjectUtils.checkNotNull(block.getHash(), "block attribute 'hash' could not be null");
 
-        BlockchainBlock existingBlock = getBlockById(block.getCurrency(), block.getNumber());
+        BlockchainBlock existingBlock = blockRepositoryService.getBlockHeader(block.getCurrency(), block.getNumber());
 
         // Currency not exists, or has changed, so create it
         if (existingBlock == null) {
@@ -363,6 +636,15 @@ public class BlockchainService extends AbstractService {
         if (wait) {
             futureResponse.actionGet();
         }
+
+        try {
+            indexBlockEvents(block.getCurrency(), block.getNumber(), json, wait);
+        }
+        catch(TechnicalException e) {
+            onBlockEventsFailed(block.getCurrency(), block.getNumber(), e.getMessage());
+        }
+
+        getBlockHashRing(block.getCurrency()).put(block.getNumber(), block.getHash());
     }
 
     /**
@@ -389,6 +671,12 @@ public class BlockchainService extends AbstractService {
             indexRequest.execute().actionGet();
         }
 
+        // If failed, the caller should add the block to missing blocks
+        indexBlockEvents(currencyName, number, new String(json, StandardCharsets.UTF_8), wait);
+
+        // Hash not read: remove the previous one
+        getBlockHashRing(currencyName).remove(number);
+
         return this;
     }
 
@@ -416,9 +704,10 @@ public class BlockchainService extends AbstractService {
         ObjectUtils.checkNotNull(json);
         ObjectUtils.checkArgument(json.length() > 0);
 
-        String currencyName = blockCurrencyParser.getValueAsString(json);
-        int number = blockNumberParser.getValueAsInt(json);
-        String hash = blockHashParser.getValueAsString(json);
+        JsonBlockHeaderParser.Header header = blockHeaderParser.parse(json);
+        String currencyName = header.getCurrency();
+        int number = header.getNumber();
+        String hash = header.getHash();
 
         logger.info(I18n.t("duniter4j.blockIndexerService.indexBlock", currencyName, peer, number, hash));
         if (logger.isTraceEnabled()) {
@@ -427,8 +716,7 @@ public class BlockchainService extends AbstractService {
 
         // Detecting fork and rollback is necessary
         if (detectFork) {
-            String previousHash = blockPreviousHashParser.getValueAsString(json);
-            boolean resolved = detectAndResolveFork(peer, currencyName, previousHash, number - 1);
+            boolean resolved = detectAndResolveFork(peer, currencyName, header.getPreviousHash(), number - 1);
             if (!resolved) {
                 // Bad blockchain ! Skipping block indexation
                 logger.error(I18n.t("duniter4j.blockIndexerService.detectFork.invalidBlockchain", currencyName, peer, number, hash));
@@ -450,9 +738,38 @@ public class BlockchainService extends AbstractService {
             indexRequest.execute().actionGet();
         }
 
+        String eventsFailure = null;
+        try {
+            indexBlockEvents(currencyName, number, json, wait);
+        }
+        catch(TechnicalException e) {
+            eventsFailure = e.getMessage();
+        }
+
+        getBlockHashRing(currencyName).put(number, hash);
+
         // Update current
         if (isCurrent) {
             indexCurrentBlockFromJson(currencyName, json, true /*wait*/);
+
+            // Move the checkpoint, if this block follow it (saved later, with next blocks)
+            synchronized (getSyncCheckpointLock(currencyName)) {
+                SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+                if (checkpoint != null && checkpoint.getNumber() != null && checkpoint.getNumber() == number - 1) {
+                    prepareSaveSyncCheckpoint(currencyName, peer, number, hash,
+                            checkpoint.getMissingBlocks() != null ? Arrays.asList(checkpoint.getMissingBlocks()) : null);
+                    scheduleSyncCheckpointSave(currencyName);
+                }
+            }
+
+            balanceService.updateBalances(currencyName, number);
+            wotService.updateGraph(currencyName, number);
+            monetaryStatsService.updateStats(currencyName, number);
+        }
+
+        // Re-index the block later (once the checkpoint has been moved)
+        if (eventsFailure != null) {
+            onBlockEventsFailed(currencyName, number, eventsFailure);
         }
 
         return this;
@@ -515,40 +832,93 @@ public class BlockchainService extends AbstractService {
         }
     }
 
+    /**
+     * Find blocks by hash, or by hash prefix (if only one word). Only header fields are loaded.
+     */
     public List<BlockchainBlock> findBlocksByHash(String currencyName, String query) {
-        String[] queryParts = query.split("[\\t ]+");
+        String[] queryParts = query.trim().toUpperCase().split("[\\t ]+");
 
-        // Prepare request
+        // Prepare request (no scoring: DFS is useless)
         SearchRequestBuilder searchRequest = client
                 .prepareSearch(currencyName)
                 .setTypes(BLOCK_TYPE)
-                .setSearchType(SearchType.DFS_QUERY_THEN_FETCH);
+                .setSearchType(SearchType.QUERY_THEN_FETCH)
+                .setFetchSource(BlockRepositoryService.BLOCK_HEADER_FIELDS, null);
+
+        // Index created before hash sub-fields: use the analyzed field
+        if (!hasHashPrefixField(currencyName)) {
+            searchRequest.setQuery(queryParts.length == 1
+                    ? QueryBuilders.prefixQuery("hash", query.trim().toLowerCase())
+                    : QueryBuilders.matchQuery("hash", query));
+        }
 
         // If only one term, search as prefix
-        if (queryParts.length == 1) {
-            searchRequest.setQuery(QueryBuilders.prefixQuery("hash", query));
+        else if (queryParts.length == 1) {
+            searchRequest.setQuery(QueryBuilders.constantScoreQuery(createHashPrefixQuery(queryParts[0])));
         }
 
-        // If more than a word, search on terms match
+        // If more than a word, search on exact hashes
         else {
-            searchRequest.setQuery(QueryBuilders.matchQuery("hash", query));
+            searchRequest.setQuery(QueryBuilders.constantScoreQuery(QueryBuilders.termsQuery("hash", queryParts)));
         }
 
-        // Sort as score/memberCount
-        searchRequest.addSort("_score", SortOrder.DESC)
-                .addSort("number", SortOrder.DESC);
-
-        // Highlight matched words
-        searchRequest.setHighlighterTagsSchema("styled")
-                .addHighlightedField("hash")
-                .addFields("hash")
-                .addFields("*", "_source");
+        // Last blocks first
+        searchRequest.addSort("number", SortOrder.DESC);
 
         // Execute query
         SearchResponse searchResponse = searchRequest.execute().actionGet();
 
         // Read query result
-        return toBlocks(searchResponse, true);
+        return toBlocks(searchResponse, false);
+    }
+
+    /**
+     * Create a query on a hash prefix (in upper case):
+     * <ul>
+     *     <li>a full hash: term query on 'hash';</li>
+     *     <li>a short prefix: prefix query on 'hash' (not analyzed);</li>
+     *     <li>otherwise, term query on the indexed prefixes 'hash.prefix' (filtered by a prefix query, if longer).</li>
+     * </ul>
+     */
+    protected QueryBuilder createHashPrefixQuery(String prefix) {
+        if (prefix.length() < HASH_PREFIX_MIN_LENGTH) {
+            return QueryBuilders.prefixQuery("hash", prefix);
+        }
+        if (prefix.length() <= HASH_PREFIX_MAX_LENGTH) {
+            return QueryBuilders.termQuery("hash.prefix", prefix);
+        }
+        return QueryBuilders.boolQuery()
+                .filter(QueryBuilders.termQuery("hash.prefix", prefix.substring(0, HASH_PREFIX_MAX_LENGTH)))
+                .filter(QueryBuilders.prefixQuery("hash", prefix));
+    }
+
+    /**
+     * @return true if the block mapping has the sub-field 'hash.prefix' (false for index created before).
+     * The result is cached, only once the block mapping exists.
+     */
+    protected boolean hasHashPrefixField(String currencyName) {
+        Boolean result = hashPrefixFields.get(currencyName);
+        if (result != null) return result;
+
+        MappingMetaData mapping;
+        try {
+            GetMappingsResponse response = client.admin().indices().prepareGetMappings(currencyName).setTypes(BLOCK_TYPE).get();
+            mapping = response.getMappings().containsKey(currencyName) ? response.getMappings().get(currencyName).get(BLOCK_TYPE) : null;
+        }
+        catch(IndexNotFoundException e) {
+            mapping = null;
+        }
+        // Index (or block type) not created yet: do not cache
+        if (mapping == null) return false;
+
+        try {
+            result = XContentMapValues.extractValue("properties.hash.fields.prefix", mapping.sourceAsMap()) != null;
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("[%s] Unable to read the block mapping: %s", currencyName, e.getMessage()), e);
+        }
+        hashPrefixFields.put(currencyName, result);
+        return result;
     }
 
     public int getMaxBlockNumber(String currencyName) {
@@ -576,11 +946,11 @@ public class BlockchainService extends AbstractService {
     }
 
     public BlockchainBlock getBlockById(String currencyName, int number) {
-        return getBlockByIdStr(currencyName, String.valueOf(number));
+        return blockRepositoryService.getBlock(currencyName, number);
     }
 
     public BlockchainBlock getCurrentBlock(String currencyName) {
-        return getBlockByIdStr(currencyName, CURRENT_BLOCK_ID);
+        return blockRepositoryService.getCurrentBlock(currencyName);
     }
 
     /* -- Internal methods -- */
@@ -598,14 +968,23 @@ public class BlockchainService extends AbstractService {
                     .field("type", "integer")
                     .endObject()
 
-                    // hash
+                    // hash (with indexed prefixes, for fast lookup)
                     .startObject("hash")
                     .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .startObject("fields")
+                    .startObject("prefix")
+                    .field("type", "string")
+                    .field("analyzer", "hash_prefix")
+                    .field("search_analyzer", "hash_search")
+                    .endObject()
+                    .endObject()
                     .endObject()
 
                     // previous hash
                     .startObject("previousHash")
                     .field("type", "string")
+                    .field("index", "not_analyzed")
                     .endObject()
 
                     // membercount
@@ -637,32 +1016,267 @@ public class BlockchainService extends AbstractService {
         }
     }
 
-    public BlockchainBlock getBlockByIdStr(String currencyName, String blockId) {
+    /**
+     * Create the fork archive type, on index created before it
+     */
+    public void createForkArchiveTypeIfNotExists(String currencyName) {
+        TypesExistsResponse response = client.admin().indices().prepareTypesExists(currencyName)
+                .setTypes(FORK_ARCHIVE_TYPE)
+                .get();
+        if (!response.isExists()) {
+            logger.info(String.format("[%s] Creating type [%s]", currencyName, FORK_ARCHIVE_TYPE));
+            client.admin().indices().preparePutMapping(currencyName)
+                    .setType(FORK_ARCHIVE_TYPE)
+                    .setSource(createForkArchiveType())
+                    .get();
+        }
+    }
 
-        // Prepare request
-        SearchRequestBuilder searchRequest = client
-                .prepareSearch(currencyName)
-                .setTypes(BLOCK_TYPE)
-                .setSearchType(SearchType.DFS_QUERY_THEN_FETCH);
+    /**
+     * Blocks removed by a rollback (id: number-hash), with the fork point and the peer that caused the rollback.
+     * The original block is stored (not indexed) in the field 'block'.
+     */
+    public XContentBuilder createForkArchiveType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(FORK_ARCHIVE_TYPE)
+                    .startObject("properties")
+
+                    // block number
+                    .startObject("number")
+                    .field("type", "integer")
+                    .endObject()
 
-        // If more than a word, search on terms match
-        searchRequest.setQuery(QueryBuilders.matchQuery("_id", blockId));
+                    // block hash
+                    .startObject("hash")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // previous hash
+                    .startObject("previousHash")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // fork number (first block removed by the rollback)
+                    .startObject("forkNumber")
+                    .field("type", "integer")
+                    .endObject()
+
+                    // peer that caused the rollback
+                    .startObject("peer")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // rollback time (in seconds)
+                    .startObject("time")
+                    .field("type", "long")
+                    .endObject()
+
+                    // original block
+                    .startObject("block")
+                    .field("type", "object")
+                    .field("enabled", false)
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for fork archive: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public XContentBuilder createSyncCheckpointType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(SYNC_CHECKPOINT_TYPE)
+                    .startObject("properties")
+
+                    // currency
+                    .startObject(SyncCheckpoint.PROPERTY_CURRENCY)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // block number
+                    .startObject(SyncCheckpoint.PROPERTY_NUMBER)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // block hash
+                    .startObject(SyncCheckpoint.PROPERTY_HASH)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // peer
+                    .startObject(SyncCheckpoint.PROPERTY_PEER)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // missing blocks
+                    .startObject(SyncCheckpoint.PROPERTY_MISSING_BLOCKS)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // time
+                    .startObject(SyncCheckpoint.PROPERTY_TIME)
+                    .field("type", "long")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for sync checkpoint: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Get the sync checkpoint of a currency (from cache, or from index using a realtime GET)
+     * @return the checkpoint, or null if no sync has been done yet
+     */
+    public SyncCheckpoint getSyncCheckpoint(String currencyName) {
+        SyncCheckpoint checkpoint = syncCheckpoints.get(currencyName);
+        if (checkpoint != null) {
+            return checkpoint;
+        }
+        // Already known as missing (avoid a GET on each block)
+        if (noSyncCheckpoints.contains(currencyName)) {
+            return null;
+        }
+
+        GetResponse response = client.prepareGet(currencyName, SYNC_CHECKPOINT_TYPE, SYNC_CHECKPOINT_ID)
+                .setRealtime(true)
+                .execute().actionGet();
+        if (!response.isExists()) {
+            noSyncCheckpoints.add(currencyName);
+            return null;
+        }
 
-        // Execute query
         try {
-            SearchResponse searchResponse = searchRequest.execute().actionGet();
-            List<BlockchainBlock> blocks = toBlocks(searchResponse, false);
-            if (CollectionUtils.isEmpty(blocks)) {
-                return null;
+            checkpoint = objectMapper.readValue(response.getSourceAsBytes(), SyncCheckpoint.class);
+        }
+        catch(IOException e) {
+            logger.warn(String.format("[%s] Unable to read sync checkpoint: %s. Will use indexed blocks.", currencyName, e.getMessage()));
+            return null;
+        }
+        syncCheckpoints.put(currencyName, checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * Save the sync checkpoint of a currency
+     * @param number the last block number, such as all previous blocks are indexed (or are in <code>missingBlocks</code>)
+     * @param hash hash of the block <code>number</code> (could be null if unknown)
+     * @param missingBlocks missing block numbers (or ranges, as 'from-to'). Will be merged into ranges
+     */
+    public void saveSyncCheckpoint(String currencyName, Peer peer, int number, String hash, Collection<String> missingBlocks) {
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            prepareSaveSyncCheckpoint(currencyName, peer, number, hash, missingBlocks)
+                    .execute().actionGet();
+        }
+    }
+
+    /**
+     * Save the sync checkpoint of a currency, keeping missing blocks of the current checkpoint
+     * (read and written under the checkpoint lock, so that concurrent repairs are not lost)
+     * @param newMissingBlocks missing blocks to add
+     */
+    protected void saveSyncCheckpointMerge(String currencyName, Peer peer, int number, String hash, Set<String> newMissingBlocks) {
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            prepareSaveSyncCheckpointMerge(currencyName, peer, number, hash, newMissingBlocks)
+                    .execute().actionGet();
+        }
+    }
+
+    /**
+     * Same as {@link #saveSyncCheckpointMerge(String, Peer, int, String, Set)}, but only prepare the index request
+     * (e.g. to add it into a bulk request). The checkpoint cache is updated immediately.
+     */
+    protected IndexRequestBuilder prepareSaveSyncCheckpointMerge(String currencyName, Peer peer, int number, String hash, Set<String> newMissingBlocks) {
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+            Set<String> missingBlocks = new LinkedHashSet<>();
+            if (checkpoint != null && checkpoint.getMissingBlocks() != null) {
+                missingBlocks.addAll(Arrays.asList(checkpoint.getMissingBlocks()));
             }
+            synchronized (newMissingBlocks) {
+                missingBlocks.addAll(newMissingBlocks);
+            }
+            return prepareSaveSyncCheckpoint(currencyName, peer, number, hash, missingBlocks);
+        }
+    }
+
+    /**
+     * Get the lock to hold while reading then updating the sync checkpoint of a currency
+     */
+    protected Object getSyncCheckpointLock(String currencyName) {
+        return syncCheckpointLocks.computeIfAbsent(currencyName, key -> new Object());
+    }
+
+    /**
+     * Prepare the index request of a sync checkpoint (e.g. to add it into a bulk request).
+     * The checkpoint cache is updated immediately.
+     */
+    protected IndexRequestBuilder prepareSaveSyncCheckpoint(String currencyName, Peer peer, int number, String hash, Collection<String> missingBlocks) {
+        SyncCheckpoint checkpoint = new SyncCheckpoint();
+        checkpoint.setCurrency(currencyName);
+        checkpoint.setNumber(number);
+        checkpoint.setHash(hash);
+        checkpoint.setPeer(peer != null ? peer.toString() : null);
+        // Store missing blocks as merged ranges
+        List<String> missingRanges = BlockRangeSet.parse(missingBlocks).toStrings();
+        checkpoint.setMissingBlocks(CollectionUtils.isNotEmpty(missingRanges)
+                ? missingRanges.toArray(new String[missingRanges.size()])
+                : null);
+        checkpoint.setTime(System.currentTimeMillis());
+
+        IndexRequestBuilder indexRequest = prepareIndexSyncCheckpoint(currencyName, checkpoint);
+        syncCheckpoints.put(currencyName, checkpoint);
+        noSyncCheckpoints.remove(currencyName);
+        return indexRequest;
+    }
+
+    protected IndexRequestBuilder prepareIndexSyncCheckpoint(String currencyName, SyncCheckpoint checkpoint) {
+        try {
+            // Serialize into JSON
+            byte[] json = objectMapper.writeValueAsBytes(checkpoint);
 
-            // Return the unique result
-            return CollectionUtils.extractSingleton(blocks);
+            return client.prepareIndex(currencyName, SYNC_CHECKPOINT_TYPE, SYNC_CHECKPOINT_ID)
+                    .setRefresh(false)
+                    .setSource(json);
         }
-        catch(JsonSyntaxException e) {
-            throw new TechnicalException(String.format("Error while getting indexed block #%s for blockchain [%s]", blockId, currencyName), e);
+        catch(JsonProcessingException e) {
+            throw new TechnicalException(e);
         }
+    }
 
+    /**
+     * Save the cached sync checkpoint, after a bounded delay. Many calls in this interval lead to only one save
+     * (of the last checkpoint).
+     */
+    protected void scheduleSyncCheckpointSave(String currencyName) {
+        if (!pendingSyncCheckpointSaves.add(currencyName)) return; // already scheduled
+
+        threadPool.schedule(() -> {
+            pendingSyncCheckpointSaves.remove(currencyName);
+            SyncCheckpoint checkpoint = syncCheckpoints.get(currencyName);
+            if (checkpoint != null) {
+                prepareIndexSyncCheckpoint(currencyName, checkpoint).execute();
+            }
+        }, pluginSettings.getIndexNewBlockRefreshInterval());
     }
 
     protected List<BlockchainBlock> toBlocks(SearchResponse response, boolean withHighlight) {
@@ -740,340 +1354,1830 @@ public class BlockchainService extends AbstractService {
         return missingBlockNumbers;
     }
 
+    /**
+     * Index blocks from <code>firstNumber</code> to <code>lastNumber</code>, from the given peer, using bulk.
+     *
+     * @return missing block numbers (or ranges, as 'from-to')
+     */
     public Collection<String> indexBlocksUsingBulk(Peer peer, String currencyName, int firstNumber, int lastNumber, ProgressionModel progressionModel) {
-        Set<String> missingBlockNumbers = new LinkedHashSet<>();
+        return indexBlocksUsingPipeline(Lists.newArrayList(peer), currencyName, firstNumber, lastNumber, 1, true, progressionModel);
+    }
 
-        boolean debug = logger.isDebugEnabled();
+    /**
+     * Index blocks from <code>firstNumber</code> to <code>lastNumber</code>, splitting the range into batches.
+     * Batches are downloaded at the same time, from the given peer and other BMA peers of the network,
+     * then indexed (using bulk) as soon as they arrive.
+     * The number of downloads in flight is limited by the option <code>duniter.blockchain.sync.parallel.maxFetches</code>.
+     *
+     * @return missing block numbers (or ranges, as 'from-to')
+     */
+    public Collection<String> indexBlocksUsingParallelBulk(Peer peer, String currencyName, int firstNumber, int lastNumber, ProgressionModel progressionModel) {
+        final int maxFetches = Math.max(1, pluginSettings.getIndexParallelSyncMaxFetches());
 
-        int batchSize = pluginSettings.getIndexBulkSize();
-        String currentBlockJson = null;
+        // Select peers to use: the given peer first, then others peers
+        final List<Peer> peers = getSyncPeers(peer, currencyName, maxFetches);
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("[%s] [%s] Parallel indexing of blocks #%s to #%s, using %s peers (max %s downloads)", currencyName, peer, firstNumber, lastNumber, peers.size(), maxFetches));
+        }
 
-        for (int batchFirstNumber = firstNumber; batchFirstNumber < lastNumber; ) {
-            // Check if stop (e.g. ask by user)
-            if (progressionModel.isCancel()) {
-                progressionModel.setStatus(ProgressionModel.Status.STOPPED);
-                if (logger.isInfoEnabled()) {
-                    logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.stopped", currencyName, peer.getUrl()));
-                }
-                return missingBlockNumbers;
-            }
+        return indexBlocksUsingPipeline(peers, currencyName, firstNumber, lastNumber, maxFetches, true, progressionModel);
+    }
 
-            String[] blocksAsJson = null;
-            try {
-                final int batchFirstNumberFinal = batchFirstNumber;
-                blocksAsJson = executeWithRetry(()->blockchainRemoteService.getBlocksAsJson(peer, batchSize, batchFirstNumberFinal));
-            } catch(TechnicalException e) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug(String.format("[%s] [%s] Error while getting blocks from #%s (count=%s): %s. Skipping blocks.",currencyName, peer, batchFirstNumber, batchSize, e.getMessage()));
-                }
-            }
+    /**
+     * Index blocks using a staged pipeline, so that network I/O, parsing and indexation overlap:
+     * <ul>
+     *     <li>stage 1: download batches of blocks (from one or more peers, using <code>maxFetches</code> threads);</li>
+     *     <li>stage 2: split the JSON array, and extract block headers (one thread);</li>
+     *     <li>stage 3: submit the bulk request (the calling thread).</li>
+     * </ul>
+     * Stages are joined by bounded queues (see option <code>duniter.blockchain.sync.pipeline.queueSize</code>),
+     * so a fast stage will wait for the slower one.
+     * <br/>
+     * When <code>updateCheckpoint</code> is true, the sync checkpoint is moved forward each time a contiguous range
+     * of blocks has been processed: in the same bulk request as the blocks or, when using the bulk processor,
+     * once all requests of these blocks have been acknowledged (see {@link #saveBulkProcessorCheckpoint(Peer, BulkProcessorRun, boolean)}).
+     *
+     * @param peers peers to use. The first one is the default peer
+     * @param updateCheckpoint should update the sync checkpoint ? Must be false when re-indexing past blocks
+     * @return missing block numbers (or ranges, as 'from-to')
+     */
+    protected Collection<String> indexBlocksUsingPipeline(final List<Peer> peers, final String currencyName,
+                                                          final int firstNumber, final int lastNumber,
+                                                          final int maxFetches,
+                                                          final boolean updateCheckpoint,
+                                                          final ProgressionModel progressionModel) {
+        ObjectUtils.checkArgument(CollectionUtils.isNotEmpty(peers));
+        final Peer peer = peers.get(0);
+        final Set<String> missingBlockNumbers = Collections.synchronizedSet(new LinkedHashSet<>());
+        if (firstNumber > lastNumber) {
+            return missingBlockNumbers;
+        }
+        final boolean useBulkProcessor = pluginSettings.isIndexBulkProcessorEnable();
+
+        final int blockCount = lastNumber - firstNumber + 1;
+        final int queueSize = Math.max(1, pluginSettings.getIndexPipelineQueueSize());
+        // Batch sizes depend on each peer (see getBatchSize()): use the default size to estimate the batch count
+        final int estimatedBatchCount = (lastNumber - firstNumber) / pluginSettings.getIndexBulkSize() + 1;
+        final int fetchThreadCount = Math.max(1, Math.min(maxFetches, estimatedBatchCount));
 
-            // Peer send no blocks
-            if (CollectionUtils.isEmpty(blocksAsJson)) {
+        final BlockingQueue<BlocksBatch> fetchedQueue = new ArrayBlockingQueue<>(queueSize);
+        final BlockingQueue<BlocksBatch> parsedQueue = new ArrayBlockingQueue<>(queueSize);
+        final AtomicInteger nextBatchIndex = new AtomicInteger(0);
+        final AtomicInteger nextNumber = new AtomicInteger(firstNumber);
 
-                // Add range to missing blocks
-                missingBlockNumbers.add(batchFirstNumber + "-" + (batchFirstNumber+batchSize));
+        // Stage threads are taken from the (shared) sync executor, then cancelled when this run ends
+        final ExecutorService executor = getSyncExecutor();
+        final List<Future<?>> stageFutures = Lists.newArrayListWithCapacity(fetchThreadCount + 1);
 
-                // Update counter
-                batchFirstNumber += batchSize;
+        // Blocks still missing from a previous sync are kept in the checkpoint (merged when saving it)
+        final CheckpointTracker checkpointTracker = updateCheckpoint ? new CheckpointTracker(firstNumber - 1) : null;
+
+        // When using the bulk processor, failed items will be reported into missing blocks of this run, by the listener,
+        // and batches will be added to the checkpoint tracker once acknowledged
+        final BulkProcessorRun bulkProcessorRun = useBulkProcessor ? new BulkProcessorRun(currencyName, missingBlockNumbers, checkpointTracker) : null;
+
+        String currentBlockJson = null;
+        int indexedCount = 0;
+        try {
+            // Stage 1: fetch
+            for (int i = 0; i < fetchThreadCount; i++) {
+                stageFutures.add(executor.submit(() -> {
+                    while (true) {
+                        // Take the next range, sized for the batch peer
+                        int batchIndex = nextBatchIndex.getAndIncrement();
+                        int batchSize = getBatchSize(peers.get(batchIndex % peers.size()));
+                        int batchFirstNumber = nextNumber.getAndAdd(batchSize);
+                        if (batchFirstNumber > lastNumber) return; // no more blocks
+
+                        BlocksBatch batch = new BlocksBatch(batchFirstNumber, Math.min(batchFirstNumber + batchSize - 1, lastNumber));
+                        fetchBlocksBatch(peers, currencyName, batchIndex, batch);
+                        try {
+                            fetchedQueue.put(batch);
+                        }
+                        catch (InterruptedException e) {
+                            return; // stop
+                        }
+                    }
+                }));
             }
 
-            // Process received blocks
-            else {
+            // Stage 2: parse
+            stageFutures.add(executor.submit(() -> {
+                try {
+                    int parsedCount = 0;
+                    while (parsedCount < blockCount) {
+                        BlocksBatch batch = fetchedQueue.take();
+                        parseBlocksBatch(currencyName, batch);
+                        parsedQueue.put(batch);
+                        parsedCount += batch.lastNumber - batch.firstNumber + 1;
+                    }
+                }
+                catch (InterruptedException e) {
+                    // stop
+                }
+            }));
 
-                List<Integer> processedBlockNumbers = Lists.newArrayList();
-                BulkRequestBuilder bulkRequest = client.prepareBulk();
-                for (String blockAsJson : blocksAsJson) {
-                    int itemNumber = blockNumberParser.getValueAsInt(blockAsJson);
+            // Stage 3: index
+            while (indexedCount < blockCount) {
+                // Check if stop (e.g. ask by user)
+                if (progressionModel.isCancel()) {
+                    progressionModel.setStatus(ProgressionModel.Status.STOPPED);
+                    if (logger.isInfoEnabled()) {
+                        logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.stopped", currencyName, peer.getUrl()));
+                    }
+                    return missingBlockNumbers;
+                }
+
+                BlocksBatch batch;
+                try {
+                    batch = parsedQueue.take();
+                }
+                catch(InterruptedException e) {
+                    progressionModel.setStatus(ProgressionModel.Status.STOPPED);
+                    return missingBlockNumbers;
+                }
+
+                boolean isEmptyBatch = batch.numbers == null || batch.numbers.length == 0;
 
-                    // update curNumber with max number;
-                    if (itemNumber > batchFirstNumber) {
-                        batchFirstNumber = itemNumber;
+                // Peer send no blocks: add range to missing blocks
+                if (isEmptyBatch) {
+                    missingBlockNumbers.add(batch.firstNumber + "-" + batch.lastNumber);
+                }
+                else {
+                    // Peer send less blocks than expected: add the remaining range to missing blocks
+                    int maxNumber = batch.getMaxNumber();
+                    if (maxNumber < batch.lastNumber) {
+                        missingBlockNumbers.add((maxNumber + 1) + "-" + batch.lastNumber);
                     }
 
-                    if (!processedBlockNumbers.contains(itemNumber)) {
-                        // Add to bulk
-                        bulkRequest.add(client.prepareIndex(currencyName, BLOCK_TYPE, String.valueOf(itemNumber))
-                                .setRefresh(false)
-                                .setSource(blockAsJson)
-                        );
-                        processedBlockNumbers.add(itemNumber);
+                    // If last block : keep it, to update the current block
+                    if (batch.lastNumber == lastNumber) {
+                        BytesReference currentBlock = batch.getBlock(lastNumber);
+                        currentBlockJson = currentBlock != null ? currentBlock.toUtf8() : null;
                     }
+                }
+
+                // Move the checkpoint forward, if this batch follow the last contiguous range
+                // (when using the bulk processor, this is done by the listener, once the batch has been acknowledged)
+                IndexRequestBuilder checkpointRequest = null;
+                if (updateCheckpoint && !useBulkProcessor && checkpointTracker.add(batch)) {
+                    checkpointRequest = prepareSaveSyncCheckpointMerge(currencyName, peer,
+                            checkpointTracker.number, checkpointTracker.hash, missingBlockNumbers);
+                }
 
-                    // If last block : also update the current block
-                    if (itemNumber == lastNumber) {
-                        currentBlockJson = blockAsJson;
+                // Remember hashes (failed blocks will be removed)
+                if (!isEmptyBatch) {
+                    BlockHashRing hashRing = getBlockHashRing(currencyName);
+                    for (int i = 0; i < batch.numbers.length; i++) {
+                        hashRing.put(batch.numbers[i], batch.hashes[i]);
                     }
                 }
 
-                if (bulkRequest.numberOfActions() > 0) {
+                // Process received blocks (with the checkpoint, in the same bulk)
+                if (useBulkProcessor) {
+                    addToBulkProcessor(bulkProcessorRun, batch);
 
-                    // Flush the bulk if not empty
-                    BulkResponse bulkResponse = bulkRequest.get();
+                    // Never send the checkpoint through the processor: it could be committed before its blocks
+                    if (updateCheckpoint) {
+                        saveBulkProcessorCheckpoint(peer, bulkProcessorRun, false);
+                    }
+                }
+                else {
+                    int missingCount = missingBlockNumbers.size();
+                    bulkIndexBlocks(currencyName, isEmptyBatch ? null : batch, checkpointRequest, missingBlockNumbers);
 
-                    // If failures, continue but save missing blocks
-                    if (bulkResponse.hasFailures()) {
-                        // process failures by iterating through each bulk response item
-                        for (BulkItemResponse itemResponse : bulkResponse) {
-                            boolean skip = !itemResponse.isFailed()
-                                    || Objects.equal(CURRENT_BLOCK_ID, itemResponse.getId())
-                                    || missingBlockNumbers.contains(Integer.parseInt(itemResponse.getId()));
-                            if (!skip) {
-                                int itemNumber = Integer.parseInt(itemResponse.getId());
-                                if (debug) {
-                                    logger.debug(String.format("Error while getting block #%s: %s. Skipping this block.", itemNumber, itemResponse.getFailureMessage()));
-                                }
-                                missingBlockNumbers.add(itemResponse.getId());
-                            }
-                        }
+                    // Some blocks failed: save the checkpoint again, with new missing blocks
+                    if (checkpointRequest != null && missingBlockNumbers.size() > missingCount) {
+                        saveSyncCheckpointMerge(currencyName, peer, checkpointTracker.number, checkpointTracker.hash, missingBlockNumbers);
                     }
                 }
+                batch.blocks = null; // free memory
+
+                // Report progress
+                indexedCount += batch.lastNumber - batch.firstNumber + 1;
+                if (lastNumber > firstNumber) {
+                    reportIndexBlocksProgress(progressionModel, currencyName, peer, firstNumber, lastNumber, firstNumber + indexedCount - 1);
+                }
             }
 
-            // Report progress
-            reportIndexBlocksProgress(progressionModel, currencyName, peer, firstNumber, lastNumber, batchFirstNumber);
-            batchFirstNumber++; // increment for next loop
+            // Update the current block
+            if (StringUtils.isNotBlank(currentBlockJson)) {
+                if (useBulkProcessor) {
+                    addToBulkProcessor(bulkProcessorRun, client.prepareIndex(currencyName, BLOCK_TYPE, CURRENT_BLOCK_ID)
+                            .setSource(currentBlockJson)
+                            .request());
+                }
+                else {
+                    indexCurrentBlockFromJson(currencyName, currentBlockJson, false);
+                }
+            }
         }
+        finally {
+            // Stop stage threads of this run (they go back to the executor)
+            stageFutures.forEach(future -> future.cancel(true));
+
+            if (useBulkProcessor) {
+                // Wait pending bulk requests, to make sure all failures has been reported
+                waitBulkProcessorPendingActions(bulkProcessorRun);
 
-        if (StringUtils.isNotBlank(currentBlockJson)) {
-            indexCurrentBlockFromJson(currencyName, currentBlockJson, false);
+                // Save the checkpoint again, with failures reported by the bulk processor
+                if (updateCheckpoint) {
+                    saveBulkProcessorCheckpoint(peer, bulkProcessorRun, true);
+                }
+            }
         }
 
         return missingBlockNumbers;
     }
 
     /**
-     * Get blocks from other peers.
-     * WARNING: given list must be ordered (with ascending order)
-     * @param peer
-     * @param currentBlock
-     * @param sortedMissingBlocks
-     * @param tryCounter
+     * Re-index some blocks (e.g. gaps or invalid blocks found by a verification), adding them to the missing blocks
+     * of the sync checkpoint. Blocks will be fetched in background, from the best peers.
      */
-    protected Collection<String> indexMissingBlocksFromOtherPeers(Peer peer, BlockchainBlock currentBlock, Collection<String> sortedMissingBlocks, int tryCounter) {
-        ObjectUtils.checkNotNull(peer);
-        ObjectUtils.checkNotNull(currentBlock);
-        ObjectUtils.checkNotNull(currentBlock.getHash());
-        ObjectUtils.checkNotNull(currentBlock.getNumber());
-        ObjectUtils.checkArgument(CollectionUtils.isNotEmpty(sortedMissingBlocks));
-        ObjectUtils.checkArgument(tryCounter >= 1);
+    public void repairBlocks(final String currencyName, final BlockRangeSet blocks) {
+        if (blocks == null || blocks.isEmpty()) return;
 
-        NetworkRemoteService networkRemoteService = ServiceLocator.instance().getNetworkRemoteService();
-        BlockchainRemoteService blockchainRemoteService = ServiceLocator.instance().getBlockchainRemoteService();
-        String currencyName = currentBlock.getCurrency();
-        boolean debug = logger.isDebugEnabled();
+        Peer peer = syncPeers.get(currencyName);
+        final Peer repairPeer = peer != null ? peer : new Peer(pluginSettings.getNodeBmaHost(), pluginSettings.getNodeBmaPort());
 
-        Set<String> newMissingBlocks = new LinkedHashSet<>();
-        newMissingBlocks.addAll(sortedMissingBlocks);
-
-        if (debug) {
-            logger.debug(String.format("Missing blocks are: %s", newMissingBlocks.toString()));
-        }
+        getNewBlockExecutor().execute(() -> {
+            try {
+                if (addCheckpointMissingBlocks(repairPeer, currencyName, blocks)) {
+                    scheduleMissingBlocksRepair(repairPeer, currencyName);
+                }
+            }
+            catch(Throwable t) {
+                logger.error(String.format("[%s] Error while updating the sync checkpoint: %s", currencyName, t.getMessage()), t);
+            }
+        });
+    }
 
-        // Select other peers, in filtering on the same blockchain version
+    /**
+     * Schedule a background job, that will fetch missing blocks from other peers (see {@link #repairMissingBlocks(Peer, String)}).
+     * The job runs every <code>duniter.blockchain.repair.interval</code>, until no more blocks are missing.
+     */
+    protected void scheduleMissingBlocksRepair(final Peer peer, final String currencyName) {
+        if (repairJobs.containsKey(currencyName)) return; // already scheduled
 
-        // TODO : a activer quand les peers seront bien mis à jour (UP/DOWN, block, hash...)
-        //List<Peer> otherPeers = networkRemoteService.findPeers(peer, "UP", EndpointProtocol.BASIC_MERKLED_API,
-        //        currentBlock.getNumber(), currentBlock.getHash());
-        List<Peer> otherPeers = networkRemoteService.findPeers(peer, null, EndpointProtocol.BASIC_MERKLED_API,
-                null, null);
+        ScheduledFuture<?> job = threadPool.scheduleWithFixedDelay(() -> {
+            // Skip if the previous run is not finished
+            if (!runningRepairs.add(currencyName)) return;
 
-        for(Peer childPeer: otherPeers) {
-            if (logger.isInfoEnabled()) {
-                logger.info(String.format("[%s] Trying to get missing blocks from other peer [%s]...", currencyName, childPeer));
-            }
+            // Run outside the scheduler thread
             try {
-                for(String blockNumberStr: ImmutableSet.copyOf(sortedMissingBlocks)) {
+                getRepairExecutor().execute(() -> {
+                    try {
+                        repairMissingBlocks(peer, currencyName);
+                    }
+                    finally {
+                        runningRepairs.remove(currencyName);
+                    }
+                });
+            }
+            catch(RejectedExecutionException e) {
+                runningRepairs.remove(currencyName);
+            }
+        }, pluginSettings.getIndexRepairInterval());
 
-                    boolean isBlockRange = blockNumberStr.indexOf('-') != -1;
+        if (repairJobs.putIfAbsent(currencyName, job) != null) {
+            job.cancel(false);
+        }
+    }
 
-                    // Get using bulk
-                    if (isBlockRange) {
-                        String[] rangeParts = blockNumberStr.split("-");
-                        int firstNumber = Integer.parseInt(rangeParts[0]);
-                        int lastNumber = Integer.parseInt(rangeParts[1]);
+    protected void cancelMissingBlocksRepair(String currencyName) {
+        ScheduledFuture<?> job = repairJobs.remove(currencyName);
+        if (job != null) {
+            job.cancel(false);
+        }
+    }
 
-                        // Remove current blocks range
-                        newMissingBlocks.remove(blockNumberStr);
+    /**
+     * Get the executor used by the sync pipeline stages. Threads are created on demand, then reused by next syncs
+     * (many syncs may run at the same time, and stage threads are blocked while waiting for each other).
+     */
+    protected synchronized ExecutorService getSyncExecutor() {
+        if (syncExecutor == null) {
+            syncExecutor = threadPool.newCachedThreadPool("duniter4j-blockchain-sync");
+        }
+        return syncExecutor;
+    }
 
-                        Collection<String> bulkMissingBlocks = indexBlocksUsingBulk(childPeer, currencyName, firstNumber, lastNumber, new ProgressionModelImpl());
+    protected synchronized ExecutorService getRepairExecutor() {
+        if (repairExecutor == null) {
+            repairExecutor = threadPool.newFixedThreadPool("duniter4j-blockchain-repair", 1);
+        }
+        return repairExecutor;
+    }
 
-                        // Re add if new missing blocks
-                        if (CollectionUtils.isNotEmpty(bulkMissingBlocks)) {
-                            newMissingBlocks.addAll(bulkMissingBlocks);
-                        }
-                    }
+    /**
+     * Fetch blocks still missing in the sync checkpoint, from the best peers of the network.
+     * Repaired blocks are then removed from the checkpoint (in the new blocks thread, so that checkpoint updates never overlap).
+     */
+    protected void repairMissingBlocks(Peer peer, String currencyName) {
+        SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+        final BlockRangeSet missingBlocks = checkpoint != null && checkpoint.getMissingBlocks() != null
+                ? BlockRangeSet.parse(Arrays.asList(checkpoint.getMissingBlocks()))
+                : new BlockRangeSet();
+        if (missingBlocks.isEmpty()) {
+            cancelMissingBlocksRepair(currencyName);
+            return;
+        }
 
-                    // Get blocks one by one
-                    else {
-                        int blockNumber = Integer.parseInt(blockNumberStr);
-                        String blockAsJson = blockchainRemoteService.getBlockAsJson(childPeer, blockNumber);
-                        if (StringUtils.isNotBlank(blockAsJson)) {
-                            if (debug) {
-                                logger.debug(String.format("Found missing block #%s on peer [%s].", blockNumber, childPeer));
-                            }
+        if (logger.isInfoEnabled()) {
+            logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.otherPeers.task", currencyName));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("[%s] Missing blocks are: %s", currencyName, missingBlocks));
+        }
 
-                            // Index the missing block
-                            indexBlockFromJson(currencyName, blockNumber, blockAsJson.getBytes(), false, true/*wait*/);
+        long startTime = System.currentTimeMillis();
+        try {
+            List<Peer> peers = getSyncPeers(peer, currencyName, Math.max(1, pluginSettings.getIndexRepairMaxPeers()));
+            final BlockRangeSet repairedBlocks = indexMissingBlocks(peers, currencyName, missingBlocks);
+            if (repairedBlocks.isEmpty()) {
+                syncMetrics.onRepairError(currencyName, System.currentTimeMillis() - startTime);
+                logger.warn(String.format("[%s] Unable to get missing blocks %s from peers. Will retry later.", currencyName, missingBlocks));
+                return;
+            }
+            syncMetrics.onRepair(currencyName, repairedBlocks.size(), System.currentTimeMillis() - startTime);
 
-                            // Remove this block number from the final missing list
-                            newMissingBlocks.remove(blockNumber);
-                        }
-                    }
+            getNewBlockExecutor().execute(() -> {
+                try {
+                    removeCheckpointMissingBlocks(peer, currencyName, repairedBlocks);
                 }
-
-                if (CollectionUtils.isEmpty(newMissingBlocks)) {
-                    break;
+                catch(Throwable t) {
+                    logger.error(String.format("[%s] Error while updating the sync checkpoint: %s", currencyName, t.getMessage()), t);
                 }
+            });
+        }
+        catch(Throwable t) {
+            logger.error(String.format("[%s] Error while getting missing blocks from other peers: %s", currencyName, t.getMessage()), t);
+        }
+    }
 
-                // Update the list, for the next iteration
-                sortedMissingBlocks =  newMissingBlocks;
+    /**
+     * Index missing blocks, downloading batches at the same time from many peers
+     * (limited by the option <code>duniter.blockchain.repair.maxFetches</code>).
+     * @param peers peers to use, the best first
+     * @return the repaired blocks
+     */
+    protected BlockRangeSet indexMissingBlocks(final List<Peer> peers, final String currencyName, final BlockRangeSet missingBlocks) {
+        final int batchSize = pluginSettings.getIndexBulkSize();
+
+        // Split ranges into batches
+        final List<BlocksBatch> batches = Lists.newArrayList();
+        for (int[] range: missingBlocks.getRanges()) {
+            for (int batchFirstNumber = range[0]; batchFirstNumber <= range[1]; batchFirstNumber += batchSize) {
+                batches.add(new BlocksBatch(batchFirstNumber, Math.min(batchFirstNumber + batchSize - 1, range[1])));
             }
-            catch(TechnicalException e) {
-                if (debug) {
-                    logger.debug(String.format("Error while getting blocks from peer [%s]: %s. Skipping this peer.", childPeer), e.getMessage());
-                }
+        }
 
-                continue; // skip this peer
+        final int fetchThreadCount = Math.max(1, Math.min(pluginSettings.getIndexRepairMaxFetches(), batches.size()));
+        final AtomicInteger nextBatchIndex = new AtomicInteger(0);
+        final BlockRangeSet repairedBlocks = new BlockRangeSet();
+
+        ExecutorService executor = threadPool.newFixedThreadPool("duniter4j-blockchain-repair-fetch", fetchThreadCount);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int i = 0; i < fetchThreadCount; i++) {
+                futures.add(executor.submit(() -> {
+                    int batchIndex;
+                    while ((batchIndex = nextBatchIndex.getAndIncrement()) < batches.size()) {
+                        BlocksBatch batch = batches.get(batchIndex);
+                        fetchBlocksBatch(peers, currencyName, batchIndex, batch);
+                        parseBlocksBatch(currencyName, batch);
+                        if (batch.numbers == null || batch.numbers.length == 0) continue;
+
+                        Set<String> failedBlockNumbers = new HashSet<>();
+                        bulkIndexBlocks(currencyName, batch, null, failedBlockNumbers);
+                        batch.blocks = null; // free memory
+
+                        // Keep only requested blocks, successfully indexed
+                        synchronized (repairedBlocks) {
+                            for (int number: batch.numbers) {
+                                if (missingBlocks.contains(number) && !failedBlockNumbers.contains(String.valueOf(number))) {
+                                    repairedBlocks.add(number);
+                                }
+                            }
+                        }
+                    }
+                }));
             }
-        }
 
+            for (Future<?> future: futures) {
+                future.get();
+            }
+        }
+        catch(InterruptedException e) {
+            // stop
+        }
+        catch(ExecutionException e) {
+            logger.error(String.format("[%s] Error while indexing missing blocks: %s", currencyName, e.getCause().getMessage()), e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
 
-        if (CollectionUtils.isEmpty(newMissingBlocks)) {
-            return null;
+        synchronized (repairedBlocks) {
+            return repairedBlocks;
         }
+    }
+
+    /**
+     * Add blocks to the missing blocks of the sync checkpoint (only blocks before the checkpoint: next blocks will be synced)
+     * @return true if some blocks has been added
+     */
+    protected boolean addCheckpointMissingBlocks(Peer peer, String currencyName, BlockRangeSet blocks) {
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+            if (checkpoint == null || checkpoint.getNumber() == null) {
+                logger.warn(String.format("[%s] No sync checkpoint: unable to repair blocks %s", currencyName, blocks));
+                return false;
+            }
 
-        tryCounter++;
-        if (tryCounter >= SYNC_MISSING_BLOCK_MAX_RETRY) {
-            // Max retry : stop here
-            logger.error("Some blocks are still missing, after %s try: %s", SYNC_MISSING_BLOCK_MAX_RETRY, newMissingBlocks.toArray(new String[0]));
-            return newMissingBlocks;
+            BlockRangeSet missingBlocks = checkpoint.getMissingBlocks() != null
+                    ? BlockRangeSet.parse(Arrays.asList(checkpoint.getMissingBlocks()))
+                    : new BlockRangeSet();
+            long missingCount = missingBlocks.size();
+            missingBlocks.addAll(blocks);
+            missingBlocks.remove(checkpoint.getNumber() + 1, Integer.MAX_VALUE);
+            if (missingBlocks.size() == missingCount) return false;
+
+            saveSyncCheckpoint(currencyName, peer, checkpoint.getNumber(), checkpoint.getHash(), missingBlocks.toStrings());
+            return true;
         }
+    }
 
-        if (debug) {
-            logger.debug("Some blocks are still missing: %s. Will retry later (%s/%s)...", newMissingBlocks.toArray(new String[0]), tryCounter, SYNC_MISSING_BLOCK_MAX_RETRY);
+    /**
+     * Remove repaired blocks from the sync checkpoint, then apply blocks that were waiting for them
+     * (balances, WoT and stats stop at the first missing block)
+     */
+    protected void removeCheckpointMissingBlocks(Peer peer, String currencyName, BlockRangeSet repairedBlocks) {
+        SyncCheckpoint checkpoint;
+        BlockRangeSet missingBlocks;
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            checkpoint = getSyncCheckpoint(currencyName);
+            if (checkpoint == null || checkpoint.getNumber() == null || checkpoint.getMissingBlocks() == null) return;
+
+            missingBlocks = BlockRangeSet.parse(Arrays.asList(checkpoint.getMissingBlocks()));
+            missingBlocks.removeAll(repairedBlocks);
+            saveSyncCheckpoint(currencyName, peer, checkpoint.getNumber(), checkpoint.getHash(), missingBlocks.toStrings());
         }
-        try {
-            Thread.sleep(60 *1000); // wait 1 min
 
+        if (missingBlocks.isEmpty()) {
+            logger.info(String.format("[%s] All missing blocks have been repaired.", currencyName));
+            cancelMissingBlocksRepair(currencyName);
         }
-        catch (InterruptedException e) {
-            return null; // stop here
+        else if (logger.isDebugEnabled()) {
+            logger.debug(String.format("[%s] Some blocks are still missing: %s. Will retry later.", currencyName, missingBlocks));
         }
 
-        // retrying, with the new new blockchain
-        BlockchainBlock newCurrentBlock =  blockchainRemoteService.getCurrentBlock(peer);
-        return indexMissingBlocksFromOtherPeers(peer, newCurrentBlock, newMissingBlocks, tryCounter);
+        balanceService.updateBalances(currencyName, checkpoint.getNumber());
+        wotService.updateGraph(currencyName, checkpoint.getNumber());
+        monetaryStatsService.updateStats(currencyName, checkpoint.getNumber());
     }
 
-    protected void reportIndexBlocksProgress(ProgressionModel progressionModel, String currencyName, Peer peer, int firstNumber, int lastNumber, int curNumber) {
-        int pct = (curNumber - firstNumber) * 100 / (lastNumber - firstNumber);
-        progressionModel.setCurrent(pct);
+    /**
+     * Queue a block received from a peer (e.g. by websocket), then index it asynchronously.
+     * Blocks received while a previous drain is running are coalesced into the next one.
+     */
+    protected void enqueueNewBlock(Peer peer, String json) {
+        if (StringUtils.isBlank(json)) return;
 
-        progressionModel.setMessage(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.progress", currencyName, peer, curNumber, lastNumber, pct));
-        if (logger.isInfoEnabled()) {
-            logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.progress", currencyName, peer, curNumber, lastNumber, pct));
+        newBlockQueue.add(new NewBlock(peer, json));
+        if (newBlockDrainScheduled.compareAndSet(false, true)) {
+            getNewBlockExecutor().execute(this::drainNewBlocks);
         }
+    }
 
+    protected synchronized ExecutorService getNewBlockExecutor() {
+        if (newBlockExecutor == null) {
+            newBlockExecutor = threadPool.newFixedThreadPool("duniter4j-blockchain-newblock", 1);
+        }
+        return newBlockExecutor;
     }
 
-    protected boolean isBlockIndexed(String currencyName, int number, String hash) {
-        // Check if previous block exists
-        BlockchainBlock block = getBlockByIdStr(currencyName, String.valueOf(number));
-        boolean blockExists = block != null;
-        if (!blockExists) {
-            return blockExists;
+    protected void drainNewBlocks() {
+        do {
+            List<NewBlock> blocks = new ArrayList<>();
+            newBlockQueue.drainTo(blocks);
+            try {
+                indexNewBlocks(blocks);
+            }
+            catch(Throwable t) {
+                logger.error(String.format("Error while indexing %s new blocks: %s", blocks.size(), t.getMessage()), t);
+            }
+            newBlockDrainScheduled.set(false);
         }
-        return block.getHash() != null && block.getHash().equals(hash);
+        // Blocks may have been added after the drain: continue, if no other drain has been scheduled
+        while (!newBlockQueue.isEmpty() && newBlockDrainScheduled.compareAndSet(false, true));
     }
 
-    protected boolean detectAndResolveFork(Peer peer, final String currencyName, final String hash, final int number){
-        int forkResyncWindow = pluginSettings.getNodeForkResyncWindow();
-        String forkOriginHash = hash;
-        int forkOriginNumber = number;
-        boolean sameBlockIndexed = isBlockIndexed(currencyName, forkOriginNumber, forkOriginHash);
-        while (!sameBlockIndexed && forkOriginNumber > 0) {
+    /**
+     * Index new blocks. Consecutive blocks that follow the indexed chain tip are written in a single bulk request.
+     * A full fork detection is only done when a block does not follow the tip.
+     */
+    protected void indexNewBlocks(List<NewBlock> blocks) {
+        if (CollectionUtils.isEmpty(blocks)) return;
 
-            if (!sameBlockIndexed && logger.isInfoEnabled()) {
-                logger.info(I18n.t("duniter4j.blockIndexerService.detectFork.invalidBlock", currencyName, peer, forkOriginNumber, forkOriginHash));
+        // Sort by currency then number (if same number received twice, keep the last one)
+        Map<String, TreeMap<Integer, NewBlock>> blocksByCurrency = new LinkedHashMap<>();
+        for (NewBlock block: blocks) {
+            try {
+                JsonBlockHeaderParser.Header header = blockHeaderParser.parse(block.json);
+                if (header.getNumber() < 0 || StringUtils.isBlank(header.getCurrency())) {
+                    throw new TechnicalException("missing block number or currency");
+                }
+                block.currency = header.getCurrency();
+                block.number = header.getNumber();
+                block.hash = header.getHash();
+                block.previousHash = header.getPreviousHash();
             }
-            forkOriginNumber -= forkResyncWindow;
-            if (forkOriginNumber < 0) {
-                forkOriginNumber = 0;
+            catch(Exception e) {
+                logger.warn(String.format("[%s] Invalid block received: %s. Skipping block.", block.peer, e.getMessage()));
+                continue;
             }
+            blocksByCurrency.computeIfAbsent(block.currency, k -> new TreeMap<>())
+                    .put(block.number, block);
+        }
 
-            // Get remote block (with auto-retry)
-            try {
-                final int currentNumberFinal = forkOriginNumber;
-                String testBlock = executeWithRetry(() ->
-                    blockchainRemoteService.getBlockAsJson(peer, currentNumberFinal));
-                forkOriginHash = blockHashParser.getValueAsString(testBlock);
+        for (Map.Entry<String, TreeMap<Integer, NewBlock>> entry: blocksByCurrency.entrySet()) {
+            String currencyName = entry.getKey();
+            BlockHashRing ring = getBlockHashRing(currencyName);
+
+            List<NewBlock> chain = new ArrayList<>();
+            for (NewBlock block: entry.getValue().values()) {
+                logger.info(I18n.t("duniter4j.blockIndexerService.indexBlock", currencyName, block.peer, block.number, block.hash));
+                if (logger.isTraceEnabled()) {
+                    logger.trace(block.json);
+                }
+
+                NewBlock tip = chain.isEmpty() ? null : chain.get(chain.size() - 1);
+                boolean followTip = (tip != null)
+                        ? (tip.number == block.number - 1 && Objects.equal(tip.hash, block.previousHash))
+                        : Boolean.TRUE.equals(ring.isSameHash(block.number - 1, block.previousHash));
+
+                if (!followTip) {
+                    // Write previous blocks, then check for a fork (and rollback if necessary)
+                    bulkIndexNewBlocks(currencyName, chain);
+                    chain.clear();
+
+                    boolean resolved = detectAndResolveFork(block.peer, currencyName, block.previousHash, block.number - 1);
+                    if (!resolved) {
+                        // Bad blockchain ! Skipping block indexation
+                        logger.error(I18n.t("duniter4j.blockIndexerService.detectFork.invalidBlockchain", currencyName, block.peer, block.number, block.hash));
+                        continue;
+                    }
+                }
 
-                // Check is exists on ES index
-                sameBlockIndexed = isBlockIndexed(currencyName, forkOriginNumber, forkOriginHash);
-            } catch (TechnicalException e) {
-                logger.warn(I18n.t("duniter4j.blockIndexerService.detectFork.remoteBlockNotFound", currencyName, peer, forkOriginNumber, e.getMessage()));
-                sameBlockIndexed = false; // continue (go back again)
+                // Another block has been indexed with the same number: rollback it (and next blocks), as for a fork
+                if (Boolean.FALSE.equals(ring.isSameHash(block.number, block.hash))) {
+                    bulkIndexNewBlocks(currencyName, chain);
+                    chain.clear();
+                    rollbackReplacedBlocks(block.peer, currencyName, block.number, block.previousHash);
+                }
+                chain.add(block);
             }
+
+            bulkIndexNewBlocks(currencyName, chain);
         }
+    }
 
-        if (!sameBlockIndexed) {
-            return false; // sync could not be done (bad blockchain: no common blocks !)
+    /**
+     * Rollback the indexed block <code>number</code> (replaced by another block) and the blocks after it
+     * (balances, WoT and stats are reverted). If the checkpoint is after it, it is moved back to the previous block.
+     * @param previousHash hash of the block <code>number - 1</code>
+     */
+    protected void rollbackReplacedBlocks(Peer peer, String currencyName, int number, String previousHash) {
+        rollbackBlocks(peer, currencyName, number/*from*/, number + pluginSettings.getNodeForkResyncWindow()/*to*/);
+
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+            if (checkpoint != null && checkpoint.getNumber() != null && checkpoint.getNumber() >= number) {
+                BlockRangeSet missingBlocks = checkpoint.getMissingBlocks() != null
+                        ? BlockRangeSet.parse(Arrays.asList(checkpoint.getMissingBlocks()))
+                        : new BlockRangeSet();
+                missingBlocks.remove(number, Integer.MAX_VALUE);
+                saveSyncCheckpoint(currencyName, peer, number - 1, previousHash, missingBlocks.toStrings());
+            }
+        }
+    }
+
+    /**
+     * Index consecutive blocks, the last one as current block, in a single bulk request (without refresh).
+     * The sync checkpoint is moved once the bulk is done, if blocks follow it. Failed blocks are added to the
+     * missing blocks of the checkpoint (in the same update), then repaired in background.
+     */
+    protected void bulkIndexNewBlocks(String currencyName, List<NewBlock> chain) {
+        if (CollectionUtils.isEmpty(chain)) return;
+
+        NewBlock first = chain.get(0);
+        NewBlock last = chain.get(chain.size() - 1);
+
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        for (NewBlock block: chain) {
+            bulkRequest.add(client.prepareIndex(currencyName, BLOCK_TYPE, String.valueOf(block.number))
+                    .setSource(block.json));
+            blockEventService.prepareIndexEvents(currencyName, block.json).forEach(bulkRequest::add);
         }
 
-        if (forkOriginNumber < number) {
-            logger.info(I18n.t("duniter4j.blockIndexerService.detectFork.resync", currencyName, peer, forkOriginNumber));
-            // Remove some previous block
-            deleteBlocksFromNumber(currencyName, forkOriginNumber/*from*/, number+forkResyncWindow/*to*/);
+        // Update current
+        bulkRequest.add(client.prepareIndex(currencyName, BLOCK_TYPE, CURRENT_BLOCK_ID)
+                .setSource(last.json));
 
-            // Re-indexing blocks
-            indexBlocksUsingBulk(peer, currencyName, forkOriginNumber/*from*/, number, nullProgressionModel);
+        BlockHashRing ring = getBlockHashRing(currencyName);
+        for (NewBlock block: chain) {
+            ring.put(block.number, block.hash);
         }
 
-        return true; // sync OK
+        long startTime = System.currentTimeMillis();
+        BulkResponse bulkResponse;
+        try {
+            bulkResponse = bulkRequest.get();
+        }
+        catch(ElasticsearchException e) {
+            syncMetrics.onBulkError(currencyName, System.currentTimeMillis() - startTime);
+            throw e;
+        }
+        long bytes = 0;
+        for (NewBlock block: chain) {
+            bytes += block.json.length();
+        }
+        syncMetrics.onBulk(currencyName, chain.size(), bytes, System.currentTimeMillis() - startTime);
+
+        // Collect failed blocks (if an event failed, the whole block will be re-indexed)
+        BlockRangeSet failedBlocks = new BlockRangeSet();
+        if (bulkResponse.hasFailures()) {
+            for (BulkItemResponse itemResponse : bulkResponse) {
+                if (!itemResponse.isFailed()) continue;
+                if (BlockEventService.isEventType(itemResponse.getType())) {
+                    String blockId = BlockEventService.getBlockId(itemResponse.getId());
+                    logger.error(String.format("[%s] Error while indexing %s of block #%s: %s", currencyName, itemResponse.getType(),
+                            blockId, itemResponse.getFailureMessage()));
+                    failedBlocks.add(Integer.parseInt(blockId));
+                    ring.remove(Integer.parseInt(blockId));
+                }
+                else if (Objects.equal(CURRENT_BLOCK_ID, itemResponse.getId())) {
+                    logger.warn(String.format("[%s] Error while indexing current block: %s", currencyName, itemResponse.getFailureMessage()));
+                }
+                else {
+                    logger.error(String.format("[%s] Error while indexing block #%s: %s", currencyName, itemResponse.getId(), itemResponse.getFailureMessage()));
+                    failedBlocks.add(Integer.parseInt(itemResponse.getId()));
+                    ring.remove(Integer.parseInt(itemResponse.getId()));
+                }
+            }
+        }
+
+        // Move the checkpoint, if these blocks follow it. Failed blocks are saved as missing in the same checkpoint,
+        // so the checkpoint never passes a block that will not be repaired
+        boolean checkpointMoved = false;
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+            if (checkpoint != null && checkpoint.getNumber() != null
+                    && checkpoint.getNumber() >= first.number - 1 && checkpoint.getNumber() < last.number) {
+                saveSyncCheckpointMerge(currencyName, last.peer, last.number, last.hash, new LinkedHashSet<>(failedBlocks.toStrings()));
+                checkpointMoved = true;
+            }
+        }
+
+        // Repair failed blocks, from other peers
+        if (!failedBlocks.isEmpty()) {
+            try {
+                if (checkpointMoved || addCheckpointMissingBlocks(last.peer, currencyName, failedBlocks)) {
+                    scheduleMissingBlocksRepair(last.peer, currencyName);
+                }
+            }
+            catch(Throwable t) {
+                logger.error(String.format("[%s] Error while updating the sync checkpoint: %s", currencyName, t.getMessage()), t);
+            }
+        }
+
+        balanceService.updateBalances(currencyName, last.number);
+        wotService.updateGraph(currencyName, last.number);
+        monetaryStatsService.updateStats(currencyName, last.number);
+
+        scheduleRefresh(currencyName);
     }
 
     /**
-     * Delete blocks from a start number (using bulk)
-     * @param currencyName
-     * @param fromNumber
+     * Refresh the index, after a bounded delay. Many calls in this interval lead to only one refresh.
      */
-    protected void deleteBlocksFromNumber(String currencyName, int fromNumber, int toNumber) {
+    protected void scheduleRefresh(String index) {
+        if (!pendingRefreshIndices.add(index)) return; // already scheduled
+
+        threadPool.schedule(() -> {
+            pendingRefreshIndices.remove(index);
+            client.admin().indices().prepareRefresh(index).execute();
+        }, pluginSettings.getIndexNewBlockRefreshInterval());
+    }
 
-        int bulkSize = pluginSettings.getIndexBulkSize();
+    /**
+     * Index events (identities, certifications, transactions...) of a block.
+     * If not waiting, a failure will add the block to the missing blocks (see {@link #repairBlocks(String, BlockRangeSet)}).
+     * @throws TechnicalException if events could not be indexed (only when waiting)
+     */
+    protected void indexBlockEvents(final String currencyName, final int number, String json, boolean wait) {
+        List<IndexRequestBuilder> eventRequests = blockEventService.prepareIndexEvents(currencyName, json);
+        if (eventRequests.isEmpty()) return;
 
         BulkRequestBuilder bulkRequest = client.prepareBulk();
-        for (int i=fromNumber; i<=toNumber; i++) {
+        eventRequests.forEach(bulkRequest::add);
+        if (!wait) {
+            bulkRequest.execute(new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse bulkResponse) {
+                    if (bulkResponse.hasFailures()) {
+                        onBlockEventsFailed(currencyName, number, bulkResponse.buildFailureMessage());
+                    }
+                }
 
-            bulkRequest.add(
-                client.prepareDelete(currencyName, BLOCK_TYPE, String.valueOf(i))
-            );
+                @Override
+                public void onFailure(Throwable e) {
+                    onBlockEventsFailed(currencyName, number, e.getMessage());
+                }
+            });
+            return;
+        }
 
-            // Flush the bulk if not empty
-            if ((fromNumber - i % bulkSize) == 0) {
-                flushDeleteBulk(bulkRequest);
-                bulkRequest = client.prepareBulk();
-            }
+        BulkResponse bulkResponse;
+        try {
+            bulkResponse = bulkRequest.get();
+        }
+        catch(ElasticsearchException e) {
+            throw new TechnicalException(String.format("[%s] Unable to index events of block #%s: %s", currencyName, number, e.getMessage()), e);
         }
+        if (bulkResponse.hasFailures()) {
+            throw new TechnicalException(String.format("[%s] Unable to index events of block #%s: %s", currencyName, number, bulkResponse.buildFailureMessage()));
+        }
+    }
 
-        // last flush
-        flushDeleteBulk(bulkRequest);
+    protected void onBlockEventsFailed(String currencyName, int number, String message) {
+        logger.error(String.format("[%s] Error while indexing events of block #%s: %s. Block will be re-indexed.", currencyName, number, message));
+        BlockRangeSet blocks = new BlockRangeSet();
+        blocks.add(number);
+        repairBlocks(currencyName, blocks);
     }
 
-    protected void flushDeleteBulk(BulkRequestBuilder bulkRequest) {
+    /**
+     * Index a parsed batch of blocks, using a bulk request. Failed blocks will be added to the missing blocks
+     * @param batch blocks to index (could be null)
+     * @param checkpointRequest the checkpoint to save in the same bulk (could be null)
+     */
+    protected void bulkIndexBlocks(String currencyName, BlocksBatch batch, IndexRequestBuilder checkpointRequest, Set<String> missingBlockNumbers) {
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        if (batch != null) {
+            Set<Integer> processedBlockNumbers = new HashSet<>();
+            for (int i = 0; i < batch.numbers.length; i++) {
+                int itemNumber = batch.numbers[i];
+                if (processedBlockNumbers.add(itemNumber)) {
+                    bulkRequest.add(client.prepareIndex(currencyName, BLOCK_TYPE, String.valueOf(itemNumber))
+                            .setRefresh(false)
+                            .setSource(batch.blocks[i])
+                    );
+
+                    // Explode stage: add identities, certifications, transactions... to the same bulk
+                    if (blockEventService.isEnable()) {
+                        blockEventService.prepareIndexEvents(currencyName, batch.blocks[i].toUtf8()).forEach(bulkRequest::add);
+                    }
+                }
+            }
+        }
+        if (checkpointRequest != null) {
+            bulkRequest.add(checkpointRequest);
+        }
+
         if (bulkRequest.numberOfActions() > 0) {
-            BulkResponse bulkResponse = bulkRequest.get();
+            long startTime = System.currentTimeMillis();
+            BulkResponse bulkResponse;
+            try {
+                bulkResponse = bulkRequest.get();
+            }
+            catch(ElasticsearchException e) {
+                syncMetrics.onBulkError(currencyName, System.currentTimeMillis() - startTime);
+                throw e;
+            }
+            if (batch != null) {
+                syncMetrics.onBulk(currencyName, batch.numbers.length, getBytesLength(batch.blocks), System.currentTimeMillis() - startTime);
+            }
+
             // If failures, continue but save missing blocks
             if (bulkResponse.hasFailures()) {
-                // process failures by iterating through each bulk response item
                 for (BulkItemResponse itemResponse : bulkResponse) {
-                    boolean skip = !itemResponse.isFailed();
-                    if (!skip) {
-                        int itemNumber = Integer.parseInt(itemResponse.getId());
-                        logger.debug(String.format("Error while deleting block #%s: %s. Skipping this deletion.", itemNumber, itemResponse.getFailureMessage()));
+                    if (!itemResponse.isFailed()) continue;
+                    boolean isEvent = BlockEventService.isEventType(itemResponse.getType());
+                    if (!isEvent && !BLOCK_TYPE.equals(itemResponse.getType())) {
+                        logger.warn(String.format("[%s] Error while saving sync checkpoint: %s", currencyName, itemResponse.getFailureMessage()));
+                    }
+                    else if (!Objects.equal(CURRENT_BLOCK_ID, itemResponse.getId())) {
+                        // If an event failed, the whole block will be re-indexed
+                        String blockId = isEvent ? BlockEventService.getBlockId(itemResponse.getId()) : itemResponse.getId();
+                        if (logger.isDebugEnabled()) {
+                            logger.debug(String.format("[%s] Error while indexing block #%s: %s. Skipping this block.", currencyName, blockId, itemResponse.getFailureMessage()));
+                        }
+                        missingBlockNumbers.add(blockId);
+                        getBlockHashRing(currencyName).remove(Integer.parseInt(blockId));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a parsed batch of blocks to the (long-lived) bulk processor.
+     * Failed blocks will be reported asynchronously into the missing blocks, by the bulk processor listener,
+     * then the batch will be acknowledged (see {@link BulkProcessorRun#onBatchRequestDone(ActionRequest)})
+     * @param batch blocks to index (could be empty)
+     * @return the max block number found
+     */
+    protected int addToBulkProcessor(BulkProcessorRun run, BlocksBatch batch) {
+        final String currencyName = run.currencyName;
+        final int blockCount = batch.numbers != null ? batch.numbers.length : 0;
+        int maxNumber = -1;
+
+        Set<Integer> processedBlockNumbers = new HashSet<>();
+        for (int i = 0; i < blockCount; i++) {
+            int itemNumber = batch.numbers[i];
+            if (itemNumber > maxNumber) {
+                maxNumber = itemNumber;
+            }
+
+            if (processedBlockNumbers.add(itemNumber)) {
+                addToBulkProcessor(run, batch, client.prepareIndex(currencyName, BLOCK_TYPE, String.valueOf(itemNumber))
+                        .setSource(batch.blocks[i])
+                        .request());
+
+                // Explode stage
+                if (blockEventService.isEnable()) {
+                    for (IndexRequestBuilder eventRequest : blockEventService.prepareIndexEvents(currencyName, batch.blocks[i].toUtf8())) {
+                        addToBulkProcessor(run, batch, eventRequest.request());
                     }
                 }
             }
         }
+
+        // All requests are registered: the batch can now be acknowledged
+        run.onBatchAdded(batch);
+
+        return maxNumber;
+    }
+
+    protected void addToBulkProcessor(BulkProcessorRun run, IndexRequest request) {
+        addToBulkProcessor(run, null, request);
+    }
+
+    /**
+     * @param batch the batch of the request, or null (e.g. the current block)
+     */
+    protected void addToBulkProcessor(BulkProcessorRun run, BlocksBatch batch, IndexRequest request) {
+        // Register the run first: the listener may be called before add() returns
+        bulkProcessorRuns.put(request, run);
+        if (batch != null) {
+            run.onBatchRequestAdded(batch, request);
+        }
+        try {
+            getOrCreateBulkProcessor().add(request);
+        }
+        catch(RuntimeException e) {
+            bulkProcessorRuns.remove(request);
+            if (batch != null) {
+                // The batch will never be acknowledged: mark it as missing
+                run.missingBlockNumbers.add(batch.firstNumber + "-" + batch.lastNumber);
+            }
+            throw e;
+        }
+        run.pendingActions.incrementAndGet();
+    }
+
+    /**
+     * Save the sync checkpoint, up to the last contiguous batch acknowledged by the bulk processor.
+     * Called only by the sync thread, so the checkpoint is never moved backward.
+     * @param force if false, save only if the checkpoint has moved since the last save
+     */
+    protected void saveBulkProcessorCheckpoint(Peer peer, BulkProcessorRun run, boolean force) {
+        final int number;
+        final String hash;
+        synchronized (run) {
+            CheckpointTracker checkpointTracker = run.checkpointTracker;
+            if (checkpointTracker == null
+                    || checkpointTracker.number <= run.initialCheckpointNumber
+                    || (!force && checkpointTracker.number <= run.savedCheckpointNumber)) {
+                return;
+            }
+            number = checkpointTracker.number;
+            hash = checkpointTracker.hash;
+            run.savedCheckpointNumber = number;
+        }
+        saveSyncCheckpointMerge(run.currencyName, peer, number, hash, run.missingBlockNumbers);
+    }
+
+    /**
+     * Flush the bulk processor, then wait until all requests of the given run has been processed
+     * (at most <code>duniter.bulk.processor.timeout</code>)
+     */
+    protected void waitBulkProcessorPendingActions(BulkProcessorRun run) {
+        if (bulkProcessor == null) {
+            return;
+        }
+        bulkProcessor.flush();
+
+        long timeout = System.currentTimeMillis() + pluginSettings.getIndexBulkProcessorTimeout().millis();
+        while (run.pendingActions.get() > 0) {
+            if (System.currentTimeMillis() > timeout) {
+                logger.warn(String.format("[%s] Timeout while waiting bulk processor: %s pending actions will not be checked.",
+                        run.currencyName, run.pendingActions.get()));
+                break;
+            }
+            try {
+                Thread.sleep(100); // wait 100 ms
+            }
+            catch(InterruptedException e) {
+                break; // stop
+            }
+        }
+
+        // Forget requests not processed yet (if any)
+        synchronized (bulkProcessorRuns) {
+            bulkProcessorRuns.values().removeIf(requestRun -> requestRun == run);
+        }
+    }
+
+    protected BulkProcessor getOrCreateBulkProcessor() {
+        if (bulkProcessor == null) {
+            synchronized (this) {
+                if (bulkProcessor == null) {
+                    bulkProcessor = createBulkProcessor();
+                }
+            }
+        }
+        return bulkProcessor;
+    }
+
+    protected BulkProcessor createBulkProcessor() {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Starting bulk processor (concurrentRequests: %s, flushSize: %s, flushBytes: %s, flushInterval: %s)",
+                    pluginSettings.getIndexBulkProcessorConcurrentRequests(),
+                    pluginSettings.getIndexBulkProcessorFlushSize(),
+                    pluginSettings.getIndexBulkProcessorFlushBytes(),
+                    pluginSettings.getIndexBulkProcessorFlushInterval()));
+        }
+
+        return BulkProcessor.builder(client, new BulkProcessor.Listener() {
+                    @Override
+                    public void beforeBulk(long executionId, BulkRequest request) {
+                    }
+
+                    @Override
+                    public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                        onBulkProcessorDone(request, response.getTookInMillis());
+                        for (BulkItemResponse itemResponse : response) {
+                            ActionRequest item = request.requests().get(itemResponse.getItemId());
+                            BulkProcessorRun run = bulkProcessorRuns.remove(item);
+                            if (itemResponse.isFailed()) {
+                                onBulkProcessorItemFailed(run, itemResponse.getIndex(), itemResponse.getType(), itemResponse.getId(), itemResponse.getFailureMessage());
+                            }
+                            onBulkProcessorItemDone(run, item);
+                        }
+                    }
+
+                    @Override
+                    public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                        onBulkProcessorDone(request, -1);
+                        for (ActionRequest item : request.requests()) {
+                            if (item instanceof IndexRequest) {
+                                IndexRequest indexRequest = (IndexRequest) item;
+                                BulkProcessorRun run = bulkProcessorRuns.remove(item);
+                                onBulkProcessorItemFailed(run, indexRequest.index(), indexRequest.type(), indexRequest.id(), failure.getMessage());
+                                onBulkProcessorItemDone(run, item);
+                            }
+                        }
+                    }
+                })
+                .setConcurrentRequests(pluginSettings.getIndexBulkProcessorConcurrentRequests())
+                .setBulkActions(pluginSettings.getIndexBulkProcessorFlushSize())
+                .setBulkSize(pluginSettings.getIndexBulkProcessorFlushBytes())
+                .setFlushInterval(pluginSettings.getIndexBulkProcessorFlushInterval())
+                .build();
+    }
+
+    /**
+     * @param run the sync run of the item, or null if unknown (e.g. after a timeout)
+     */
+    protected void onBulkProcessorItemFailed(BulkProcessorRun run, String currencyName, String type, String id, String failureMessage) {
+        // If an event failed, the whole block will be re-indexed
+        if (BlockEventService.isEventType(type)) {
+            type = BLOCK_TYPE;
+            id = BlockEventService.getBlockId(id);
+        }
+        if (!BLOCK_TYPE.equals(type)) {
+            logger.warn(String.format("[%s] Error while saving sync checkpoint: %s", currencyName, failureMessage));
+            return;
+        }
+        if (Objects.equal(CURRENT_BLOCK_ID, id)) {
+            logger.warn(String.format("[%s] Error while indexing current block: %s", currencyName, failureMessage));
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("[%s] Error while indexing block #%s: %s. Skipping this block.", currencyName, id, failureMessage));
+        }
+        getBlockHashRing(currencyName).remove(Integer.parseInt(id));
+
+        if (run != null) {
+            run.missingBlockNumbers.add(id);
+        }
+        else {
+            logger.warn(String.format("[%s] Block #%s could not be indexed: %s", currencyName, id, failureMessage));
+        }
+    }
+
+    /**
+     * Record a bulk processor request into the sync metrics, by index
+     * @param tookInMillis the bulk duration, or -1 if failed
+     */
+    protected void onBulkProcessorDone(BulkRequest request, long tookInMillis) {
+        Map<String, long[]> blocksByIndex = new HashMap<>();
+        for (ActionRequest item : request.requests()) {
+            if (!(item instanceof IndexRequest)) continue;
+            IndexRequest indexRequest = (IndexRequest) item;
+            long[] counts = blocksByIndex.computeIfAbsent(indexRequest.index(), k -> new long[2]);
+            if (BLOCK_TYPE.equals(indexRequest.type()) && !CURRENT_BLOCK_ID.equals(indexRequest.id())) {
+                counts[0]++;
+                counts[1] += indexRequest.source().length();
+            }
+        }
+        for (Map.Entry<String, long[]> entry: blocksByIndex.entrySet()) {
+            if (tookInMillis < 0) {
+                syncMetrics.onBulkError(entry.getKey(), 0);
+            }
+            else {
+                syncMetrics.onBulk(entry.getKey(), (int) entry.getValue()[0], entry.getValue()[1], tookInMillis);
+            }
+        }
+    }
+
+    /**
+     * Called after an item has been processed (after its failure has been reported, if any)
+     */
+    protected void onBulkProcessorItemDone(BulkProcessorRun run, ActionRequest item) {
+        if (run != null) {
+            run.onBatchRequestDone(item);
+            run.pendingActions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get peers to use for a sync. The given peer is always the first item, then other peers are ranked
+     * by their previous downloads (success rate and latency)
+     * @param maxPeers max number of peers to return
+     */
+    protected List<Peer> getSyncPeers(Peer peer, String currencyName, int maxPeers) {
+        List<Peer> result = Lists.newArrayList(peer);
+        if (maxPeers <= 1) {
+            return result;
+        }
+
+        try {
+            List<Peer> otherPeers = networkRemoteService.findPeers(peer, null, EndpointProtocol.BASIC_MERKLED_API, null, null);
+            if (CollectionUtils.isNotEmpty(otherPeers)) {
+                Set<String> peerUrls = new HashSet<>();
+                peerUrls.add(peer.getUrl());
+                for (Peer otherPeer : peerScores.rank(otherPeers)) {
+                    if (result.size() >= maxPeers) break;
+                    if (peerUrls.add(otherPeer.getUrl())) {
+                        result.add(otherPeer);
+                    }
+                }
+            }
+        }
+        catch(TechnicalException e) {
+            logger.warn(String.format("[%s] [%s] Unable to get other peers: %s. Will use only this peer.", currencyName, peer, e.getMessage()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Download a batch of blocks (pipeline stage 1). The peer is chosen in a round-robin way ;
+     * if it fails, the default peer (the first one) is used.
+     * Each download is recorded into the peer scores.
+     */
+    protected void fetchBlocksBatch(final List<Peer> peers, final String currencyName, final int batchIndex, final BlocksBatch batch) {
+        final Peer defaultPeer = peers.get(0);
+        final Peer batchPeer = peers.get(batchIndex % peers.size());
+        final int count = batch.lastNumber - batch.firstNumber + 1;
+
+        try {
+            batch.blocks = fetchBlocksRange(batchPeer, currencyName, batch.firstNumber, batch.lastNumber);
+        }
+        catch(TechnicalException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("[%s] Error while getting blocks from #%s (count=%s): %s.", batchPeer, batch.firstNumber, count, e.getMessage()));
+            }
+
+            // Retry using the default peer
+            if (batchPeer != defaultPeer) {
+                try {
+                    batch.blocks = fetchBlocksRange(defaultPeer, currencyName, batch.firstNumber, batch.lastNumber);
+                }
+                catch(TechnicalException e2) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(String.format("[%s] Error while getting blocks from #%s (count=%s): %s. Skipping blocks.", defaultPeer, batch.firstNumber, count, e2.getMessage()));
+                    }
+                }
+            }
+        }
+        catch(Throwable t) {
+            logger.warn(String.format("[%s] Unexpected error while getting blocks from #%s (count=%s): %s. Skipping blocks.", batchPeer, batch.firstNumber, count, t.getMessage()), t);
+        }
+    }
+
+    /**
+     * Download a range of blocks from a peer, using requests sized for this peer (see {@link AdaptiveBatchSizer}).
+     * If a request fails (e.g. a timeout), the batch size of the peer is reduced, then the remaining blocks
+     * are asked again, using smaller requests.
+     * @return received blocks (could be less than asked, if the peer has not all blocks)
+     */
+    protected BytesReference[] fetchBlocksRange(Peer peer, String currencyName, int firstNumber, int lastNumber) {
+        List<BytesReference> result = null;
+        int number = firstNumber;
+        while (number <= lastNumber) {
+            int count = Math.min(getBatchSize(peer), lastNumber - number + 1);
+            boolean canReduce = batchSizer != null && count > batchSizer.getMinSize();
+
+            BytesReference[] blocks;
+            try {
+                // Retry the same request, only if the batch size can not be reduced
+                blocks = fetchBlocksAndScore(peer, currencyName, count, number, !canReduce);
+            }
+            catch(TechnicalException e) {
+                if (canReduce) continue; // retry with a smaller request
+                if (result != null) break; // return received blocks (next blocks will be missing)
+                throw e;
+            }
+            if (blocks.length == 0) break;
+
+            // All blocks received in one request: avoid a copy
+            if (result == null && blocks.length == lastNumber - firstNumber + 1) {
+                return blocks;
+            }
+
+            if (result == null) {
+                result = Lists.newArrayListWithCapacity(lastNumber - firstNumber + 1);
+            }
+            result.addAll(Arrays.asList(blocks));
+            number += blocks.length;
+
+            // Less blocks than asked: the peer has no more blocks
+            if (blocks.length < count) break;
+        }
+        return result != null ? result.toArray(new BytesReference[result.size()]) : new BytesReference[0];
+    }
+
+    /**
+     * Download some blocks, and record the response into the peer score, batch size and sync metrics
+     */
+    protected BytesReference[] fetchBlocksAndScore(Peer peer, String currencyName, int count, int from, boolean retry) {
+        long startTime = System.currentTimeMillis();
+        try {
+            BytesReference[] blocks = retry
+                    ? executeWithRetry(() -> fetchBlocks(peer, count, from))
+                    : fetchBlocks(peer, count, from);
+            long time = System.currentTimeMillis() - startTime;
+
+            // No blocks: the peer is probably not synchronized
+            if (blocks == null || blocks.length == 0) {
+                peerScores.onFailure(peer);
+                syncMetrics.onFetchError(currencyName, peer, time);
+                return new BytesReference[0];
+            }
+
+            long bytes = getBytesLength(blocks);
+            peerScores.onSuccess(peer, time);
+            syncMetrics.onFetch(currencyName, peer, blocks.length, bytes, time);
+            if (batchSizer != null) {
+                batchSizer.onSuccess(peer, blocks.length, bytes, time);
+            }
+            return blocks;
+        }
+        catch(TechnicalException e) {
+            peerScores.onFailure(peer);
+            syncMetrics.onFetchError(currencyName, peer, System.currentTimeMillis() - startTime);
+            if (batchSizer != null) {
+                batchSizer.onFailure(peer);
+            }
+            throw e;
+        }
+    }
+
+    protected long getBytesLength(BytesReference[] blocks) {
+        long bytes = 0;
+        for (BytesReference block: blocks) {
+            bytes += block.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of blocks to ask to a peer, in one request
+     */
+    protected int getBatchSize(Peer peer) {
+        return batchSizer != null ? batchSizer.getBatchSize(peer) : pluginSettings.getIndexBulkSize();
+    }
+
+    /**
+     * Read number and hash of a block, directly from its bytes
+     */
+    protected JsonBlockHeaderParser.Header parseBlockHeader(BytesReference block) {
+        if (block.hasArray()) {
+            return blockNumberAndHashParser.parse(block.array(), block.arrayOffset(), block.length());
+        }
+        byte[] bytes = block.toBytes();
+        return blockNumberAndHashParser.parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Download some blocks, splitting the response stream into blocks (as raw bytes, without any copy)
+     */
+    protected BytesReference[] fetchBlocks(Peer peer, int count, int from) {
+        final List<BytesReference> blocks = Lists.newArrayListWithCapacity(count);
+        blockchainRemoteService.getBlocksAsJson(peer, count, from,
+                (bytes, offset, length) -> blocks.add(new BytesArray(bytes, offset, length)));
+        return blocks.toArray(new BytesReference[blocks.size()]);
+    }
+
+    /**
+     * Read block headers (pipeline stage 2).
+     * On error, the batch is left empty (and will be added to missing blocks)
+     */
+    protected void parseBlocksBatch(String currencyName, BlocksBatch batch) {
+        if (batch.blocks == null || batch.blocks.length == 0) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            int[] numbers = new int[batch.blocks.length];
+            String[] hashes = new String[batch.blocks.length];
+            for (int i = 0; i < batch.blocks.length; i++) {
+                JsonBlockHeaderParser.Header header = parseBlockHeader(batch.blocks[i]);
+                if (header.getNumber() < 0) {
+                    throw new TechnicalException("block without number");
+                }
+                numbers[i] = header.getNumber();
+                hashes[i] = header.getHash();
+            }
+            batch.numbers = numbers;
+            batch.hashes = hashes;
+            syncMetrics.onParse(currencyName, numbers.length, getBytesLength(batch.blocks), System.currentTimeMillis() - startTime);
+        }
+        catch(Throwable t) {
+            logger.warn(String.format("Error while parsing blocks from #%s to #%s: %s. Skipping blocks.", batch.firstNumber, batch.lastNumber, t.getMessage()));
+            batch.blocks = null; // free memory
+        }
+    }
+
+    protected void reportIndexBlocksProgress(ProgressionModel progressionModel, String currencyName, Peer peer, int firstNumber, int lastNumber, int curNumber) {
+        int pct = (curNumber - firstNumber) * 100 / (lastNumber - firstNumber);
+        progressionModel.setCurrent(pct);
+
+        progressionModel.setMessage(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.progress", currencyName, peer, curNumber, lastNumber, pct));
+        if (logger.isInfoEnabled()) {
+            logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.progress", currencyName, peer, curNumber, lastNumber, pct));
+        }
+
+    }
+
+    protected boolean isBlockIndexed(String currencyName, int number, String hash) {
+        // Try using the hash ring
+        Boolean sameHash = getBlockHashRing(currencyName).isSameHash(number, hash);
+        if (sameHash != null) {
+            return sameHash;
+        }
+
+        String indexedHash = getIndexedBlockHashes(currencyName, ImmutableSet.of(number)).get(number);
+        return indexedHash != null && indexedHash.equals(hash);
+    }
+
+    /**
+     * Detect a fork, by comparing the given block (from peer) with the indexed one. If different, search the
+     * last common block (exponential search, then binary search), then rollback and re-index only the blocks after it.
+     * @param hash the hash of the block <code>number</code>, on the peer
+     * @return false if no common block could be found
+     */
+    protected boolean detectAndResolveFork(Peer peer, final String currencyName, final String hash, final int number){
+        if (number < 0 || isBlockIndexed(currencyName, number, hash)) {
+            return true; // no fork
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info(I18n.t("duniter4j.blockIndexerService.detectFork.invalidBlock", currencyName, peer, number, hash));
+        }
+        long startTime = System.currentTimeMillis();
+
+        // Exponential search: compare blocks number-1, number-2, number-4, ... 0
+        // (local hashes are loaded at once)
+        List<Integer> probeNumbers = Lists.newArrayList();
+        for (long step = 1; number - step > 0; step *= 2) {
+            probeNumbers.add((int)(number - step));
+        }
+        probeNumbers.add(0);
+        Map<Integer, String> indexedHashes = getIndexedBlockHashes(currencyName, probeNumbers);
+
+        int forkNumber = number; // a block that differs
+        int commonNumber = -1; // a block that is the same
+        for (int probeNumber: probeNumbers) {
+            String remoteHash = getRemoteBlockHash(peer, currencyName, probeNumber);
+            if (remoteHash != null && remoteHash.equals(indexedHashes.get(probeNumber))) {
+                commonNumber = probeNumber;
+                break;
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info(I18n.t("duniter4j.blockIndexerService.detectFork.invalidBlock", currencyName, peer, probeNumber, remoteHash));
+            }
+            forkNumber = probeNumber;
+        }
+        if (commonNumber == -1) {
+            syncMetrics.onForkError(currencyName, System.currentTimeMillis() - startTime);
+            return false; // sync could not be done (bad blockchain: no common blocks !)
+        }
+
+        // Binary search, until the range can be compared with a single batch
+        int batchSize = pluginSettings.getIndexBulkSize();
+        while (forkNumber - commonNumber > batchSize) {
+            int middleNumber = commonNumber + (forkNumber - commonNumber) / 2;
+            String remoteHash = getRemoteBlockHash(peer, currencyName, middleNumber);
+            if (remoteHash != null && isBlockIndexed(currencyName, middleNumber, remoteHash)) {
+                commonNumber = middleNumber;
+            }
+            else {
+                forkNumber = middleNumber;
+            }
+        }
+
+        // Then compare remaining blocks, using one remote request and one index request
+        if (forkNumber - commonNumber > 1) {
+            commonNumber = findLastCommonBlock(peer, currencyName, commonNumber, forkNumber);
+        }
+
+        int forkResyncWindow = pluginSettings.getNodeForkResyncWindow();
+        logger.info(I18n.t("duniter4j.blockIndexerService.detectFork.resync", currencyName, peer, commonNumber + 1));
+
+        // Remove blocks after the last common block
+        rollbackBlocks(peer, currencyName, commonNumber + 1/*from*/, number+forkResyncWindow/*to*/);
+
+        // Re-indexing blocks
+        Collection<String> missingBlocks = indexBlocksUsingPipeline(Lists.newArrayList(peer), currencyName, commonNumber + 1/*from*/, number, 1,
+                false /*checkpoint updated below*/, nullProgressionModel);
+
+        // Move the checkpoint back to the resolved block
+        synchronized (getSyncCheckpointLock(currencyName)) {
+            SyncCheckpoint checkpoint = getSyncCheckpoint(currencyName);
+            if (checkpoint != null) {
+                Set<String> allMissingBlocks = new LinkedHashSet<>();
+                if (checkpoint.getMissingBlocks() != null) {
+                    allMissingBlocks.addAll(Arrays.asList(checkpoint.getMissingBlocks()));
+                }
+                allMissingBlocks.addAll(missingBlocks);
+                saveSyncCheckpoint(currencyName, peer, number, hash, allMissingBlocks);
+            }
+        }
+        syncMetrics.onForkResolved(currencyName, System.currentTimeMillis() - startTime);
+
+        return true; // sync OK
+    }
+
+    /**
+     * Compare blocks between <code>commonNumber</code> and <code>forkNumber</code> (excluded), using one remote request
+     * and one index request.
+     * @return the last block that is the same on peer and on index
+     */
+    protected int findLastCommonBlock(Peer peer, String currencyName, int commonNumber, int forkNumber) {
+        final int firstNumber = commonNumber + 1;
+        final int count = forkNumber - firstNumber;
+
+        // Get remote blocks
+        BytesReference[] blocks;
+        try {
+            blocks = executeWithRetry(() -> fetchBlocks(peer, count, firstNumber));
+        }
+        catch(TechnicalException | BusinessException e) {
+            logger.warn(I18n.t("duniter4j.blockIndexerService.detectFork.remoteBlockNotFound", currencyName, peer, firstNumber, e.getMessage()));
+            return commonNumber; // will re-index more blocks
+        }
+        catch(RuntimeException e) {
+            logger.error(I18n.t("duniter4j.blockIndexerService.detectFork.remoteBlockNotFound", currencyName, peer, firstNumber, e.getMessage()), e);
+            return commonNumber;
+        }
+        if (blocks.length == 0) {
+            return commonNumber;
+        }
+        Map<Integer, String> remoteHashes = new HashMap<>();
+        for (BytesReference block: blocks) {
+            JsonBlockHeaderParser.Header header = parseBlockHeader(block);
+            remoteHashes.put(header.getNumber(), header.getHash());
+        }
+
+        // Compare with indexed blocks
+        Map<Integer, String> indexedHashes = getIndexedBlockHashes(currencyName, firstNumber, forkNumber - 1);
+        for (int number = firstNumber; number < forkNumber; number++) {
+            String remoteHash = remoteHashes.get(number);
+            if (remoteHash == null || !remoteHash.equals(indexedHashes.get(number))) {
+                break;
+            }
+            commonNumber = number;
+        }
+        return commonNumber;
+    }
+
+    /**
+     * Get the hash of a remote block (with auto-retry)
+     * @return the hash, or null if the block could not be retrieved
+     */
+    protected String getRemoteBlockHash(Peer peer, String currencyName, int number) {
+        try {
+            String json = executeWithRetry(() -> blockchainRemoteService.getBlockAsJson(peer, number));
+            return blockNumberAndHashParser.parse(json).getHash();
+        }
+        // HTTP errors (e.g. connection error, block not found)
+        catch (TechnicalException | BusinessException e) {
+            logger.warn(I18n.t("duniter4j.blockIndexerService.detectFork.remoteBlockNotFound", currencyName, peer, number, e.getMessage()));
+            return null;
+        }
+        // Unexpected error (e.g. invalid response)
+        catch (RuntimeException e) {
+            logger.error(I18n.t("duniter4j.blockIndexerService.detectFork.remoteBlockNotFound", currencyName, peer, number, e.getMessage()), e);
+            return null;
+        }
+    }
+
+    /**
+     * Get hashes of indexed blocks, from the hash ring if possible, then using one multi-get request.
+     * @return hashes, by block number
+     */
+    protected Map<Integer, String> getIndexedBlockHashes(String currencyName, Collection<Integer> numbers) {
+        BlockHashRing hashRing = getBlockHashRing(currencyName);
+        Map<Integer, String> result = new HashMap<>();
+        List<Integer> notFoundNumbers = Lists.newArrayList();
+        for (Integer number: numbers) {
+            String hash = hashRing.getHash(number);
+            if (hash != null) {
+                result.put(number, hash);
+            }
+            else {
+                notFoundNumbers.add(number);
+            }
+        }
+
+        if (!notFoundNumbers.isEmpty()) {
+            result.putAll(blockRepositoryService.getBlockHashes(currencyName, notFoundNumbers));
+        }
+        return result;
+    }
+
+    protected Map<Integer, String> getIndexedBlockHashes(String currencyName, int fromNumber, int toNumber) {
+        List<Integer> numbers = Lists.newArrayListWithCapacity(toNumber - fromNumber + 1);
+        for (int number = fromNumber; number <= toNumber; number++) {
+            numbers.add(number);
+        }
+        return getIndexedBlockHashes(currencyName, numbers);
+    }
+
+    /**
+     * Get the hash ring of a currency. If not loaded yet, fill it from the index, using one sorted search
+     */
+    protected BlockHashRing getBlockHashRing(String currencyName) {
+        BlockHashRing hashRing = blockHashRings.get(currencyName);
+        if (hashRing == null) {
+            hashRing = loadBlockHashRing(currencyName);
+            BlockHashRing existingHashRing = blockHashRings.putIfAbsent(currencyName, hashRing);
+            if (existingHashRing != null) {
+                hashRing = existingHashRing;
+            }
+        }
+        return hashRing;
+    }
+
+    /**
+     * Reload the hash ring of a currency, from the index (e.g. after blocks has been indexed by another way)
+     */
+    public void reloadBlockHashRing(String currencyName) {
+        client.admin().indices().prepareRefresh(currencyName).get();
+        blockHashRings.put(currencyName, loadBlockHashRing(currencyName));
+    }
+
+    protected BlockHashRing loadBlockHashRing(String currencyName) {
+        BlockHashRing hashRing = new BlockHashRing(pluginSettings.getIndexBlockHashRingSize());
+
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(BLOCK_TYPE)
+                .setFetchSource(new String[]{"number", "hash"}, null)
+                .addSort("number", SortOrder.DESC)
+                .setSize(hashRing.getCapacity() + 1) // the current block will match too
+                .execute().actionGet();
+
+        int count = 0;
+        for (SearchHit hit: response.getHits()) {
+            if (CURRENT_BLOCK_ID.equals(hit.getId()) || hit.getSource() == null) continue;
+            Object number = hit.getSource().get("number");
+            Object hash = hit.getSource().get("hash");
+            if (number instanceof Number && hash != null) {
+                hashRing.put(((Number)number).intValue(), hash.toString());
+                count++;
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("[%s] Hash ring loaded with %s blocks", currencyName, count));
+        }
+        return hashRing;
+    }
+
+    /**
+     * Rollback a range of blocks: blocks are read using a range query (scroll), then moved into the fork archive
+     * (if enable), and deleted, using bulk requests for each page. A block that could not be archived is not deleted.
+     * @param peer the peer that caused the rollback
+     * @param fromNumber the first block to remove (the fork point)
+     */
+    protected void rollbackBlocks(Peer peer, String currencyName, int fromNumber, int toNumber) {
+        getBlockHashRing(currencyName).removeFrom(fromNumber);
+
+        // Revert balances, while blocks still exist
+        balanceService.revertBalances(currencyName, fromNumber);
+        wotService.invalidate(currencyName, fromNumber);
+        monetaryStatsService.revertStats(currencyName, fromNumber);
+
+        final boolean archive = pluginSettings.isForkArchiveEnable();
+        final String peerUrl = peer != null ? peer.getUrl() : null;
+        final long rollbackTime = System.currentTimeMillis() / 1000;
+
+        // Make sure last indexed blocks are visible to the search
+        client.admin().indices().prepareRefresh(currencyName).get();
+
+        TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(BLOCK_TYPE)
+                .setQuery(QueryBuilders.rangeQuery("number").gte(fromNumber).lte(toNumber))
+                .setFetchSource(archive)
+                .setSize(pluginSettings.getIndexBulkSize())
+                .setScroll(scrollTimeout)
+                .get();
+
+        int removedCount = 0;
+        try {
+            while (response.getHits().getHits().length > 0) {
+                // Skip the current block (will be replaced by the resync)
+                List<SearchHit> hits = Lists.newArrayListWithCapacity(response.getHits().getHits().length);
+                for (SearchHit hit : response.getHits().getHits()) {
+                    if (!CURRENT_BLOCK_ID.equals(hit.getId())) hits.add(hit);
+                }
+
+                // Archive blocks, before deleting them
+                Set<String> notArchivedIds = archive
+                        ? archiveForkBlocks(currencyName, hits, fromNumber, peerUrl, rollbackTime)
+                        : Collections.emptySet();
+
+                BulkRequestBuilder bulkRequest = client.prepareBulk();
+                for (SearchHit hit : hits) {
+                    if (notArchivedIds.contains(hit.getId())) continue;
+                    bulkRequest.add(client.prepareDelete(currencyName, BLOCK_TYPE, hit.getId()));
+                    removedCount++;
+                }
+                flushRollbackBulk(currencyName, bulkRequest);
+
+                response = client.prepareSearchScroll(response.getScrollId())
+                        .setScroll(scrollTimeout)
+                        .get();
+            }
+        }
+        finally {
+            client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+        }
+
+        // Delete events of the removed blocks
+        blockEventService.deleteEventsFromNumber(currencyName, fromNumber, toNumber);
+
+        if (logger.isInfoEnabled()) {
+            logger.info(String.format("[%s] [%s] %s blocks removed from #%s%s", currencyName, peer, removedCount, fromNumber,
+                    archive ? String.format(" (archived into [%s/%s])", currencyName, FORK_ARCHIVE_TYPE) : ""));
+        }
+    }
+
+    protected IndexRequestBuilder prepareArchiveForkBlock(String currencyName, SearchHit hit, int forkNumber, String peerUrl, long time) {
+        Map<String, Object> source = hit.getSource();
+        String hash = (String) source.get("hash");
+        try {
+            XContentBuilder content = XContentFactory.jsonBuilder().startObject()
+                    .field("number", Integer.parseInt(hit.getId()))
+                    .field("hash", hash)
+                    .field("previousHash", source.get("previousHash"))
+                    .field("forkNumber", forkNumber)
+                    .field("peer", peerUrl)
+                    .field("time", time)
+                    .rawField("block", hit.getSourceRef())
+                    .endObject();
+            return client.prepareIndex(currencyName, FORK_ARCHIVE_TYPE, hit.getId() + "-" + hash)
+                    .setSource(content);
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("[%s] Unable to archive block #%s: %s", currencyName, hit.getId(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Copy blocks into the fork archive, using one bulk request
+     * @return ids of the blocks that could not be archived
+     */
+    protected Set<String> archiveForkBlocks(String currencyName, List<SearchHit> hits, int forkNumber, String peerUrl, long time) {
+        if (hits.isEmpty()) return Collections.emptySet();
+
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        for (SearchHit hit : hits) {
+            bulkRequest.add(prepareArchiveForkBlock(currencyName, hit, forkNumber, peerUrl, time));
+        }
+
+        BulkResponse bulkResponse = bulkRequest.get();
+        if (!bulkResponse.hasFailures()) return Collections.emptySet();
+
+        Set<String> result = new HashSet<>();
+        for (BulkItemResponse itemResponse : bulkResponse) {
+            if (!itemResponse.isFailed()) continue;
+            String blockId = hits.get(itemResponse.getItemId()).getId();
+            logger.warn(String.format("[%s] Error while archiving block #%s: %s. Skipping its deletion.", currencyName, blockId, itemResponse.getFailureMessage()));
+            result.add(blockId);
+        }
+        return result;
+    }
+
+    protected void flushRollbackBulk(String currencyName, BulkRequestBuilder bulkRequest) {
+        if (bulkRequest.numberOfActions() == 0) return;
+
+        BulkResponse bulkResponse = bulkRequest.get();
+        // If failures, continue but log them
+        if (bulkResponse.hasFailures()) {
+            for (BulkItemResponse itemResponse : bulkResponse) {
+                if (!itemResponse.isFailed()) continue;
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("[%s] Error while deleting block #%s: %s. Skipping this deletion.", currencyName, itemResponse.getId(), itemResponse.getFailureMessage()));
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of blocks, that goes through the sync pipeline
+     */
+    protected static class BlocksBatch {
+        final int firstNumber;
+        final int lastNumber;
+
+        // Filled by the fetch stage
+        BytesReference[] blocks;
+
+        // Filled by the parse stage
+        int[] numbers;
+        String[] hashes;
+
+        // Set when all requests of the batch have been added to the bulk processor
+        boolean added;
+
+        BlocksBatch(int firstNumber, int lastNumber) {
+            this.firstNumber = firstNumber;
+            this.lastNumber = lastNumber;
+        }
+
+        int getMaxNumber() {
+            int maxNumber = -1;
+            if (numbers != null) {
+                for (int number : numbers) {
+                    if (number > maxNumber) maxNumber = number;
+                }
+            }
+            return maxNumber;
+        }
+
+        BytesReference getBlock(int number) {
+            if (numbers == null || blocks == null) return null;
+            for (int i = 0; i < numbers.length; i++) {
+                if (numbers[i] == number) return blocks[i];
+            }
+            return null;
+        }
+
+        String getHash(int number) {
+            if (numbers == null) return null;
+            for (int i = 0; i < numbers.length; i++) {
+                if (numbers[i] == number) return hashes[i];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Requests added to the bulk processor by a sync run: pending count, and blocks that failed.
+     * A batch is added to the checkpoint tracker only when all its requests have been processed
+     * (its failed blocks are then already in the missing blocks)
+     */
+    protected static class BulkProcessorRun {
+        final String currencyName;
+        final Set<String> missingBlockNumbers;
+        final AtomicInteger pendingActions = new AtomicInteger();
+
+        // Guarded by this run
+        final CheckpointTracker checkpointTracker;
+        final int initialCheckpointNumber;
+        int savedCheckpointNumber;
+        private final Map<ActionRequest, BlocksBatch> batchByRequest = new IdentityHashMap<>();
+        private final Map<BlocksBatch, Integer> pendingRequestsByBatch = new IdentityHashMap<>();
+
+        /**
+         * @param checkpointTracker tracker of acknowledged batches (could be null)
+         */
+        BulkProcessorRun(String currencyName, Set<String> missingBlockNumbers, CheckpointTracker checkpointTracker) {
+            this.currencyName = currencyName;
+            this.missingBlockNumbers = missingBlockNumbers;
+            this.checkpointTracker = checkpointTracker;
+            this.initialCheckpointNumber = checkpointTracker != null ? checkpointTracker.number : -1;
+            this.savedCheckpointNumber = initialCheckpointNumber;
+        }
+
+        synchronized void onBatchRequestAdded(BlocksBatch batch, ActionRequest request) {
+            batchByRequest.put(request, batch);
+            pendingRequestsByBatch.merge(batch, 1, Integer::sum);
+        }
+
+        /**
+         * Called when all requests of the batch have been added (the batch may already be done)
+         */
+        synchronized void onBatchAdded(BlocksBatch batch) {
+            batch.added = true;
+            if (!pendingRequestsByBatch.containsKey(batch)) {
+                onBatchAcknowledged(batch);
+            }
+        }
+
+        synchronized void onBatchRequestDone(ActionRequest request) {
+            BlocksBatch batch = batchByRequest.remove(request);
+            if (batch == null) return;
+            int pendingCount = pendingRequestsByBatch.merge(batch, -1, Integer::sum);
+            if (pendingCount <= 0) {
+                pendingRequestsByBatch.remove(batch);
+                if (batch.added) {
+                    onBatchAcknowledged(batch);
+                }
+            }
+        }
+
+        private void onBatchAcknowledged(BlocksBatch batch) {
+            if (checkpointTracker != null) {
+                checkpointTracker.add(batch);
+            }
+        }
+    }
+
+    /**
+     * Compute the last contiguous block number, from batches processed in any order
+     */
+    protected static class CheckpointTracker {
+        // Processed batches, not contiguous yet, by first number
+        private final Map<Integer, BlocksBatch> pendingBatches = new HashMap<>();
+
+        int number;
+        String hash;
+
+        CheckpointTracker(int number) {
+            this.number = number;
+        }
+
+        /**
+         * @return true if the checkpoint has moved forward
+         */
+        boolean add(BlocksBatch batch) {
+            pendingBatches.put(batch.firstNumber, batch);
+
+            boolean moved = false;
+            BlocksBatch nextBatch;
+            while ((nextBatch = pendingBatches.remove(number + 1)) != null) {
+                number = nextBatch.lastNumber;
+                hash = nextBatch.getHash(number);
+                moved = true;
+            }
+            return moved;
+        }
+    }
+
+    /**
+     * A block received from a peer, waiting to be indexed
+     */
+    protected static class NewBlock {
+        final Peer peer;
+        final String json;
+
+        // Filled when parsed
+        String currency;
+        int number;
+        String hash;
+        String previousHash;
+
+        NewBlock(Peer peer, String json) {
+            this.peer = peer;
+            this.json = json;
+        }
     }
 }
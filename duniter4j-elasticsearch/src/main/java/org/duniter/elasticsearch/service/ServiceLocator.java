@@ -29,6 +29,8 @@ import org.duniter.core.client.dao.CurrencyDao;
 import org.duniter.core.client.dao.PeerDao;
 import org.duniter.core.client.dao.mem.MemoryCurrencyDaoImpl;
 import org.duniter.core.client.dao.mem.MemoryPeerDaoImpl;
+import org.duniter.core.client.service.AsyncHttpService;
+import org.duniter.core.client.service.AsyncHttpServiceImpl;
 import org.duniter.core.client.service.DataContext;
 import org.duniter.core.client.service.HttpService;
 import org.duniter.core.client.service.HttpServiceImpl;
@@ -93,6 +95,7 @@ public class ServiceLocator
                 .bind(PeerService.class, PeerServiceImpl.class)
                 .bind(CurrencyService.class, CurrencyServiceImpl.class)
                 .bind(HttpService.class, HttpServiceImpl.class)
+                .bind(AsyncHttpService.class, AsyncHttpServiceImpl.class)
                 .bind(CurrencyDao.class, MemoryCurrencyDaoImpl.class)
                 .bind(PeerDao.class, MemoryPeerDaoImpl.class)
                 .add(DataContext.class);
@@ -35,6 +35,15 @@ import org.duniter.core.client.service.local.CurrencyService;
 import org.duniter.core.client.service.local.PeerService;
 import org.duniter.core.service.CryptoService;
 import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.service.blockchain.BalanceService;
+import org.duniter.elasticsearch.service.blockchain.BlockEventService;
+import org.duniter.elasticsearch.service.blockchain.BlockRepositoryService;
+import org.duniter.elasticsearch.service.blockchain.BlockSnapshotService;
+import org.duniter.elasticsearch.service.blockchain.BlockchainSyncScheduler;
+import org.duniter.elasticsearch.service.blockchain.BlockchainVerifierService;
+import org.duniter.elasticsearch.service.blockchain.BulkLoadService;
+import org.duniter.elasticsearch.service.blockchain.MonetaryStatsService;
+import org.duniter.elasticsearch.service.blockchain.WotService;
 import org.duniter.elasticsearch.service.synchro.SynchroService;
 import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.Module;
@@ -50,7 +59,16 @@ public class ServiceModule extends AbstractModule implements Module {
         // ES indexation services
         bind(RegistryService.class).asEagerSingleton();
         bind(MarketService.class).asEagerSingleton();
+        bind(BlockRepositoryService.class).asEagerSingleton();
+        bind(BlockEventService.class).asEagerSingleton();
+        bind(BalanceService.class).asEagerSingleton();
+        bind(WotService.class).asEagerSingleton();
+        bind(MonetaryStatsService.class).asEagerSingleton();
+        bind(BulkLoadService.class).asEagerSingleton();
         bind(BlockchainService.class).asEagerSingleton();
+        bind(BlockchainVerifierService.class).asEagerSingleton();
+        bind(BlockSnapshotService.class).asEagerSingleton();
+        bind(BlockchainSyncScheduler.class).asEagerSingleton();
         bind(MessageService.class).asEagerSingleton();
         bind(HistoryService.class).asEagerSingleton();
 
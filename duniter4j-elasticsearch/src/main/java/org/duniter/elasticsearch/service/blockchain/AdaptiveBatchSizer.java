@@ -0,0 +1,132 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.local.Peer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compute the number of blocks to ask in one request, for each peer, so that a response stays near
+ * a target size (in bytes) and a target time. Sizes and times per block are moving averages of the
+ * previous responses: small blocks (e.g. early blocks) lead to large batches, and blocks with many
+ * transactions (or a slow peer) lead to small batches.
+ * On a failure (e.g. a timeout), the batch size of the peer is halved.
+ */
+public class AdaptiveBatchSizer {
+
+    // Weight of the last response, in moving averages
+    private static final double ALPHA = 0.3;
+
+    // Max growth of the batch size, after one response
+    private static final double MAX_GROWTH = 2;
+
+    private final int initialSize;
+    private final int minSize;
+    private final int maxSize;
+    private final long targetBytes;
+    private final long targetTimeMs;
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    public AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, long targetBytes, long targetTimeMs) {
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid batch size bounds");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.initialSize = Math.max(minSize, Math.min(maxSize, initialSize));
+        this.targetBytes = targetBytes;
+        this.targetTimeMs = targetTimeMs;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @return the number of blocks to ask to this peer
+     */
+    public int getBatchSize(Peer peer) {
+        State state = states.get(peer.getUrl());
+        return state != null ? state.getSize() : initialSize;
+    }
+
+    /**
+     * Record a response
+     * @param count number of received blocks
+     * @param bytes response size
+     * @param timeMs response time
+     */
+    public void onSuccess(Peer peer, int count, long bytes, long timeMs) {
+        if (count <= 0) return;
+        getOrCreate(peer).onSuccess(count, bytes, timeMs);
+    }
+
+    public void onFailure(Peer peer) {
+        getOrCreate(peer).onFailure();
+    }
+
+    /* -- internal methods -- */
+
+    private State getOrCreate(Peer peer) {
+        return states.computeIfAbsent(peer.getUrl(), url -> new State(initialSize));
+    }
+
+    private class State {
+        double size;
+        double bytesPerBlock = -1;
+        double timePerBlock = -1;
+
+        State(int size) {
+            this.size = size;
+        }
+
+        synchronized int getSize() {
+            return (int) size;
+        }
+
+        synchronized void onSuccess(int count, long bytes, long timeMs) {
+            bytesPerBlock = average(bytesPerBlock, (double) bytes / count);
+            timePerBlock = average(timePerBlock, (double) timeMs / count);
+
+            double idealSize = Math.min(
+                    targetBytes / Math.max(bytesPerBlock, 1d),
+                    targetTimeMs / Math.max(timePerBlock, 0.01d));
+            size = bound(Math.min(idealSize, size * MAX_GROWTH));
+        }
+
+        synchronized void onFailure() {
+            size = bound(size / 2);
+        }
+
+        private double average(double previous, double value) {
+            return previous < 0 ? value : ALPHA * value + (1 - ALPHA) * previous;
+        }
+
+        private double bound(double value) {
+            return Math.max(minSize, Math.min(maxSize, value));
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.common.hash.Hashing;
+import org.duniter.core.client.model.bma.BlockchainBlock;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Balance changes of a batch of blocks, computed in memory (then saved by {@link BalanceService}).
+ * <br/>
+ * An account is a pubkey, or an output condition: outputs locked by another condition than a single
+ * <code>SIG(pubkey)</code> (multisig, XHX, CSV/CLTV...) are credited to the account of their condition,
+ * and kept as sources (by <code>'txHash:outputIndex'</code>), so that T-inputs spending them debit the same account.
+ * Sources used by T-inputs must be loaded first (see {@link #getSourceRefs(BlockchainBlock)}).
+ * This class is not thread-safe.
+ */
+public class BalanceLedger {
+
+    private static final String CONDITION_ID_PREFIX = "condition-";
+
+    // Simple condition: 'SIG(pubkey)'
+    private static final Pattern SIG_CONDITION_PATTERN = Pattern.compile("^SIG\\(([^()]+)\\)$");
+    // Unlock format: 'inputIndex:SIG(issuerIndex)'
+    private static final Pattern UNLOCK_PATTERN = Pattern.compile("^(\\d+):SIG\\((\\d+)\\)$");
+
+    private final Set<String> members;
+    private final Map<String, Delta> deltas = new LinkedHashMap<>();
+
+    // Condition sources, by ref: loaded, or added by applied blocks
+    private final Map<String, Source> sources = new HashMap<>();
+    private final Map<String, Source> addedSources = new LinkedHashMap<>();
+    private final Set<String> removedSources = new LinkedHashSet<>();
+
+    /**
+     * @param members current members (updated while applying or reverting blocks)
+     */
+    public BalanceLedger(Set<String> members) {
+        this.members = members;
+    }
+
+    /**
+     * @return refs (<code>'txHash:outputIndex'</code>) of all T-inputs of the block
+     */
+    public static Set<String> getSourceRefs(BlockchainBlock block) {
+        Set<String> result = new LinkedHashSet<>();
+        if (block.getTransactions() == null) return result;
+        for (BlockchainBlock.Transaction tx : block.getTransactions()) {
+            if (tx.getInputs() == null) continue;
+            for (String input : tx.getInputs()) {
+                String[] parts = input.split(":");
+                if (parts.length == 5 && "T".equals(parts[2])) {
+                    result.add(parts[3] + ":" + parts[4]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the account is an output condition (not a pubkey)
+     */
+    public static boolean isCondition(String account) {
+        return account.indexOf('(') != -1;
+    }
+
+    /**
+     * @return the balance id of an account: the pubkey, or a hash of the condition (conditions could be long)
+     */
+    public static String getAccountId(String account) {
+        if (!isCondition(account)) return account;
+        return CONDITION_ID_PREFIX + Hashing.sha256().hashString(account, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Add sources loaded from the index
+     */
+    public void addSources(Map<String, Source> loadedSources) {
+        sources.putAll(loadedSources);
+    }
+
+    /**
+     * Apply a block: membership changes, then universal dividend, then transactions
+     */
+    public void applyBlock(BlockchainBlock block) {
+        int number = block.getNumber();
+
+        if (block.getJoiners() != null) {
+            for (BlockchainBlock.Joiner joiner : block.getJoiners()) {
+                members.add(joiner.getPublicKey());
+                getDelta(joiner.getPublicKey(), number);
+            }
+        }
+        if (block.getExcluded() != null) {
+            for (String pubkey : block.getExcluded()) {
+                members.remove(pubkey);
+                getDelta(pubkey, number);
+            }
+        }
+
+        applyDividend(block, 1);
+        applyTransactions(block, 1);
+    }
+
+    /**
+     * Revert a block, in the reverse order of applyBlock()
+     */
+    public void revertBlock(BlockchainBlock block) {
+        int number = block.getNumber();
+
+        applyTransactions(block, -1);
+        applyDividend(block, -1);
+
+        if (block.getExcluded() != null) {
+            for (String pubkey : block.getExcluded()) {
+                members.add(pubkey);
+                getDelta(pubkey, number - 1);
+            }
+        }
+        if (block.getJoiners() != null) {
+            for (BlockchainBlock.Joiner joiner : block.getJoiners()) {
+                members.remove(joiner.getPublicKey());
+                getDelta(joiner.getPublicKey(), number - 1);
+            }
+        }
+    }
+
+    /**
+     * @return changes, by account
+     */
+    public Map<String, Delta> getDeltas() {
+        return deltas;
+    }
+
+    /**
+     * @return sources to save, by ref
+     */
+    public Map<String, Source> getAddedSources() {
+        return addedSources;
+    }
+
+    /**
+     * @return refs of sources to delete (outputs of reverted blocks)
+     */
+    public Set<String> getRemovedSources() {
+        return removedSources;
+    }
+
+    /* -- Internal methods -- */
+
+    protected void applyDividend(BlockchainBlock block, int sign) {
+        BigInteger dividend = block.getDividend();
+        if (dividend == null || dividend.signum() == 0) return;
+
+        int unitBase = block.getUnitBase() != null ? block.getUnitBase() : 0;
+        long amount = dividend.multiply(BigInteger.TEN.pow(unitBase)).longValue();
+        int number = sign > 0 ? block.getNumber() : block.getNumber() - 1;
+        for (String pubkey : members) {
+            Delta delta = getDelta(pubkey, number);
+            delta.amount += sign * amount;
+            delta.udCount += sign;
+        }
+    }
+
+    protected void applyTransactions(BlockchainBlock block, int sign) {
+        if (block.getTransactions() == null) return;
+        int number = sign > 0 ? block.getNumber() : block.getNumber() - 1;
+
+        for (BlockchainBlock.Transaction tx : block.getTransactions()) {
+            String[] issuers = tx.getIssuers();
+            if (issuers == null || issuers.length == 0) continue;
+
+            // Inputs owner, from unlocks (default: first issuer)
+            Map<Integer, String> inputOwners = new HashMap<>();
+            if (tx.getUnlocks() != null) {
+                for (String unlock : tx.getUnlocks()) {
+                    Matcher matcher = UNLOCK_PATTERN.matcher(unlock);
+                    if (matcher.matches()) {
+                        int issuerIndex = Integer.parseInt(matcher.group(2));
+                        if (issuerIndex < issuers.length) {
+                            inputOwners.put(Integer.parseInt(matcher.group(1)), issuers[issuerIndex]);
+                        }
+                    }
+                }
+            }
+
+            // Inputs: 'amount:base:D:pubkey:blockNumber' or 'amount:base:T:txHash:outputIndex'
+            if (tx.getInputs() != null) {
+                for (int i = 0; i < tx.getInputs().length; i++) {
+                    String[] parts = tx.getInputs()[i].split(":");
+                    if (parts.length != 5) continue;
+                    String owner;
+                    if ("D".equals(parts[2])) {
+                        owner = parts[3];
+                    }
+                    else {
+                        // Spending a condition output: debit the condition account
+                        Source source = sources.get(parts[3] + ":" + parts[4]);
+                        owner = source != null ? source.condition : inputOwners.getOrDefault(i, issuers[0]);
+                    }
+                    getDelta(owner, number).amount -= sign * toAmount(parts[0], parts[1]);
+                }
+            }
+
+            // Outputs: 'amount:base:condition'
+            if (tx.getOutputs() != null) {
+                for (int i = 0; i < tx.getOutputs().length; i++) {
+                    String[] parts = tx.getOutputs()[i].split(":", 3);
+                    if (parts.length != 3) continue;
+                    long amount = toAmount(parts[0], parts[1]);
+                    String condition = parts[2].trim();
+
+                    Matcher matcher = SIG_CONDITION_PATTERN.matcher(condition);
+                    if (matcher.matches()) {
+                        getDelta(matcher.group(1), number).amount += sign * amount;
+                        continue;
+                    }
+
+                    getDelta(condition, number).amount += sign * amount;
+                    if (tx.getHash() != null) {
+                        String ref = tx.getHash() + ":" + i;
+                        if (sign > 0) {
+                            Source source = new Source(condition, amount);
+                            sources.put(ref, source);
+                            addedSources.put(ref, source);
+                            removedSources.remove(ref);
+                        }
+                        else {
+                            // Keep the source in memory: a previous transaction of the block could spend it
+                            addedSources.remove(ref);
+                            removedSources.add(ref);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    protected long toAmount(String amount, String base) {
+        return Long.parseLong(amount) * (long)Math.pow(10, Integer.parseInt(base));
+    }
+
+    protected Delta getDelta(String account, int blockNumber) {
+        Delta delta = deltas.computeIfAbsent(account, k -> new Delta());
+        delta.blockNumber = blockNumber;
+        return delta;
+    }
+
+    /**
+     * Changes of a balance, while applying (or reverting) blocks
+     */
+    public static class Delta {
+        long amount;
+        int udCount;
+        int blockNumber;
+
+        public long getAmount() {
+            return amount;
+        }
+
+        public int getUdCount() {
+            return udCount;
+        }
+
+        public int getBlockNumber() {
+            return blockNumber;
+        }
+    }
+
+    /**
+     * An output locked by a condition
+     */
+    public static class Source {
+        final String condition;
+        final long amount;
+
+        public Source(String condition, long amount) {
+            this.condition = condition;
+            this.amount = amount;
+        }
+
+        public String getCondition() {
+            return condition;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.duniter.core.client.model.bma.BlockchainBlock;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.ObjectUtils;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.model.Balance;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.action.admin.indices.exists.types.TypesExistsResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Maintain a balance document by pubkey (amount, UD count, member flag), from indexed blocks.
+ * Outputs locked by other conditions are counted on a balance of the condition (see {@link BalanceLedger}).
+ * Blocks are applied in order, from the ledger state (last applied block) to the last indexed block,
+ * and reverted (in reverse order) before a fork rollback.
+ * <br/>
+ * Updates of a currency are serialized by a lock of this currency. When balances could not be updated,
+ * the ledger stays at its last state, and balances are recomputed by a background job.
+ */
+public class BalanceService extends AbstractService {
+
+    public static final String BALANCE_TYPE = "balance";
+    public static final String LEDGER_TYPE = "ledger";
+    public static final String LEDGER_SOURCE_TYPE = "ledgerSource";
+    public static final String LEDGER_STATE_ID = "state";
+
+    private static final String PROPERTY_NUMBER = "number";
+    private static final String PROPERTY_HASH = "hash";
+    private static final String PROPERTY_CONDITION = "condition";
+    private static final String PROPERTY_AMOUNT = "amount";
+
+    private final ThreadPool threadPool;
+    private final BlockRepositoryService blockRepositoryService;
+
+    // Current members, by currency (loaded once from the index)
+    private final Map<String, Set<String>> membersByCurrency = new ConcurrentHashMap<>();
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private final Set<String> rebuildingCurrencies = ConcurrentHashMap.newKeySet();
+    private ExecutorService rebuildExecutor;
+
+    @Inject
+    public BalanceService(Client client, PluginSettings settings, ThreadPool threadPool,
+                          BlockRepositoryService blockRepositoryService) {
+        super("duniter.blockchain", client, settings);
+        this.threadPool = threadPool;
+        this.blockRepositoryService = blockRepositoryService;
+    }
+
+    /**
+     * Stop the background rebuild (if any)
+     */
+    public synchronized void close() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+            rebuildExecutor = null;
+        }
+    }
+
+    public boolean isEnable() {
+        return pluginSettings.isIndexBalanceEnable();
+    }
+
+    /**
+     * Create balance types, on an index created by an older version
+     */
+    public void createTypesIfNotExists(String currencyName) {
+        if (!isEnable()) return;
+
+        TypesExistsResponse response = client.admin().indices().prepareTypesExists(currencyName)
+                .setTypes(BALANCE_TYPE, LEDGER_TYPE, LEDGER_SOURCE_TYPE)
+                .get();
+        if (!response.isExists()) {
+            logger.info(String.format("[%s] Creating types [%s, %s, %s]", currencyName, BALANCE_TYPE, LEDGER_TYPE, LEDGER_SOURCE_TYPE));
+            client.admin().indices().preparePutMapping(currencyName)
+                    .setType(BALANCE_TYPE)
+                    .setSource(createBalanceType())
+                    .get();
+            client.admin().indices().preparePutMapping(currencyName)
+                    .setType(LEDGER_TYPE)
+                    .setSource(createLedgerType())
+                    .get();
+            client.admin().indices().preparePutMapping(currencyName)
+                    .setType(LEDGER_SOURCE_TYPE)
+                    .setSource(createLedgerSourceType())
+                    .get();
+        }
+    }
+
+    /**
+     * Get balances of many pubkeys, in one request
+     * @return balances, in the same order as <code>pubkeys</code> (with zero amount if the pubkey is unknown)
+     */
+    public List<Balance> getBalances(String currencyName, Collection<String> pubkeys) {
+        ObjectUtils.checkNotNull(currencyName);
+        ObjectUtils.checkNotNull(pubkeys);
+
+        Map<String, Balance> balances = loadBalances(currencyName, pubkeys);
+        List<Balance> result = new ArrayList<>(pubkeys.size());
+        for (String pubkey: pubkeys) {
+            Balance balance = balances.get(pubkey);
+            result.add(balance != null ? balance : newBalance(pubkey));
+        }
+        return result;
+    }
+
+    /**
+     * @return the last block applied to balances, or -1 if none
+     */
+    public int getLedgerNumber(String currencyName) {
+        GetResponse response = client.prepareGet(currencyName, LEDGER_TYPE, LEDGER_STATE_ID)
+                .setRealtime(true)
+                .get();
+        if (!response.isExists()) return -1;
+        Object number = response.getSource().get(PROPERTY_NUMBER);
+        return number instanceof Number ? ((Number)number).intValue() : -1;
+    }
+
+    /**
+     * Apply indexed blocks to balances, from the last applied block to <code>toNumber</code>.
+     * Stop at the first block not indexed yet.
+     * If balances could not be updated, they will be recomputed in background (see {@link #scheduleRebuild(String)}).
+     */
+    public void updateBalances(String currencyName, int toNumber) {
+        if (!isEnable()) return;
+
+        // Skip while recomputing: the rebuild will apply all indexed blocks
+        if (rebuildingCurrencies.contains(currencyName)) return;
+
+        synchronized (getLock(currencyName)) {
+            int number = getLedgerNumber(currencyName);
+            if (number >= toNumber) return;
+
+            long timeStart = System.currentTimeMillis();
+            int lastNumber;
+            try {
+                lastNumber = applyBlocks(currencyName, number + 1, toNumber);
+            }
+            catch(RuntimeException e) {
+                // Members could be inconsistent with the ledger state: reload them next time
+                membersByCurrency.remove(currencyName);
+                logger.error(String.format("[%s] Unable to update balances from block #%s: %s. Balances will be recomputed.", currencyName, number + 1, e.getMessage()), e);
+                scheduleRebuild(currencyName);
+                return;
+            }
+
+            if (logger.isDebugEnabled() && lastNumber > number) {
+                logger.debug(String.format("[%s] Balances updated from block #%s to #%s, in %s ms", currencyName, number + 1, lastNumber, System.currentTimeMillis() - timeStart));
+            }
+        }
+    }
+
+    /**
+     * Revert applied blocks, from the last applied block down to <code>fromNumber</code> (included).
+     * Must be called before indexed blocks are deleted (e.g. on fork).
+     * If balances could not be reverted, they will be recomputed in background (see {@link #scheduleRebuild(String)}).
+     */
+    public void revertBalances(String currencyName, int fromNumber) {
+        if (!isEnable()) return;
+
+        // Wait the rebuild (if running): it could have applied the blocks to revert
+        synchronized (getLock(currencyName)) {
+            int number = getLedgerNumber(currencyName);
+            if (number < fromNumber) return;
+
+            logger.info(String.format("[%s] Reverting balances, from block #%s to #%s", currencyName, number, fromNumber));
+            try {
+                revertBlocks(currencyName, number, fromNumber);
+            }
+            catch(RuntimeException e) {
+                membersByCurrency.remove(currencyName);
+                // Do not stop the rollback: recompute balances instead
+                logger.error(String.format("[%s] Unable to revert balances: %s. Balances will be recomputed.", currencyName, e.getMessage()), e);
+                scheduleRebuild(currencyName);
+            }
+        }
+    }
+
+    /**
+     * Remove all balances and sources (they will be recomputed on next update)
+     */
+    public void deleteBalances(String currencyName) {
+        synchronized (getLock(currencyName)) {
+            doDeleteBalances(currencyName);
+        }
+    }
+
+    /**
+     * Recompute balances from the first block, in background. Until the rebuild ends, updates of this currency
+     * are skipped (the ledger stays at its last state), and reverts wait for it.
+     */
+    public void scheduleRebuild(final String currencyName) {
+        if (!rebuildingCurrencies.add(currencyName)) return; // already scheduled
+
+        try {
+            getRebuildExecutor().execute(() -> {
+                try {
+                    rebuildBalances(currencyName);
+                }
+                catch(Throwable t) {
+                    membersByCurrency.remove(currencyName);
+                    logger.error(String.format("[%s] Unable to recompute balances: %s", currencyName, t.getMessage()), t);
+                }
+                finally {
+                    rebuildingCurrencies.remove(currencyName);
+                }
+            });
+        }
+        catch(RejectedExecutionException e) {
+            // closed
+            rebuildingCurrencies.remove(currencyName);
+        }
+    }
+
+    /**
+     * Clear caches (e.g. when the index has been deleted)
+     */
+    public void clearCache(String currencyName) {
+        membersByCurrency.remove(currencyName);
+    }
+
+
+    public XContentBuilder createBalanceType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(BALANCE_TYPE)
+                    .startObject("properties")
+
+                    // pubkey
+                    .startObject(Balance.PROPERTY_PUBKEY)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // output condition (if not a pubkey)
+                    .startObject(Balance.PROPERTY_CONDITION)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // amount
+                    .startObject(Balance.PROPERTY_AMOUNT)
+                    .field("type", "long")
+                    .endObject()
+
+                    // UD count
+                    .startObject(Balance.PROPERTY_UD_COUNT)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // is member ?
+                    .startObject(Balance.PROPERTY_MEMBER)
+                    .field("type", "boolean")
+                    .endObject()
+
+                    // last block number
+                    .startObject(Balance.PROPERTY_BLOCK_NUMBER)
+                    .field("type", "integer")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for balance type: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public XContentBuilder createLedgerType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(LEDGER_TYPE)
+                    .startObject("properties")
+
+                    // last applied block number
+                    .startObject(PROPERTY_NUMBER)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // last applied block hash
+                    .startObject(PROPERTY_HASH)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for ledger type: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public XContentBuilder createLedgerSourceType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(LEDGER_SOURCE_TYPE)
+                    .startObject("properties")
+
+                    // output condition
+                    .startObject(PROPERTY_CONDITION)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // amount
+                    .startObject(PROPERTY_AMOUNT)
+                    .field("type", "long")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for ledger source type: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected Object getLock(String currencyName) {
+        return locks.computeIfAbsent(currencyName, key -> new Object());
+    }
+
+    protected synchronized ExecutorService getRebuildExecutor() {
+        if (rebuildExecutor == null) {
+            rebuildExecutor = threadPool.newFixedThreadPool("duniter4j-balance-rebuild", 1);
+        }
+        return rebuildExecutor;
+    }
+
+    /**
+     * Delete balances, then apply all indexed blocks (holding the currency lock)
+     */
+    protected void rebuildBalances(String currencyName) {
+        synchronized (getLock(currencyName)) {
+            logger.info(String.format("[%s] Recomputing balances...", currencyName));
+            long timeStart = System.currentTimeMillis();
+            doDeleteBalances(currencyName);
+
+            BlockchainBlock currentBlock = blockRepositoryService.getCurrentBlock(currencyName);
+            if (currentBlock == null || currentBlock.getNumber() == null) return;
+            int lastNumber = applyBlocks(currencyName, 0, currentBlock.getNumber());
+            logger.info(String.format("[%s] Balances recomputed up to block #%s, in %s ms", currencyName, lastNumber, System.currentTimeMillis() - timeStart));
+        }
+    }
+
+    protected void doDeleteBalances(String currencyName) {
+        client.admin().indices().prepareRefresh(currencyName).get();
+        TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(BALANCE_TYPE, LEDGER_SOURCE_TYPE)
+                .setQuery(QueryBuilders.matchAllQuery())
+                .setFetchSource(false)
+                .setSize(pluginSettings.getIndexBulkSize())
+                .setScroll(scrollTimeout)
+                .get();
+        while (response.getHits().getHits().length > 0) {
+            BulkRequestBuilder bulkRequest = client.prepareBulk();
+            for (SearchHit hit: response.getHits().getHits()) {
+                bulkRequest.add(client.prepareDelete(currencyName, hit.getType(), hit.getId()));
+            }
+            bulkRequest.get();
+            response = client.prepareSearchScroll(response.getScrollId())
+                    .setScroll(scrollTimeout)
+                    .get();
+        }
+        client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+
+        client.prepareDelete(currencyName, LEDGER_TYPE, LEDGER_STATE_ID).setRefresh(true).get();
+        membersByCurrency.remove(currencyName);
+    }
+
+
+    /**
+     * @return the last applied block number
+     */
+    protected int applyBlocks(String currencyName, int fromNumber, int toNumber) {
+        Set<String> members = getMembers(currencyName);
+        int batchSize = pluginSettings.getIndexBulkSize();
+
+        int number = fromNumber - 1;
+        while (number < toNumber) {
+            int count = Math.min(batchSize, toNumber - number);
+            int[] numbers = new int[count];
+            for (int i = 0; i < count; i++) {
+                numbers[i] = number + 1 + i;
+            }
+
+            // Block not indexed yet: stop there (blocks must be applied in order)
+            List<BlockchainBlock> blocks = new ArrayList<>(count);
+            for (BlockchainBlock block: blockRepositoryService.getBlocks(currencyName, numbers)) {
+                if (block == null) break;
+                blocks.add(block);
+            }
+            if (blocks.isEmpty()) break;
+
+            BalanceLedger ledger = newLedger(currencyName, members, blocks);
+            for (BlockchainBlock block: blocks) {
+                ledger.applyBlock(block);
+            }
+            BlockchainBlock lastBlock = blocks.get(blocks.size() - 1);
+
+            saveBalances(currencyName, ledger, members, lastBlock.getNumber(), lastBlock.getHash());
+            number = lastBlock.getNumber();
+            if (number < numbers[count - 1]) break;
+        }
+        return number;
+    }
+
+    protected void revertBlocks(String currencyName, int number, int fromNumber) {
+        Set<String> members = getMembers(currencyName);
+        int batchSize = pluginSettings.getIndexBulkSize();
+
+        while (number >= fromNumber) {
+            int count = Math.min(batchSize, number - fromNumber + 1);
+            int[] numbers = new int[count];
+            for (int i = 0; i < count; i++) {
+                numbers[i] = number - i; // descending order
+            }
+
+            List<BlockchainBlock> blocks = blockRepositoryService.getBlocks(currencyName, numbers);
+            for (int i = 0; i < count; i++) {
+                if (blocks.get(i) == null) {
+                    // Should never occur: balances could not be reverted (the ledger stays at its state)
+                    throw new TechnicalException(String.format("[%s] Block #%s not found", currencyName, numbers[i]));
+                }
+            }
+
+            BalanceLedger ledger = newLedger(currencyName, members, blocks);
+            for (BlockchainBlock block: blocks) {
+                ledger.revertBlock(block);
+            }
+
+            number -= count;
+            saveBalances(currencyName, ledger, members, number, null);
+        }
+    }
+
+    /**
+     * Create a ledger for the given blocks, with sources spent by their T-inputs
+     */
+    protected BalanceLedger newLedger(String currencyName, Set<String> members, List<BlockchainBlock> blocks) {
+        Set<String> sourceRefs = new HashSet<>();
+        for (BlockchainBlock block: blocks) {
+            sourceRefs.addAll(BalanceLedger.getSourceRefs(block));
+        }
+
+        BalanceLedger ledger = new BalanceLedger(members);
+        ledger.addSources(loadSources(currencyName, sourceRefs));
+        return ledger;
+    }
+
+    /**
+     * Apply ledger deltas to stored balances, then save balances, sources and the ledger state, in one bulk request
+     */
+    protected void saveBalances(String currencyName, BalanceLedger ledger, Set<String> members, int number, String hash) {
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+
+        Map<String, BalanceLedger.Delta> deltas = ledger.getDeltas();
+        if (!deltas.isEmpty()) {
+            Map<String, Balance> balances = loadBalances(currencyName, deltas.keySet());
+            try {
+                for (Map.Entry<String, BalanceLedger.Delta> entry : deltas.entrySet()) {
+                    String account = entry.getKey();
+                    BalanceLedger.Delta delta = entry.getValue();
+                    Balance balance = balances.get(account);
+                    if (balance == null) balance = newBalance(account);
+
+                    balance.setAmount(balance.getAmount() + delta.getAmount());
+                    balance.setUdCount(balance.getUdCount() + delta.getUdCount());
+                    balance.setMember(members.contains(account));
+                    balance.setBlockNumber(delta.getBlockNumber());
+
+                    bulkRequest.add(client.prepareIndex(currencyName, BALANCE_TYPE, BalanceLedger.getAccountId(account))
+                            .setSource(objectMapper.writeValueAsBytes(balance)));
+                }
+            }
+            catch(JsonProcessingException e) {
+                throw new TechnicalException(e);
+            }
+        }
+
+        // Condition sources
+        for (Map.Entry<String, BalanceLedger.Source> entry : ledger.getAddedSources().entrySet()) {
+            Map<String, Object> source = new HashMap<>();
+            source.put(PROPERTY_CONDITION, entry.getValue().getCondition());
+            source.put(PROPERTY_AMOUNT, entry.getValue().getAmount());
+            bulkRequest.add(client.prepareIndex(currencyName, LEDGER_SOURCE_TYPE, entry.getKey())
+                    .setSource(source));
+        }
+        for (String ref : ledger.getRemovedSources()) {
+            bulkRequest.add(client.prepareDelete(currencyName, LEDGER_SOURCE_TYPE, ref));
+        }
+
+        Map<String, Object> state = new HashMap<>();
+        state.put(PROPERTY_NUMBER, number);
+        state.put(PROPERTY_HASH, hash);
+        bulkRequest.add(client.prepareIndex(currencyName, LEDGER_TYPE, LEDGER_STATE_ID)
+                .setSource(state));
+
+        BulkResponse bulkResponse = bulkRequest.get();
+        if (bulkResponse.hasFailures()) {
+            // Balances could be inconsistent: stop here, so that no next ledger state is written
+            throw new TechnicalException(String.format("[%s] Error while saving balances at block #%s: %s",
+                    currencyName, number, bulkResponse.buildFailureMessage()));
+        }
+    }
+
+    /**
+     * Load sources of output conditions
+     * @param refs source refs ('txHash:outputIndex'). Unknown refs are ignored (e.g. a SIG output)
+     */
+    protected Map<String, BalanceLedger.Source> loadSources(String currencyName, Collection<String> refs) {
+        Map<String, BalanceLedger.Source> result = new HashMap<>();
+        if (refs.isEmpty()) return result;
+
+        MultiGetRequestBuilder request = client.prepareMultiGet().setRealtime(true);
+        for (String ref: refs) {
+            request.add(currencyName, LEDGER_SOURCE_TYPE, ref);
+        }
+        MultiGetResponse response = request.get();
+        for (MultiGetItemResponse item: response) {
+            if (item.isFailed() || !item.getResponse().isExists()) continue;
+            Map<String, Object> source = item.getResponse().getSource();
+            Object amount = source.get(PROPERTY_AMOUNT);
+            result.put(item.getId(), new BalanceLedger.Source((String) source.get(PROPERTY_CONDITION),
+                    amount instanceof Number ? ((Number) amount).longValue() : 0L));
+        }
+        return result;
+    }
+
+    /**
+     * Load balances of accounts (pubkeys or conditions)
+     * @return balances, by account
+     */
+    protected Map<String, Balance> loadBalances(String currencyName, Collection<String> accounts) {
+        Map<String, Balance> result = new HashMap<>();
+        if (accounts.isEmpty()) return result;
+
+        Map<String, String> accountsById = new HashMap<>();
+        MultiGetRequestBuilder request = client.prepareMultiGet().setRealtime(true);
+        for (String account: accounts) {
+            String id = BalanceLedger.getAccountId(account);
+            accountsById.put(id, account);
+            request.add(currencyName, BALANCE_TYPE, id);
+        }
+        MultiGetResponse response = request.get();
+        for (MultiGetItemResponse item: response) {
+            if (item.isFailed() || !item.getResponse().isExists()) continue;
+            try {
+                result.put(accountsById.get(item.getId()), objectMapper.readValue(item.getResponse().getSourceAsBytes(), Balance.class));
+            }
+            catch(IOException e) {
+                throw new TechnicalException(String.format("[%s] Unable to read balance of [%s]: %s", currencyName, item.getId(), e.getMessage()), e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get current members (loaded from the balance index, on first call)
+     */
+    protected Set<String> getMembers(String currencyName) {
+        Set<String> members = membersByCurrency.get(currencyName);
+        if (members != null) return members;
+
+        members = new HashSet<>();
+        client.admin().indices().prepareRefresh(currencyName).get();
+        TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(BALANCE_TYPE)
+                .setQuery(QueryBuilders.termQuery(Balance.PROPERTY_MEMBER, true))
+                .setFetchSource(false)
+                .setSize(pluginSettings.getIndexBulkSize())
+                .setScroll(scrollTimeout)
+                .get();
+        while (response.getHits().getHits().length > 0) {
+            for (SearchHit hit: response.getHits().getHits()) {
+                members.add(hit.getId());
+            }
+            response = client.prepareSearchScroll(response.getScrollId())
+                    .setScroll(scrollTimeout)
+                    .get();
+        }
+        client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+
+        membersByCurrency.put(currencyName, members);
+        return members;
+    }
+
+    /**
+     * @param account a pubkey, or an output condition
+     */
+    protected Balance newBalance(String account) {
+        Balance balance = new Balance();
+        if (BalanceLedger.isCondition(account)) {
+            balance.setCondition(account);
+        }
+        else {
+            balance.setPubkey(account);
+        }
+        balance.setAmount(0L);
+        balance.setUdCount(0);
+        balance.setMember(false);
+        return balance;
+    }
+}
@@ -0,0 +1,359 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import org.duniter.core.client.model.bma.BlockchainBlock;
+import org.duniter.core.client.model.bma.gson.GsonUtils;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.elasticsearch.action.admin.indices.exists.types.TypesExistsResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Explode blocks into small documents (one by identity, joiner, leaver, certification and transaction),
+ * stored in sibling types of the currency index.
+ * Event ids are '&lt;blockNumber&gt;-&lt;index&gt;', so re-indexing a block overwrites its previous events.
+ */
+public class BlockEventService extends AbstractService {
+
+    public static final String IDENTITY_TYPE = "identity";
+    public static final String JOINER_TYPE = "joiner";
+    public static final String LEAVER_TYPE = "leaver";
+    public static final String CERTIFICATION_TYPE = "certification";
+    public static final String TRANSACTION_TYPE = "transaction";
+
+    public static final String[] EVENT_TYPES = new String[]{
+            IDENTITY_TYPE, JOINER_TYPE, LEAVER_TYPE, CERTIFICATION_TYPE, TRANSACTION_TYPE
+    };
+    private static final Set<String> EVENT_TYPES_SET = ImmutableSet.copyOf(EVENT_TYPES);
+
+    public static final String PROPERTY_BLOCK_NUMBER = "blockNumber";
+    public static final String PROPERTY_BLOCK_HASH = "blockHash";
+    public static final String PROPERTY_MEDIAN_TIME = "medianTime";
+
+    private static final Pattern OUTPUT_PATTERN = Pattern.compile("^(\\d+):(\\d+):SIG\\(([^)]+)\\)$");
+
+    private final Gson gson;
+
+    @Inject
+    public BlockEventService(Client client, PluginSettings settings) {
+        super("duniter.blockchain", client, settings);
+        this.gson = GsonUtils.newBuilder().create();
+    }
+
+    public boolean isEnable() {
+        return pluginSettings.isIndexBlockEventsEnable();
+    }
+
+    public static boolean isEventType(String type) {
+        return type != null && EVENT_TYPES_SET.contains(type);
+    }
+
+    /**
+     * @return the block number (as string) of an event id
+     */
+    public static String getBlockId(String eventId) {
+        int index = eventId.indexOf('-');
+        return index == -1 ? eventId : eventId.substring(0, index);
+    }
+
+    /**
+     * Create event types, on an index created by an older version
+     */
+    public void createTypesIfNotExists(String currencyName) {
+        if (!isEnable()) return;
+
+        for (String type: EVENT_TYPES) {
+            TypesExistsResponse response = client.admin().indices().prepareTypesExists(currencyName)
+                    .setTypes(type)
+                    .get();
+            if (!response.isExists()) {
+                logger.info(String.format("[%s] Creating type [%s]", currencyName, type));
+                client.admin().indices().preparePutMapping(currencyName)
+                        .setType(type)
+                        .setSource(createEventType(type))
+                        .get();
+            }
+        }
+    }
+
+    /**
+     * Prepare index requests of all events of a block
+     * @param currencyName the currency index
+     * @param blockJson the block, as JSON
+     * @return index requests (could be empty)
+     */
+    public List<IndexRequestBuilder> prepareIndexEvents(String currencyName, String blockJson) {
+        if (!isEnable()) return Collections.emptyList();
+
+        BlockchainBlock block = gson.fromJson(blockJson, BlockchainBlock.class);
+        if (block == null || block.getNumber() == null) return Collections.emptyList();
+
+        List<IndexRequestBuilder> result = new ArrayList<>();
+        try {
+            int i = 0;
+            if (block.getIdentities() != null) {
+                for (BlockchainBlock.Identity identity : block.getIdentities()) {
+                    XContentBuilder source = startEvent(block)
+                            .field("pubkey", identity.getPublicKey())
+                            .field("uid", identity.getUserId())
+                            .field("blockUid", identity.getBlockUid())
+                            .field("signature", identity.getSignature())
+                            .endObject();
+                    result.add(prepareIndexEvent(currencyName, IDENTITY_TYPE, block, i++, source));
+                }
+            }
+
+            i = 0;
+            if (block.getJoiners() != null) {
+                for (BlockchainBlock.Joiner joiner : block.getJoiners()) {
+                    result.add(prepareIndexEvent(currencyName, JOINER_TYPE, block, i++, toMembershipSource(block, joiner)));
+                }
+            }
+
+            i = 0;
+            if (block.getLeavers() != null) {
+                for (BlockchainBlock.Joiner leaver : block.getLeavers()) {
+                    result.add(prepareIndexEvent(currencyName, LEAVER_TYPE, block, i++, toMembershipSource(block, leaver)));
+                }
+            }
+
+            i = 0;
+            if (block.getCertifications() != null) {
+                for (String certification : block.getCertifications()) {
+                    // Format: 'from:to:blockNumber:signature'
+                    String[] parts = certification.split(":");
+                    if (parts.length != 4) {
+                        logger.warn(String.format("[%s] Bad certification format, in block #%s: %s", currencyName, block.getNumber(), certification));
+                        continue;
+                    }
+                    XContentBuilder source = startEvent(block)
+                            .field("from", parts[0])
+                            .field("to", parts[1])
+                            .field("certBlockNumber", Integer.parseInt(parts[2]))
+                            .field("signature", parts[3])
+                            .endObject();
+                    result.add(prepareIndexEvent(currencyName, CERTIFICATION_TYPE, block, i++, source));
+                }
+            }
+
+            i = 0;
+            if (block.getTransactions() != null) {
+                for (BlockchainBlock.Transaction tx : block.getTransactions()) {
+                    result.add(prepareIndexEvent(currencyName, TRANSACTION_TYPE, block, i++, toTransactionSource(block, tx)));
+                }
+            }
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("[%s] Unable to read events of block #%s: %s", currencyName, block.getNumber(), e.getMessage()), e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Delete events of blocks, from <code>fromNumber</code> to <code>toNumber</code> (e.g. after a fork)
+     */
+    public void deleteEventsFromNumber(String currencyName, int fromNumber, int toNumber) {
+        if (!isEnable()) return;
+
+        // Make sure last indexed events are visible to the search
+        client.admin().indices().prepareRefresh(currencyName).get();
+
+        TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(EVENT_TYPES)
+                .setQuery(QueryBuilders.rangeQuery(PROPERTY_BLOCK_NUMBER).gte(fromNumber).lte(toNumber))
+                .setFetchSource(false)
+                .setSize(pluginSettings.getIndexBulkSize())
+                .setScroll(scrollTimeout)
+                .get();
+
+        while (response.getHits().getHits().length > 0) {
+            BulkRequestBuilder bulkRequest = client.prepareBulk();
+            for (SearchHit hit: response.getHits().getHits()) {
+                bulkRequest.add(client.prepareDelete(currencyName, hit.getType(), hit.getId()));
+            }
+
+            BulkResponse bulkResponse = bulkRequest.get();
+            if (bulkResponse.hasFailures()) {
+                for (BulkItemResponse itemResponse : bulkResponse) {
+                    if (itemResponse.isFailed()) {
+                        logger.error(String.format("[%s] Error while deleting event [%s/%s]: %s", currencyName,
+                                itemResponse.getType(), itemResponse.getId(), itemResponse.getFailureMessage()));
+                    }
+                }
+            }
+
+            response = client.prepareSearchScroll(response.getScrollId())
+                    .setScroll(scrollTimeout)
+                    .get();
+        }
+        client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+    }
+
+    public XContentBuilder createEventType(String type) {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(type)
+                    .startObject("properties")
+
+                    // block number
+                    .startObject(PROPERTY_BLOCK_NUMBER)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // block hash
+                    .startObject(PROPERTY_BLOCK_HASH)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // block median time
+                    .startObject(PROPERTY_MEDIAN_TIME)
+                    .field("type", "long")
+                    .endObject();
+
+            switch (type) {
+                case IDENTITY_TYPE:
+                    addKeywordFields(mapping, "pubkey", "uid", "blockUid");
+                    addNotIndexedFields(mapping, "signature");
+                    break;
+                case JOINER_TYPE:
+                case LEAVER_TYPE:
+                    addKeywordFields(mapping, "pubkey", "uid", "membershipBlockUid", "identityBlockUid");
+                    addNotIndexedFields(mapping, "signature");
+                    break;
+                case CERTIFICATION_TYPE:
+                    addKeywordFields(mapping, "from", "to");
+                    mapping.startObject("certBlockNumber").field("type", "integer").endObject();
+                    addNotIndexedFields(mapping, "signature");
+                    break;
+                case TRANSACTION_TYPE:
+                    addKeywordFields(mapping, "version", "issuers", "recipients");
+                    mapping.startObject("amount").field("type", "long").endObject();
+                    addNotIndexedFields(mapping, "inputs", "outputs");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown event type: " + type);
+            }
+
+            mapping.endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException(String.format("Error while getting mapping for type [%s]: %s", type, ioe.getMessage()), ioe);
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected IndexRequestBuilder prepareIndexEvent(String currencyName, String type, BlockchainBlock block, int index, XContentBuilder source) {
+        return client.prepareIndex(currencyName, type, block.getNumber() + "-" + index)
+                .setSource(source);
+    }
+
+    protected XContentBuilder startEvent(BlockchainBlock block) throws IOException {
+        return XContentFactory.jsonBuilder().startObject()
+                .field(PROPERTY_BLOCK_NUMBER, block.getNumber())
+                .field(PROPERTY_BLOCK_HASH, block.getHash())
+                .field(PROPERTY_MEDIAN_TIME, block.getMedianTime());
+    }
+
+    protected XContentBuilder toMembershipSource(BlockchainBlock block, BlockchainBlock.Joiner joiner) throws IOException {
+        return startEvent(block)
+                .field("pubkey", joiner.getPublicKey())
+                .field("uid", joiner.getUserId())
+                .field("membershipBlockUid", joiner.getMBlockUid())
+                .field("identityBlockUid", joiner.getIBlockUid())
+                .field("signature", joiner.getSignature())
+                .endObject();
+    }
+
+    protected XContentBuilder toTransactionSource(BlockchainBlock block, BlockchainBlock.Transaction tx) throws IOException {
+        Set<String> issuers = tx.getIssuers() != null ? new LinkedHashSet<>(Arrays.asList(tx.getIssuers())) : Collections.emptySet();
+
+        // Recipients and amount (excluding rest sent back to issuers)
+        Set<String> recipients = new LinkedHashSet<>();
+        long amount = 0;
+        if (tx.getOutputs() != null) {
+            for (String output : tx.getOutputs()) {
+                // Format: 'amount:base:SIG(pubkey)'
+                Matcher matcher = OUTPUT_PATTERN.matcher(output);
+                if (matcher.matches() && !issuers.contains(matcher.group(3))) {
+                    recipients.add(matcher.group(3));
+                    amount += Long.parseLong(matcher.group(1)) * (long) Math.pow(10, Integer.parseInt(matcher.group(2)));
+                }
+            }
+        }
+
+        return startEvent(block)
+                .field("version", tx.getVersion())
+                .array("issuers", issuers.toArray(new String[issuers.size()]))
+                .array("recipients", recipients.toArray(new String[recipients.size()]))
+                .field("amount", amount)
+                .array("inputs", tx.getInputs() != null ? tx.getInputs() : new String[0])
+                .array("outputs", tx.getOutputs() != null ? tx.getOutputs() : new String[0])
+                .endObject();
+    }
+
+    protected void addKeywordFields(XContentBuilder mapping, String... fields) throws IOException {
+        for (String field: fields) {
+            mapping.startObject(field)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject();
+        }
+    }
+
+    protected void addNotIndexedFields(XContentBuilder mapping, String... fields) throws IOException {
+        for (String field: fields) {
+            mapping.startObject(field)
+                    .field("type", "string")
+                    .field("index", "no")
+                    .endObject();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size ring of the last indexed block hashes, for one currency.
+ * Block number <code>n</code> is stored at slot <code>n % capacity</code>, so lookups are O(1).
+ * Hashes are stored as bytes (32 bytes each), in a single primitive array.
+ */
+public class BlockHashRing {
+
+    private static final int HASH_LENGTH = 32;
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
+    private final int capacity;
+    private final int[] numbers;
+    private final byte[] hashes;
+
+    public BlockHashRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.numbers = new int[capacity];
+        this.hashes = new byte[capacity * HASH_LENGTH];
+        Arrays.fill(numbers, -1);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Store a block hash. An invalid hash (not 64 hexadecimal characters) will remove the block
+     */
+    public synchronized void put(int number, String hash) {
+        if (number < 0) return;
+        int slot = number % capacity;
+        if (!isValidHash(hash)) {
+            if (numbers[slot] == number) {
+                numbers[slot] = -1;
+            }
+            return;
+        }
+        // Keep the most recent block
+        if (numbers[slot] > number) return;
+
+        int offset = slot * HASH_LENGTH;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            hashes[offset + i] = (byte) ((hexValue(hash.charAt(i * 2)) << 4) | hexValue(hash.charAt(i * 2 + 1)));
+        }
+        numbers[slot] = number;
+    }
+
+    /**
+     * @return the block hash, or null if not in the ring
+     */
+    public synchronized String getHash(int number) {
+        if (number < 0) return null;
+        int slot = number % capacity;
+        if (numbers[slot] != number) return null;
+
+        char[] result = new char[HASH_LENGTH * 2];
+        int offset = slot * HASH_LENGTH;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int b = hashes[offset + i] & 0xFF;
+            result[i * 2] = HEX_CHARS[b >>> 4];
+            result[i * 2 + 1] = HEX_CHARS[b & 0x0F];
+        }
+        return new String(result);
+    }
+
+    /**
+     * @return true if the block is in the ring
+     */
+    public synchronized boolean contains(int number) {
+        return number >= 0 && numbers[number % capacity] == number;
+    }
+
+    /**
+     * Compare the given hash with the stored one (without any allocation).
+     * @return null if the block is not in the ring, otherwise true if hashes are equals
+     */
+    public synchronized Boolean isSameHash(int number, String hash) {
+        if (number < 0) return null;
+        int slot = number % capacity;
+        if (numbers[slot] != number) return null;
+        if (!isValidHash(hash)) return false;
+
+        int offset = slot * HASH_LENGTH;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int b = (hexValue(hash.charAt(i * 2)) << 4) | hexValue(hash.charAt(i * 2 + 1));
+            if (hashes[offset + i] != (byte) b) return false;
+        }
+        return true;
+    }
+
+    public synchronized void remove(int number) {
+        if (number < 0) return;
+        int slot = number % capacity;
+        if (numbers[slot] == number) {
+            numbers[slot] = -1;
+        }
+    }
+
+    /**
+     * Remove all blocks with a number greater or equals to <code>fromNumber</code> (e.g. after a rollback)
+     */
+    public synchronized void removeFrom(int fromNumber) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (numbers[slot] >= fromNumber) {
+                numbers[slot] = -1;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(numbers, -1);
+    }
+
+    /* -- Internal methods -- */
+
+    private static boolean isValidHash(String hash) {
+        if (hash == null || hash.length() != HASH_LENGTH * 2) return false;
+        for (int i = 0; i < hash.length(); i++) {
+            if (hexValue(hash.charAt(i)) == -1) return false;
+        }
+        return true;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+}
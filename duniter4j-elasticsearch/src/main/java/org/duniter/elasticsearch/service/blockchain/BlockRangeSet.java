@@ -0,0 +1,187 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A set of block numbers, stored as sorted and merged ranges (e.g. missing blocks of a sync).
+ * Ranges are read and written using the checkpoint format: <code>'n'</code> for a single block,
+ * and <code>'from-to'</code> for a range.
+ * This class is not thread-safe.
+ */
+public class BlockRangeSet {
+
+    // range start -> range end (inclusive)
+    private final TreeMap<Integer, Integer> ranges = new TreeMap<>();
+
+    /**
+     * Parse ranges, as stored in the checkpoint (<code>'n'</code> or <code>'from-to'</code>).
+     * Invalid items are ignored.
+     */
+    public static BlockRangeSet parse(Collection<String> items) {
+        BlockRangeSet result = new BlockRangeSet();
+        if (items != null) {
+            for (String item : items) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    public void add(String item) {
+        if (item == null) return;
+        item = item.trim();
+        int separatorIndex = item.indexOf('-', 1);
+        try {
+            if (separatorIndex == -1) {
+                add(Integer.parseInt(item));
+            }
+            else {
+                add(Integer.parseInt(item.substring(0, separatorIndex)), Integer.parseInt(item.substring(separatorIndex + 1)));
+            }
+        }
+        catch (NumberFormatException e) {
+            // skip invalid item
+        }
+    }
+
+    public void add(int number) {
+        add(number, number);
+    }
+
+    public void add(int from, int to) {
+        if (from < 0 || to < from) return;
+
+        // Merge with a range that overlaps or touches the start
+        Map.Entry<Integer, Integer> floor = ranges.floorEntry(from);
+        if (floor != null && floor.getValue() >= from - 1) {
+            from = floor.getKey();
+            to = Math.max(to, floor.getValue());
+        }
+
+        // Merge with next ranges
+        Map.Entry<Integer, Integer> next = ranges.ceilingEntry(from);
+        while (next != null && next.getKey() <= to + 1) {
+            to = Math.max(to, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(from);
+        }
+
+        ranges.put(from, to);
+    }
+
+    public void addAll(BlockRangeSet other) {
+        for (Map.Entry<Integer, Integer> range : other.ranges.entrySet()) {
+            add(range.getKey(), range.getValue());
+        }
+    }
+
+    public void remove(int number) {
+        remove(number, number);
+    }
+
+    public void remove(int from, int to) {
+        if (to < from) return;
+
+        // Cut the range that contains the start
+        Map.Entry<Integer, Integer> floor = ranges.lowerEntry(from);
+        if (floor != null && floor.getValue() >= from) {
+            ranges.put(floor.getKey(), from - 1);
+            if (floor.getValue() > to) {
+                ranges.put(to + 1, floor.getValue());
+                return;
+            }
+        }
+
+        // Remove (or cut) next ranges
+        Map.Entry<Integer, Integer> next = ranges.ceilingEntry(from);
+        while (next != null && next.getKey() <= to) {
+            ranges.remove(next.getKey());
+            if (next.getValue() > to) {
+                ranges.put(to + 1, next.getValue());
+                break;
+            }
+            next = ranges.ceilingEntry(from);
+        }
+    }
+
+    public void removeAll(BlockRangeSet other) {
+        for (Map.Entry<Integer, Integer> range : other.ranges.entrySet()) {
+            remove(range.getKey(), range.getValue());
+        }
+    }
+
+    public boolean contains(int number) {
+        Map.Entry<Integer, Integer> floor = ranges.floorEntry(number);
+        return floor != null && floor.getValue() >= number;
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /**
+     * @return the number of blocks
+     */
+    public long size() {
+        long size = 0;
+        for (Map.Entry<Integer, Integer> range : ranges.entrySet()) {
+            size += range.getValue() - range.getKey() + 1;
+        }
+        return size;
+    }
+
+    /**
+     * @return the ranges, as <code>[from, to]</code> arrays, in ascending order
+     */
+    public List<int[]> getRanges() {
+        List<int[]> result = new ArrayList<>(ranges.size());
+        for (Map.Entry<Integer, Integer> range : ranges.entrySet()) {
+            result.add(new int[]{range.getKey(), range.getValue()});
+        }
+        return result;
+    }
+
+    /**
+     * @return the ranges, in the checkpoint format (<code>'n'</code> or <code>'from-to'</code>)
+     */
+    public List<String> toStrings() {
+        List<String> result = new ArrayList<>(ranges.size());
+        for (Map.Entry<Integer, Integer> range : ranges.entrySet()) {
+            result.add(range.getKey().equals(range.getValue())
+                    ? String.valueOf(range.getKey())
+                    : range.getKey() + "-" + range.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toStrings().toString();
+    }
+}
@@ -0,0 +1,208 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import org.duniter.core.client.model.bma.BlockchainBlock;
+import org.duniter.core.client.model.bma.gson.GsonUtils;
+import org.duniter.core.client.service.exception.JsonSyntaxException;
+import org.duniter.core.util.ObjectUtils;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.duniter.elasticsearch.service.BlockchainService;
+import org.elasticsearch.action.get.GetRequestBuilder;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
+
+import java.util.*;
+
+/**
+ * Read indexed blocks, using realtime GET and multi-GET (by _id), instead of searches.
+ */
+public class BlockRepositoryService extends AbstractService {
+
+    /**
+     * Fields loaded by getBlockHeaders() (all fields except identities, certifications, transactions...)
+     */
+    public static final String[] BLOCK_HEADER_FIELDS = new String[]{
+            "version", "nonce", "number", "powMin", "time", "medianTime", "membersCount", "monetaryMass",
+            "unitbase", "unitBase", "currency", "issuer", "hash", "parameters", "previousHash", "previousIssuer",
+            "inner_hash", "dividend", "signature"
+    };
+
+    private static final String[] BLOCK_HASH_FIELDS = new String[]{"number", "hash"};
+
+    private final Gson gson;
+
+    @Inject
+    public BlockRepositoryService(Client client, PluginSettings settings) {
+        super("duniter.blockchain", client, settings);
+        this.gson = GsonUtils.newBuilder().create();
+    }
+
+    /**
+     * @return the indexed block, or null if not exists
+     */
+    public BlockchainBlock getBlock(String currencyName, int number) {
+        return getBlockById(currencyName, String.valueOf(number), null);
+    }
+
+    /**
+     * @return the indexed current block (_id='current'), or null if not exists
+     */
+    public BlockchainBlock getCurrentBlock(String currencyName) {
+        return getBlockById(currencyName, BlockchainService.CURRENT_BLOCK_ID, null);
+    }
+
+    /**
+     * @return the indexed block, with only header fields (see BLOCK_HEADER_FIELDS), or null if not exists
+     */
+    public BlockchainBlock getBlockHeader(String currencyName, int number) {
+        return getBlockById(currencyName, String.valueOf(number), BLOCK_HEADER_FIELDS);
+    }
+
+    /**
+     * Get many blocks, in one request.
+     * @return blocks, in the same order as <code>numbers</code> (null if a block not exists)
+     */
+    public List<BlockchainBlock> getBlocks(String currencyName, int[] numbers) {
+        return getBlocks(currencyName, numbers, null);
+    }
+
+    /**
+     * Get many blocks, with only header fields (see BLOCK_HEADER_FIELDS), in one request.
+     * @return blocks, in the same order as <code>numbers</code> (null if a block not exists)
+     */
+    public List<BlockchainBlock> getBlockHeaders(String currencyName, int[] numbers) {
+        return getBlocks(currencyName, numbers, new FetchSourceContext(BLOCK_HEADER_FIELDS));
+    }
+
+    /**
+     * Get hashes of many blocks, in one request. Only the fields number and hash are loaded.
+     * @return hashes, by block number (indexed blocks only)
+     */
+    public Map<Integer, String> getBlockHashes(String currencyName, Collection<Integer> numbers) {
+        Map<Integer, String> result = new HashMap<>();
+        if (numbers.isEmpty()) {
+            return result;
+        }
+
+        MultiGetResponse response = prepareMultiGet(currencyName, numbers, new FetchSourceContext(BLOCK_HASH_FIELDS))
+                .execute().actionGet();
+        for (MultiGetItemResponse item: response) {
+            if (item.isFailed() || !item.getResponse().isExists()) continue;
+            Map<String, Object> source = item.getResponse().getSource();
+            if (source == null) continue;
+            Object number = source.get("number");
+            Object hash = source.get("hash");
+            if (number instanceof Number && hash != null) {
+                result.put(((Number)number).intValue(), hash.toString());
+            }
+        }
+        return result;
+    }
+
+    /* -- Internal methods -- */
+
+    /**
+     * @param includes fields to load (or null for all fields)
+     */
+    protected BlockchainBlock getBlockById(String currencyName, String blockId, String[] includes) {
+        ObjectUtils.checkNotNull(currencyName);
+        ObjectUtils.checkNotNull(blockId);
+
+        GetRequestBuilder request = client.prepareGet(currencyName, BlockchainService.BLOCK_TYPE, blockId)
+                .setRealtime(true);
+        if (includes != null) {
+            request.setFetchSource(includes, null);
+        }
+
+        GetResponse response = request.execute().actionGet();
+        if (!response.isExists()) {
+            return null;
+        }
+        return toBlock(currencyName, blockId, response.getSourceAsString());
+    }
+
+    protected List<BlockchainBlock> getBlocks(String currencyName, int[] numbers, FetchSourceContext fetchSourceContext) {
+        ObjectUtils.checkNotNull(currencyName);
+        ObjectUtils.checkNotNull(numbers);
+        if (numbers.length == 0) {
+            return Lists.newArrayList();
+        }
+
+        List<Integer> numberList = Lists.newArrayListWithCapacity(numbers.length);
+        for (int number: numbers) {
+            numberList.add(number);
+        }
+
+        MultiGetResponse response = prepareMultiGet(currencyName, numberList, fetchSourceContext)
+                .execute().actionGet();
+
+        // Items are returned in the same order as requested
+        List<BlockchainBlock> result = Lists.newArrayListWithCapacity(numbers.length);
+        for (MultiGetItemResponse item: response) {
+            if (item.isFailed()) {
+                logger.warn(String.format("[%s] Error while getting block #%s: %s", currencyName, item.getId(), item.getFailure().getMessage()));
+                result.add(null);
+            }
+            else if (!item.getResponse().isExists()) {
+                result.add(null);
+            }
+            else {
+                result.add(toBlock(currencyName, item.getId(), item.getResponse().getSourceAsString()));
+            }
+        }
+        return result;
+    }
+
+    protected MultiGetRequestBuilder prepareMultiGet(String currencyName, Collection<Integer> numbers, FetchSourceContext fetchSourceContext) {
+        MultiGetRequestBuilder request = client.prepareMultiGet()
+                .setRealtime(true);
+        for (Integer number: numbers) {
+            request.add(new MultiGetRequest.Item(currencyName, BlockchainService.BLOCK_TYPE, String.valueOf(number))
+                    .fetchSourceContext(fetchSourceContext));
+        }
+        return request;
+    }
+
+    protected BlockchainBlock toBlock(String currencyName, String blockId, String json) {
+        try {
+            return gson.fromJson(json, BlockchainBlock.class);
+        }
+        catch(Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Error while parsing block from JSON:\n" + json);
+            }
+            throw new JsonSyntaxException(String.format("Error while reading indexed block #%s for blockchain [%s]: %s", blockId, currencyName, e.getMessage()), e);
+        }
+    }
+}
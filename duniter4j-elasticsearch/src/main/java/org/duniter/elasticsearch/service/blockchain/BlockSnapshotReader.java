@@ -0,0 +1,237 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read a snapshot archive written by {@link BlockSnapshotWriter}.
+ * Chunks are read using positional reads (the file position is never changed), so they can be read
+ * (and decompressed) at the same time by many threads.
+ */
+public class BlockSnapshotReader implements Closeable {
+
+    private static final int FOOTER_LENGTH = 12;
+
+    private final FileChannel channel;
+    private final String currency;
+
+    // Chunks index
+    private final int[] chunkFirstNumbers;
+    private final int[] chunkBlockCounts;
+    private final long[] chunkOffsets;
+    private final int[] chunkCompressedLengths;
+    private final int[] chunkRawLengths;
+
+    public BlockSnapshotReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < FOOTER_LENGTH + 8) {
+                throw new IOException("Invalid snapshot file: too small");
+            }
+
+            // Header
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(readBytes(0, (int) Math.min(fileSize, 1024))));
+            if (header.readInt() != BlockSnapshotWriter.MAGIC) {
+                throw new IOException("Invalid snapshot file: bad magic number");
+            }
+            int version = header.readInt();
+            if (version != BlockSnapshotWriter.VERSION) {
+                throw new IOException(String.format("Unsupported snapshot version: %s", version));
+            }
+            this.currency = header.readUTF();
+
+            // Footer
+            ByteBuffer footer = ByteBuffer.wrap(readBytes(fileSize - FOOTER_LENGTH, FOOTER_LENGTH));
+            long indexOffset = footer.getLong();
+            if (footer.getInt() != BlockSnapshotWriter.MAGIC || indexOffset < 0 || indexOffset > fileSize - FOOTER_LENGTH) {
+                throw new IOException("Invalid snapshot file: bad footer (incomplete file ?)");
+            }
+
+            // Index
+            DataInputStream index = new DataInputStream(new ByteArrayInputStream(readBytes(indexOffset, (int) (fileSize - FOOTER_LENGTH - indexOffset))));
+            int chunkCount = index.readInt();
+            chunkFirstNumbers = new int[chunkCount];
+            chunkBlockCounts = new int[chunkCount];
+            chunkOffsets = new long[chunkCount];
+            chunkCompressedLengths = new int[chunkCount];
+            chunkRawLengths = new int[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunkFirstNumbers[i] = index.readInt();
+                chunkBlockCounts[i] = index.readInt();
+                chunkOffsets[i] = index.readLong();
+                chunkCompressedLengths[i] = index.readInt();
+                chunkRawLengths[i] = index.readInt();
+            }
+        }
+        catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public int getChunkCount() {
+        return chunkFirstNumbers.length;
+    }
+
+    /**
+     * @return the first block number, or -1 if empty
+     */
+    public int getFirstNumber() {
+        return chunkFirstNumbers.length == 0 ? -1 : chunkFirstNumbers[0];
+    }
+
+    /**
+     * @return the last block number, or -1 if empty
+     */
+    public int getLastNumber() {
+        int last = chunkFirstNumbers.length - 1;
+        return last < 0 ? -1 : chunkFirstNumbers[last] + chunkBlockCounts[last] - 1;
+    }
+
+    /**
+     * @return the index of the chunk that contains the block, or -1 if not found
+     */
+    public int getChunkIndex(int number) {
+        int i = Arrays.binarySearch(chunkFirstNumbers, number);
+        if (i < 0) {
+            i = -i - 2; // chunk starting before the number
+        }
+        if (i < 0 || number >= chunkFirstNumbers[i] + chunkBlockCounts[i]) {
+            return -1;
+        }
+        return i;
+    }
+
+    /**
+     * Read and decompress a chunk. This method is thread-safe
+     */
+    public Chunk getChunk(int chunkIndex) throws IOException {
+        byte[] compressed = readBytes(chunkOffsets[chunkIndex], chunkCompressedLengths[chunkIndex]);
+        byte[] raw = new byte[chunkRawLengths[chunkIndex]];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int count = inflater.inflate(raw, length, raw.length - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += count;
+            }
+            if (length != raw.length) {
+                throw new IOException(String.format("Invalid snapshot chunk #%s: truncated data", chunkIndex));
+            }
+        }
+        catch(DataFormatException e) {
+            throw new IOException(String.format("Invalid snapshot chunk #%s: %s", chunkIndex, e.getMessage()), e);
+        }
+        finally {
+            inflater.end();
+        }
+
+        // Split into blocks, using length prefixes
+        int blockCount = chunkBlockCounts[chunkIndex];
+        int[] offsets = new int[blockCount];
+        int[] lengths = new int[blockCount];
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        for (int i = 0; i < blockCount; i++) {
+            if (buffer.remaining() < 4) {
+                throw new IOException(String.format("Invalid snapshot chunk #%s: missing blocks", chunkIndex));
+            }
+            lengths[i] = buffer.getInt();
+            offsets[i] = buffer.position();
+            if (lengths[i] < 0 || lengths[i] > buffer.remaining()) {
+                throw new IOException(String.format("Invalid snapshot chunk #%s: bad block length", chunkIndex));
+            }
+            buffer.position(offsets[i] + lengths[i]);
+        }
+
+        return new Chunk(chunkFirstNumbers[chunkIndex], raw, offsets, lengths);
+    }
+
+    /**
+     * Read a single block
+     * @return the block JSON, or null if not found
+     */
+    public String getBlockAsJson(int number) throws IOException {
+        int chunkIndex = getChunkIndex(number);
+        if (chunkIndex == -1) return null;
+        Chunk chunk = getChunk(chunkIndex);
+        int i = number - chunk.firstNumber;
+        return new String(chunk.bytes, chunk.offsets[i], chunk.lengths[i], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* -- internal methods -- */
+
+    protected byte[] readBytes(long position, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) {
+                throw new EOFException(String.format("Invalid snapshot file: unexpected end of file, at position %s", position + buffer.position()));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Decompressed blocks of a chunk: block <code>i</code> is in <code>bytes</code>,
+     * from <code>offsets[i]</code> with <code>lengths[i]</code> bytes
+     */
+    public static class Chunk {
+        public final int firstNumber;
+        public final byte[] bytes;
+        public final int[] offsets;
+        public final int[] lengths;
+
+        Chunk(int firstNumber, byte[] bytes, int[] offsets, int[] lengths) {
+            this.firstNumber = firstNumber;
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.lengths = lengths;
+        }
+
+        public int size() {
+            return offsets.length;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
+import org.duniter.core.client.model.bma.gson.JsonBlockHeaderParser;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.StringUtils;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.model.SyncCheckpoint;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.duniter.elasticsearch.service.BlockchainService;
+import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Export indexed blocks of a currency into a compressed snapshot archive (see {@link BlockSnapshotWriter}),
+ * and import it into another node, to bootstrap it without downloading the whole blockchain from a Duniter node.
+ * After an import, the sync checkpoint is set to the last imported block, so the next sync only fetch the tail.
+ * <br/>
+ * Only the header chain of a snapshot is verified (see {@link #isValidHash(MessageDigest, JsonBlockHeaderParser.Header)}):
+ * the block content (identities, certifications, transactions...) is not checked against its <code>inner_hash</code>,
+ * so snapshots must come from a trusted node.
+ */
+public class BlockSnapshotService extends AbstractService {
+
+    private final BlockchainService blockchainService;
+    private final BlockEventService blockEventService;
+    private final BulkLoadService bulkLoadService;
+    private final ThreadPool threadPool;
+
+    private final JsonBlockHeaderParser blockHeaderParser = new JsonBlockHeaderParser(
+            JsonBlockHeaderParser.Field.NUMBER,
+            JsonBlockHeaderParser.Field.HASH,
+            JsonBlockHeaderParser.Field.PREVIOUS_HASH,
+            JsonBlockHeaderParser.Field.INNER_HASH,
+            JsonBlockHeaderParser.Field.NONCE,
+            JsonBlockHeaderParser.Field.SIGNATURE);
+
+    @Inject
+    public BlockSnapshotService(Client client, PluginSettings settings, ThreadPool threadPool,
+                                BlockchainService blockchainService,
+                                BlockEventService blockEventService,
+                                BulkLoadService bulkLoadService) {
+        super("duniter.blockchain", client, settings);
+        this.threadPool = threadPool;
+        this.blockchainService = blockchainService;
+        this.blockEventService = blockEventService;
+        this.bulkLoadService = bulkLoadService;
+    }
+
+    /**
+     * Get a snapshot file, from its name (in the snapshot directory)
+     */
+    public File getSnapshotFile(String name) {
+        if (StringUtils.isBlank(name) || !name.matches("[a-zA-Z0-9_.-]+") || name.startsWith(".")) {
+            throw new TechnicalException(String.format("Invalid snapshot name [%s]", name));
+        }
+        return new File(pluginSettings.getBlockchainSnapshotDirectory(), name);
+    }
+
+    /**
+     * Export indexed blocks, from block #0 up to the first missing block
+     * @return the last exported block number, or -1 if no block
+     */
+    public int exportSnapshot(String currencyName, File file) {
+        long timeStart = System.currentTimeMillis();
+        File tempFile = new File(file.getPath() + ".tmp");
+        int lastNumber;
+
+        // Make sure all blocks are visible to search
+        client.admin().indices().prepareRefresh(currencyName).get();
+
+        try {
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+
+            try (BlockSnapshotWriter writer = new BlockSnapshotWriter(tempFile, currencyName, pluginSettings.getBlockchainSnapshotChunkSize())) {
+                TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+                SearchResponse response = client.prepareSearch(currencyName)
+                        .setTypes(BlockchainService.BLOCK_TYPE)
+                        .addSort("number", SortOrder.ASC)
+                        .setSize(pluginSettings.getIndexBulkSize())
+                        .setScroll(scrollTimeout)
+                        .get();
+                try {
+                    boolean stop = false;
+                    while (!stop && response.getHits().getHits().length > 0) {
+                        for (SearchHit hit : response.getHits().getHits()) {
+                            if (BlockchainService.CURRENT_BLOCK_ID.equals(hit.getId())) continue;
+
+                            // Stop at the first missing block (next blocks will be synced from peers)
+                            int number = ((Number) hit.getSortValues()[0]).intValue();
+                            if (number != writer.getLastNumber() + 1) {
+                                logger.warn(String.format("[%s] Block #%s not indexed: snapshot stopped at block #%s", currencyName, writer.getLastNumber() + 1, writer.getLastNumber()));
+                                stop = true;
+                                break;
+                            }
+
+                            BytesReference source = hit.getSourceRef();
+                            if (source.hasArray()) {
+                                writer.add(number, source.array(), source.arrayOffset(), source.length());
+                            }
+                            else {
+                                byte[] bytes = source.toBytes();
+                                writer.add(number, bytes, 0, bytes.length);
+                            }
+                        }
+                        if (!stop) {
+                            response = client.prepareSearchScroll(response.getScrollId())
+                                    .setScroll(scrollTimeout)
+                                    .get();
+                        }
+                    }
+                }
+                finally {
+                    client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+                }
+                lastNumber = writer.getLastNumber();
+            }
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(IOException e) {
+            tempFile.delete();
+            throw new TechnicalException(String.format("[%s] Error while exporting snapshot to [%s]: %s", currencyName, file.getPath(), e.getMessage()), e);
+        }
+
+        logger.info(String.format("[%s] Snapshot exported to [%s] (blocks #0 to #%s, %s bytes), in %s ms", currencyName, file.getPath(),
+                lastNumber, file.length(), System.currentTimeMillis() - timeStart));
+        return lastNumber;
+    }
+
+    /**
+     * Import a snapshot. Block headers are verified (hash of each block, and hash chain) then bulk-loaded, chunk by chunk,
+     * using many threads. If a block is invalid, only blocks before it are imported.
+     * The block content is not verified (see {@link #isValidHash(MessageDigest, JsonBlockHeaderParser.Header)}).
+     * The import is skipped if the index already has all blocks of the snapshot.
+     * @return the last imported block number, or -1 if nothing imported
+     */
+    public int importSnapshot(File file) {
+        return importSnapshot(null, file);
+    }
+
+    /**
+     * Import a snapshot, only if it contains blocks of the given currency
+     * @param expectedCurrency the expected currency, or null to accept any currency
+     * @return the last imported block number, or -1 if nothing imported
+     */
+    public int importSnapshot(String expectedCurrency, File file) {
+        long timeStart = System.currentTimeMillis();
+
+        try (BlockSnapshotReader reader = new BlockSnapshotReader(file)) {
+            final String currencyName = reader.getCurrency();
+            if (expectedCurrency != null && !expectedCurrency.equals(currencyName)) {
+                logger.debug(String.format("[%s] Snapshot [%s] is for another currency [%s]: skipping import", expectedCurrency, file.getPath(), currencyName));
+                return -1;
+            }
+            if (reader.getFirstNumber() != 0) {
+                logger.warn(String.format("[%s] Snapshot [%s] is empty, or not starting at block #0: skipping import", currencyName, file.getPath()));
+                return -1;
+            }
+
+            blockchainService.createIndexIfNotExists(currencyName, true/*wait cluster health*/);
+            bulkLoadService.restoreIfStale(currencyName);
+            blockEventService.createTypesIfNotExists(currencyName);
+
+            SyncCheckpoint checkpoint = blockchainService.getSyncCheckpoint(currencyName);
+            if (checkpoint != null && checkpoint.getNumber() != null && checkpoint.getNumber() >= reader.getLastNumber()) {
+                logger.info(String.format("[%s] Index already up to date at block #%s: skipping snapshot import", currencyName, checkpoint.getNumber()));
+                return -1;
+            }
+
+            ExecutorService executor = threadPool.newFixedThreadPool("duniter4j-blockchain-snapshot", Math.max(1, pluginSettings.getVerifyWorkers()));
+            try {
+                // Verify the hash chain
+                ChunkLinks[] links = verifyChunks(executor, reader);
+                int lastNumber = reader.getLastNumber();
+                String lastHash = links[links.length - 1].lastHash;
+                for (int i = 0; i < links.length; i++) {
+                    ChunkLinks chunkLinks = links[i];
+                    boolean brokenWithPrevious = i > 0 && (chunkLinks.breakNumber == chunkLinks.firstNumber
+                            || !Objects.equal(links[i - 1].lastHash, chunkLinks.firstPreviousHash));
+                    if (brokenWithPrevious || chunkLinks.breakNumber != -1) {
+                        lastNumber = brokenWithPrevious ? chunkLinks.firstNumber - 1 : chunkLinks.breakNumber - 1;
+                        lastHash = brokenWithPrevious ? links[i - 1].lastHash : chunkLinks.breakPreviousHash;
+                        logger.warn(String.format("[%s] Invalid block hash in snapshot, at block #%s: only blocks #0 to #%s will be imported",
+                                currencyName, lastNumber + 1, lastNumber));
+                        break;
+                    }
+                }
+                if (lastNumber < 0) return -1;
+
+                // Switch index into bulk-load mode (if need)
+                boolean bulkLoad = bulkLoadService.isBulkLoadNeed(lastNumber + 1);
+                boolean imported = false;
+                if (bulkLoad) {
+                    bulkLoadService.startBulkLoad(currencyName);
+                }
+                try {
+                    // Bulk-load blocks
+                    BlockRangeSet missingBlocks = loadChunks(executor, reader, currencyName, lastNumber);
+
+                    // Update current block and checkpoint (keep blocks still missing from a previous sync)
+                    blockchainService.indexCurrentBlockFromJson(currencyName, reader.getBlockAsJson(lastNumber), true/*wait*/);
+                    if (checkpoint != null && checkpoint.getMissingBlocks() != null) {
+                        missingBlocks.addAll(BlockRangeSet.parse(Arrays.asList(checkpoint.getMissingBlocks())));
+                    }
+                    blockchainService.saveSyncCheckpoint(currencyName, null, lastNumber, lastHash, missingBlocks.toStrings());
+                    imported = true;
+
+                    // Hashes of previous indexed blocks may have changed
+                    blockchainService.reloadBlockHashRing(currencyName);
+                }
+                finally {
+                    // Restore index settings, even if the import failed (optimize only after a full import)
+                    if (bulkLoad) {
+                        try {
+                            bulkLoadService.stopBulkLoad(currencyName, imported);
+                        }
+                        catch(Exception e) {
+                            logger.error(String.format("[%s] Unable to restore index settings, after bulk-load: %s", currencyName, e.getMessage()), e);
+                        }
+                    }
+                }
+
+                logger.info(String.format("[%s] Snapshot [%s] imported (blocks #0 to #%s), in %s ms", currencyName, file.getPath(),
+                        lastNumber, System.currentTimeMillis() - timeStart));
+                return lastNumber;
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("Error while importing snapshot [%s]: %s", file.getPath(), e.getMessage()), e);
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    /**
+     * Check hashes of block headers, and links between blocks of each chunk (chunks are processed at the same time)
+     */
+    protected ChunkLinks[] verifyChunks(ExecutorService executor, final BlockSnapshotReader reader) throws IOException {
+        List<Future<ChunkLinks>> futures = Lists.newArrayListWithCapacity(reader.getChunkCount());
+        for (int i = 0; i < reader.getChunkCount(); i++) {
+            final int chunkIndex = i;
+            futures.add(executor.submit(() -> verifyChunk(reader.getChunk(chunkIndex))));
+        }
+
+        ChunkLinks[] result = new ChunkLinks[futures.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getResult(futures.get(i));
+        }
+        return result;
+    }
+
+    protected ChunkLinks verifyChunk(BlockSnapshotReader.Chunk chunk) {
+        ChunkLinks result = new ChunkLinks();
+        result.firstNumber = chunk.firstNumber;
+        MessageDigest digest = newSha256Digest();
+        for (int i = 0; i < chunk.size(); i++) {
+            JsonBlockHeaderParser.Header header = blockHeaderParser.parse(chunk.bytes, chunk.offsets[i], chunk.lengths[i]);
+            int expectedNumber = chunk.firstNumber + i;
+            boolean valid = header.getNumber() == expectedNumber && StringUtils.isNotBlank(header.getHash())
+                    && isValidHash(digest, header);
+            if (i == 0) {
+                result.firstPreviousHash = header.getPreviousHash();
+            }
+            else {
+                valid = valid && Objects.equal(result.lastHash, header.getPreviousHash());
+            }
+            if (!valid) {
+                result.breakNumber = expectedNumber;
+                result.breakPreviousHash = result.lastHash;
+                return result;
+            }
+            result.lastHash = header.getHash();
+        }
+        return result;
+    }
+
+    /**
+     * Recompute the block hash, from its signed part: <code>sha256("InnerHash: {inner_hash}\nNonce: {nonce}\n{signature}\n")</code>.
+     * Blocks without inner hash (old protocol versions) are only checked by the hash chain.
+     * <br/>
+     * The <code>inner_hash</code> itself is NOT recomputed from the block content (this would need the whole raw block format):
+     * a block with altered content but unchanged header is accepted.
+     */
+    protected boolean isValidHash(MessageDigest digest, JsonBlockHeaderParser.Header header) {
+        if (header.getInnerHash() == null) return true;
+        if (header.getSignature() == null || header.getNonce() < 0) return false;
+
+        String signedPart = "InnerHash: " + header.getInnerHash() + "\n"
+                + "Nonce: " + header.getNonce() + "\n"
+                + header.getSignature() + "\n";
+        digest.reset();
+        String hash = BaseEncoding.base16().encode(digest.digest(signedPart.getBytes(StandardCharsets.UTF_8)));
+        return hash.equalsIgnoreCase(header.getHash());
+    }
+
+    protected MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    /**
+     * Index blocks (and events) of all chunks, up to <code>lastNumber</code>, one bulk request per chunk
+     * @return blocks that failed
+     */
+    protected BlockRangeSet loadChunks(ExecutorService executor, final BlockSnapshotReader reader,
+                                       final String currencyName, final int lastNumber) throws IOException {
+        final BlockRangeSet missingBlocks = new BlockRangeSet();
+        final boolean withEvents = blockEventService.isEnable();
+
+        List<Future<?>> futures = Lists.newArrayList();
+        int lastChunkIndex = reader.getChunkIndex(lastNumber);
+        for (int i = 0; i <= lastChunkIndex; i++) {
+            final int chunkIndex = i;
+            futures.add(executor.submit(() -> {
+                BlockSnapshotReader.Chunk chunk = reader.getChunk(chunkIndex);
+                BulkRequestBuilder bulkRequest = client.prepareBulk();
+                for (int j = 0; j < chunk.size() && chunk.firstNumber + j <= lastNumber; j++) {
+                    int number = chunk.firstNumber + j;
+                    bulkRequest.add(client.prepareIndex(currencyName, BlockchainService.BLOCK_TYPE, String.valueOf(number))
+                            .setSource(chunk.bytes, chunk.offsets[j], chunk.lengths[j]));
+                    if (withEvents) {
+                        String json = new String(chunk.bytes, chunk.offsets[j], chunk.lengths[j], StandardCharsets.UTF_8);
+                        blockEventService.prepareIndexEvents(currencyName, json).forEach(bulkRequest::add);
+                    }
+                }
+
+                BulkResponse bulkResponse = bulkRequest.get();
+                if (bulkResponse.hasFailures()) {
+                    for (BulkItemResponse itemResponse : bulkResponse) {
+                        if (!itemResponse.isFailed()) continue;
+                        String blockId = BlockEventService.isEventType(itemResponse.getType())
+                                ? BlockEventService.getBlockId(itemResponse.getId())
+                                : itemResponse.getId();
+                        logger.debug(String.format("[%s] Error while importing block #%s: %s", currencyName, blockId, itemResponse.getFailureMessage()));
+                        synchronized (missingBlocks) {
+                            missingBlocks.add(Integer.parseInt(blockId));
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future: futures) {
+            getResult(future);
+        }
+        synchronized (missingBlocks) {
+            return missingBlocks;
+        }
+    }
+
+    protected <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch(InterruptedException e) {
+            throw new TechnicalException("Snapshot import interrupted", e);
+        }
+        catch(ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new TechnicalException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    protected static class ChunkLinks {
+        int firstNumber;
+        String firstPreviousHash;
+        String lastHash;
+        int breakNumber = -1;
+        String breakPreviousHash;
+    }
+}
@@ -0,0 +1,161 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Write blocks of a currency into a snapshot archive (see {@link BlockSnapshotReader}).
+ * <br/>
+ * File layout (big-endian):
+ * <pre>
+ * header:  magic (int), version (int), currency (UTF)
+ * chunks:  deflate compressed [length (int), block JSON (bytes)]*, for <code>chunkSize</code> consecutive blocks
+ * index:   chunk count (int), then for each chunk: first number (int), block count (int), offset (long),
+ *          compressed length (int), raw length (int)
+ * footer:  index offset (long), magic (int)
+ * </pre>
+ * Blocks must be added in order, without gap.
+ * This class is not thread-safe.
+ */
+public class BlockSnapshotWriter implements Closeable {
+
+    public static final int MAGIC = 0x44534E50; // 'DSNP'
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final int chunkSize;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final ByteArrayOutputStream chunkBuffer = new ByteArrayOutputStream(1024 * 1024);
+    private final DataOutputStream chunkOut = new DataOutputStream(chunkBuffer);
+    private byte[] compressBuffer = new byte[64 * 1024];
+
+    private final List<long[]> chunks = new ArrayList<>();
+    private long offset;
+    private int chunkFirstNumber = -1;
+    private int chunkBlockCount;
+    private int lastNumber = -1;
+
+    public BlockSnapshotWriter(File file, String currency, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        }
+        this.chunkSize = chunkSize;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(currency);
+        offset = out.size();
+    }
+
+    /**
+     * Add a block. Its number must follow the previous added block
+     */
+    public void add(int number, byte[] json, int jsonOffset, int jsonLength) throws IOException {
+        if (lastNumber != -1 && number != lastNumber + 1) {
+            throw new IllegalArgumentException(String.format("Block #%s expected, but got #%s", lastNumber + 1, number));
+        }
+        if (chunkBlockCount == 0) {
+            chunkFirstNumber = number;
+        }
+        chunkOut.writeInt(jsonLength);
+        chunkOut.write(json, jsonOffset, jsonLength);
+        chunkBlockCount++;
+        lastNumber = number;
+
+        if (chunkBlockCount == chunkSize) {
+            flushChunk();
+        }
+    }
+
+    public void add(int number, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        add(number, bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the last added block number, or -1 if empty
+     */
+    public int getLastNumber() {
+        return lastNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushChunk();
+
+            // Index
+            long indexOffset = offset;
+            out.writeInt(chunks.size());
+            for (long[] chunk : chunks) {
+                out.writeInt((int) chunk[0]);
+                out.writeInt((int) chunk[1]);
+                out.writeLong(chunk[2]);
+                out.writeInt((int) chunk[3]);
+                out.writeInt((int) chunk[4]);
+            }
+
+            // Footer
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+        }
+        finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    /* -- internal methods -- */
+
+    protected void flushChunk() throws IOException {
+        if (chunkBlockCount == 0) return;
+
+        byte[] raw = chunkBuffer.toByteArray();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressBuffer.length) {
+                byte[] newBuffer = new byte[compressBuffer.length * 2];
+                System.arraycopy(compressBuffer, 0, newBuffer, 0, compressedLength);
+                compressBuffer = newBuffer;
+            }
+            compressedLength += deflater.deflate(compressBuffer, compressedLength, compressBuffer.length - compressedLength);
+        }
+
+        out.write(compressBuffer, 0, compressedLength);
+        chunks.add(new long[]{chunkFirstNumber, chunkBlockCount, offset, compressedLength, raw.length});
+        offset += compressedLength;
+
+        chunkBuffer.reset();
+        chunkBlockCount = 0;
+    }
+}
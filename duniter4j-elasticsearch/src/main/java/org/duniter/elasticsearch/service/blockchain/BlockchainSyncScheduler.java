@@ -0,0 +1,143 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.model.ProgressionModel;
+import org.duniter.core.model.ProgressionModelImpl;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.duniter.elasticsearch.service.BlockchainService;
+import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sync the blockchain of many currencies (one worker per peer), using a bounded pool
+ * (<code>duniter.blockchain.sync.maxConcurrent</code> threads).
+ * <br/>
+ * To share the pool fairly, a worker indexes at most <code>duniter.blockchain.sync.maxBlocksPerRun</code> blocks,
+ * then is queued again, behind the other workers: a currency catching up a long chain can not hold back the others.
+ * New blocks of a currency are listened only once its sync is up to date, so the new blocks thread
+ * never has to resolve a large lag.
+ */
+public class BlockchainSyncScheduler extends AbstractService {
+
+    private final ThreadPool threadPool;
+    private final BlockchainService blockchainService;
+
+    private ExecutorService executor;
+    private volatile boolean closed;
+
+    @Inject
+    public BlockchainSyncScheduler(Client client, PluginSettings settings, ThreadPool threadPool,
+                                   BlockchainService blockchainService) {
+        super("duniter.blockchain", client, settings);
+        this.threadPool = threadPool;
+        this.blockchainService = blockchainService;
+    }
+
+    /**
+     * Start the sync of a peer's currency
+     * @param initializer a job to run (once) before the first sync, e.g. to index the currency. Could be null
+     */
+    public void schedule(Peer peer, Runnable initializer) {
+        submit(new SyncWorker(peer, initializer));
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = threadPool.newFixedThreadPool("duniter4j-blockchain-sync-scheduler", Math.max(1, pluginSettings.getSyncMaxConcurrent()));
+        }
+        return executor;
+    }
+
+    protected void submit(SyncWorker worker) {
+        if (closed) return;
+        try {
+            getExecutor().execute(worker);
+        }
+        catch(RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    protected class SyncWorker implements Runnable {
+        final Peer peer;
+        Runnable initializer;
+        boolean listening;
+
+        SyncWorker(Peer peer, Runnable initializer) {
+            this.peer = peer;
+            this.initializer = initializer;
+        }
+
+        @Override
+        public void run() {
+            boolean upToDate;
+            ProgressionModel progressionModel = new ProgressionModelImpl();
+            try {
+                if (initializer != null) {
+                    initializer.run();
+                    initializer = null;
+                }
+                upToDate = blockchainService.indexNextBlocks(peer, pluginSettings.getSyncMaxBlocksPerRun(), progressionModel);
+            }
+            catch(Throwable t) {
+                logger.error(String.format("[%s] Error while syncing blockchain: %s", peer, t.getMessage()), t);
+                progressionModel.setStatus(ProgressionModel.Status.FAILED);
+                upToDate = false;
+            }
+
+            // Failed or stopped: retry later
+            if (progressionModel.getStatus() != ProgressionModel.Status.SUCCESS) {
+                logger.warn(String.format("[%s] Blockchain sync failed. Will retry in %s", peer, pluginSettings.getSyncRetryDelay()));
+                threadPool.schedule(() -> submit(this), pluginSettings.getSyncRetryDelay());
+            }
+
+            // Not up to date: continue, after other workers
+            else if (!upToDate) {
+                submit(this);
+            }
+
+            // Up to date: listen new blocks
+            else if (!listening) {
+                blockchainService.listenAndIndexNewBlock(peer);
+                listening = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.model.ChainVerification;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.duniter.elasticsearch.service.BlockchainService;
+import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Verify the indexed blockchain of a currency, without any remote request: the block number space is split
+ * into partitions, read at the same time by many workers (scrolling only block headers), to check that:
+ * <ul>
+ *     <li>no block is missing (gaps);</li>
+ *     <li>each block 'previousHash' is the 'hash' of the previous block (breaks).</li>
+ * </ul>
+ * Gaps and breaks can then be re-indexed, using {@link BlockchainService#repairBlocks(String, BlockRangeSet)}.
+ */
+public class BlockchainVerifierService extends AbstractService {
+
+    private static final String[] VERIFY_BLOCK_FIELDS = new String[]{
+            "number", "hash", "previousHash"
+    };
+
+    private final BlockchainService blockchainService;
+    private final ThreadPool threadPool;
+
+    @Inject
+    public BlockchainVerifierService(Client client, PluginSettings settings, ThreadPool threadPool,
+                                     BlockchainService blockchainService) {
+        super("duniter.blockchain", client, settings);
+        this.threadPool = threadPool;
+        this.blockchainService = blockchainService;
+    }
+
+    /**
+     * Verify all indexed blocks
+     */
+    public ChainVerification verify(String currencyName) {
+        return verify(currencyName, 0, -1);
+    }
+
+    /**
+     * Verify indexed blocks from <code>fromNumber</code> to <code>toNumber</code>
+     * @param toNumber last block number, or -1 to use the max indexed block number
+     */
+    public ChainVerification verify(final String currencyName, int fromNumber, int toNumber) {
+        long timeStart = System.currentTimeMillis();
+
+        // Make sure all blocks are visible to search
+        client.admin().indices().prepareRefresh(currencyName).get();
+
+        if (toNumber < 0) {
+            toNumber = blockchainService.getMaxBlockNumber(currencyName);
+        }
+        fromNumber = Math.max(0, fromNumber);
+
+        ChainVerification result = new ChainVerification();
+        result.setCurrency(currencyName);
+        result.setFromNumber(fromNumber);
+        result.setToNumber(toNumber);
+
+        BlockRangeSet gaps = new BlockRangeSet();
+        BlockRangeSet breaks = new BlockRangeSet();
+        long blockCount = 0;
+
+        if (fromNumber <= toNumber) {
+            // Split into partitions (more partitions than workers, so that a slow partition do not delay others)
+            final int workerCount = Math.max(1, pluginSettings.getVerifyWorkers());
+            final int minPartitionSize = Math.max(1, pluginSettings.getIndexBulkSize());
+            final int partitionCount = (int) Math.max(1, Math.min(workerCount * 4L, ((long) toNumber - fromNumber + 1) / minPartitionSize));
+            final int partitionSize = (int) (((long) toNumber - fromNumber + partitionCount) / partitionCount);
+
+            ExecutorService executor = threadPool.newFixedThreadPool("duniter4j-blockchain-verify", Math.min(workerCount, partitionCount));
+            try {
+                List<Future<Partition>> futures = Lists.newArrayListWithCapacity(partitionCount);
+                for (int partitionFirstNumber = fromNumber; partitionFirstNumber <= toNumber; partitionFirstNumber += partitionSize) {
+                    final int first = partitionFirstNumber;
+                    final int last = (int) Math.min((long) partitionFirstNumber + partitionSize - 1, toNumber);
+                    futures.add(executor.submit(() -> verifyPartition(currencyName, first, last)));
+                }
+
+                Partition previous = null;
+                for (Future<Partition> future: futures) {
+                    Partition partition = future.get();
+                    gaps.addAll(partition.gaps);
+                    breaks.addAll(partition.breaks);
+                    blockCount += partition.blockCount;
+
+                    // Check the link between partitions
+                    if (previous != null && previous.lastNumber == previous.toNumber && partition.firstNumber == partition.fromNumber
+                            && !Objects.equal(previous.lastHash, partition.firstPreviousHash)) {
+                        breaks.add(partition.firstNumber);
+                    }
+                    previous = partition;
+                }
+            }
+            catch(InterruptedException e) {
+                throw new TechnicalException(String.format("[%s] Blockchain verification interrupted", currencyName), e);
+            }
+            catch(ExecutionException e) {
+                throw new TechnicalException(String.format("[%s] Error while verifying blockchain: %s", currencyName, e.getCause().getMessage()), e.getCause());
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+
+        List<String> gapRanges = gaps.toStrings();
+        List<String> breakRanges = breaks.toStrings();
+        result.setGaps(gapRanges.toArray(new String[gapRanges.size()]));
+        result.setBreaks(breakRanges.toArray(new String[breakRanges.size()]));
+        result.setBlockCount(blockCount);
+        result.setDuration(System.currentTimeMillis() - timeStart);
+
+        if (result.isValid()) {
+            logger.info(String.format("[%s] Blockchain verified (blocks #%s to #%s): OK, in %s ms", currencyName, fromNumber, toNumber, result.getDuration()));
+        }
+        else {
+            logger.warn(String.format("[%s] Blockchain verified (blocks #%s to #%s): gaps %s, breaks %s, in %s ms", currencyName, fromNumber, toNumber,
+                    gapRanges, breakRanges, result.getDuration()));
+        }
+        return result;
+    }
+
+    /**
+     * Re-index gaps and breaks of a verification (for a break, the block and its previous block are re-indexed)
+     * @return blocks to repair
+     */
+    public BlockRangeSet repair(ChainVerification verification) {
+        BlockRangeSet blocks = new BlockRangeSet();
+        if (verification.getGaps() != null) {
+            blocks.addAll(BlockRangeSet.parse(Arrays.asList(verification.getGaps())));
+        }
+        if (verification.getBreaks() != null) {
+            for (int[] range: BlockRangeSet.parse(Arrays.asList(verification.getBreaks())).getRanges()) {
+                blocks.add(Math.max(0, range[0] - 1), range[1]);
+            }
+        }
+
+        blockchainService.repairBlocks(verification.getCurrency(), blocks);
+        return blocks;
+    }
+
+    /* -- Internal methods -- */
+
+    /**
+     * Scroll block headers of a partition, ordered by number
+     */
+    protected Partition verifyPartition(String currencyName, int fromNumber, int toNumber) {
+        Partition result = new Partition(fromNumber, toNumber);
+        int expectedNumber = fromNumber;
+
+        TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(BlockchainService.BLOCK_TYPE)
+                .setQuery(QueryBuilders.rangeQuery("number").gte(fromNumber).lte(toNumber))
+                .setFetchSource(VERIFY_BLOCK_FIELDS, null)
+                .addSort("number", SortOrder.ASC)
+                .setSize(pluginSettings.getIndexBulkSize())
+                .setScroll(scrollTimeout)
+                .get();
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits().getHits()) {
+                    if (BlockchainService.CURRENT_BLOCK_ID.equals(hit.getId())) continue;
+
+                    Map<String, Object> source = hit.getSource();
+                    int number = ((Number) source.get("number")).intValue();
+                    String hash = (String) source.get("hash");
+                    String previousHash = (String) source.get("previousHash");
+
+                    if (number > expectedNumber) {
+                        result.gaps.add(expectedNumber, number - 1);
+                    }
+
+                    if (result.blockCount == 0) {
+                        result.firstNumber = number;
+                        result.firstPreviousHash = previousHash;
+                    }
+                    else if (number == result.lastNumber + 1 && !Objects.equal(result.lastHash, previousHash)) {
+                        result.breaks.add(number);
+                    }
+
+                    result.lastNumber = number;
+                    result.lastHash = hash;
+                    result.blockCount++;
+                    expectedNumber = number + 1;
+                }
+                response = client.prepareSearchScroll(response.getScrollId())
+                        .setScroll(scrollTimeout)
+                        .get();
+            }
+        }
+        finally {
+            client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+        }
+
+        if (expectedNumber <= toNumber) {
+            result.gaps.add(expectedNumber, toNumber);
+        }
+        return result;
+    }
+
+    protected static class Partition {
+        final int fromNumber;
+        final int toNumber;
+        final BlockRangeSet gaps = new BlockRangeSet();
+        final BlockRangeSet breaks = new BlockRangeSet();
+
+        long blockCount;
+        int firstNumber = -1;
+        String firstPreviousHash;
+        int lastNumber = -1;
+        String lastHash;
+
+        Partition(int fromNumber, int toNumber) {
+            this.fromNumber = fromNumber;
+            this.toNumber = toNumber;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.model.BulkLoadMarker;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Switch a currency index into a bulk-load profile (no refresh, no replica, async translog) during a large sync,
+ * then restore its original settings and force-merge it.
+ * Original settings are stored in the index (as a marker), so they are restored even if the node crashed.
+ */
+public class BulkLoadService extends AbstractService {
+
+    public static final String BULK_LOAD_MARKER_TYPE = "bulkLoad";
+    public static final String BULK_LOAD_MARKER_ID = "marker";
+
+    private static final String SETTING_REFRESH_INTERVAL = "index.refresh_interval";
+    private static final String SETTING_NUMBER_OF_REPLICAS = "index.number_of_replicas";
+    private static final String SETTING_TRANSLOG_DURABILITY = "index.translog.durability";
+
+    // Indices checked for a stale marker, since the node started
+    private final Set<String> checkedIndices = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    public BulkLoadService(Client client, PluginSettings settings) {
+        super("duniter.blockchain", client, settings);
+    }
+
+    /**
+     * @return true if a sync of <code>blockCount</code> blocks should use the bulk-load profile
+     */
+    public boolean isBulkLoadNeed(int blockCount) {
+        return pluginSettings.isIndexBulkLoadEnable()
+                && blockCount >= pluginSettings.getIndexBulkLoadMinBlocks();
+    }
+
+    /**
+     * @return true if the index is in bulk-load profile (a marker exists)
+     */
+    public boolean isBulkLoad(String index) {
+        return getBulkLoadMarker(index) != null;
+    }
+
+    /**
+     * Apply the bulk-load settings. If already in bulk-load (e.g. after a crash), original settings are kept unchanged.
+     */
+    public void startBulkLoad(String index) {
+        if (getBulkLoadMarker(index) == null) {
+            logger.info(String.format("[%s] Switching index into bulk-load mode", index));
+
+            // Store original settings, before any change
+            GetSettingsResponse response = client.admin().indices().prepareGetSettings(index).get();
+            BulkLoadMarker marker = new BulkLoadMarker();
+            marker.setCurrency(index);
+            marker.setRefreshInterval(response.getSetting(index, SETTING_REFRESH_INTERVAL));
+            marker.setNumberOfReplicas(response.getSetting(index, SETTING_NUMBER_OF_REPLICAS));
+            marker.setTranslogDurability(response.getSetting(index, SETTING_TRANSLOG_DURABILITY));
+            marker.setTime(System.currentTimeMillis());
+            saveBulkLoadMarker(index, marker);
+        }
+
+        client.admin().indices().prepareUpdateSettings(index)
+                .setSettings(Settings.settingsBuilder()
+                        .put(SETTING_REFRESH_INTERVAL, "-1")
+                        .put(SETTING_NUMBER_OF_REPLICAS, 0)
+                        .put(SETTING_TRANSLOG_DURABILITY, "async")
+                        .build())
+                .get();
+    }
+
+    /**
+     * Restore settings left by a bulk-load that never ended (e.g. the node crashed during a sync).
+     * Only the first call for an index (since the node started) checks the marker.
+     */
+    public void restoreIfStale(String index) {
+        if (!checkedIndices.add(index)) return;
+
+        BulkLoadMarker marker = getBulkLoadMarker(index);
+        if (marker == null) return;
+
+        logger.warn(String.format("[%s] Index still in bulk-load mode: a previous sync did not end", index));
+        stopBulkLoad(index, false);
+    }
+
+    /**
+     * Restore the original settings (if a marker exists), then force-merge and refresh the index
+     */
+    public void stopBulkLoad(String index) {
+        stopBulkLoad(index, true);
+    }
+
+    /**
+     * Restore the original settings (if a marker exists), then refresh the index
+     * @param optimize should force-merge the index ? (e.g. false if the sync has not finished)
+     */
+    public void stopBulkLoad(String index, boolean optimize) {
+        BulkLoadMarker marker = getBulkLoadMarker(index);
+        if (marker == null) return; // not in bulk-load
+
+        logger.info(String.format("[%s] Restoring index settings, after bulk-load", index));
+
+        client.admin().indices().prepareUpdateSettings(index)
+                .setSettings(Settings.settingsBuilder()
+                        .put(SETTING_REFRESH_INTERVAL, marker.getRefreshInterval() != null ? marker.getRefreshInterval() : "1s")
+                        .put(SETTING_NUMBER_OF_REPLICAS, marker.getNumberOfReplicas() != null ? marker.getNumberOfReplicas() : "1")
+                        .put(SETTING_TRANSLOG_DURABILITY, marker.getTranslogDurability() != null ? marker.getTranslogDurability() : "request")
+                        .build())
+                .get();
+
+        if (optimize) {
+            logger.info(String.format("[%s] Optimizing index...", index));
+            client.admin().indices().prepareForceMerge(index)
+                    .setMaxNumSegments(pluginSettings.getIndexBulkLoadMaxNumSegments())
+                    .get();
+        }
+        client.admin().indices().prepareRefresh(index).get();
+
+        // Remove the marker, only when settings has been restored
+        client.prepareDelete(index, BULK_LOAD_MARKER_TYPE, BULK_LOAD_MARKER_ID)
+                .setRefresh(true)
+                .get();
+    }
+
+    public XContentBuilder createBulkLoadMarkerType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(BULK_LOAD_MARKER_TYPE)
+                    .startObject("properties")
+
+                    // currency
+                    .startObject(BulkLoadMarker.PROPERTY_CURRENCY)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // refresh interval
+                    .startObject(BulkLoadMarker.PROPERTY_REFRESH_INTERVAL)
+                    .field("type", "string")
+                    .field("index", "no")
+                    .endObject()
+
+                    // number of replicas
+                    .startObject(BulkLoadMarker.PROPERTY_NUMBER_OF_REPLICAS)
+                    .field("type", "string")
+                    .field("index", "no")
+                    .endObject()
+
+                    // translog durability
+                    .startObject(BulkLoadMarker.PROPERTY_TRANSLOG_DURABILITY)
+                    .field("type", "string")
+                    .field("index", "no")
+                    .endObject()
+
+                    // time
+                    .startObject(BulkLoadMarker.PROPERTY_TIME)
+                    .field("type", "long")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for bulk-load marker: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected BulkLoadMarker getBulkLoadMarker(String index) {
+        GetResponse response = client.prepareGet(index, BULK_LOAD_MARKER_TYPE, BULK_LOAD_MARKER_ID)
+                .setRealtime(true)
+                .get();
+        if (!response.isExists()) {
+            return null;
+        }
+
+        try {
+            return objectMapper.readValue(response.getSourceAsBytes(), BulkLoadMarker.class);
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("[%s] Unable to read bulk-load marker: %s", index, e.getMessage()), e);
+        }
+    }
+
+    protected void saveBulkLoadMarker(String index, BulkLoadMarker marker) {
+        try {
+            client.prepareIndex(index, BULK_LOAD_MARKER_TYPE, BULK_LOAD_MARKER_ID)
+                    .setSource(objectMapper.writeValueAsBytes(marker))
+                    .setRefresh(true)
+                    .get();
+        }
+        catch(JsonProcessingException e) {
+            throw new TechnicalException(e);
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.duniter.core.client.model.bma.BlockchainBlock;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.ObjectUtils;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.model.MonetaryStats;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.elasticsearch.action.admin.indices.exists.types.TypesExistsResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Maintain monetary statistics (members count, monetary mass, dividend), aggregated by day, week and month.
+ * Blocks are applied in order, from the stats state (last applied block). A block already counted in a period
+ * (number &lt;= lastBlock) is skipped, so only the periods affected by a fork have to be rebuilt.
+ */
+public class MonetaryStatsService extends AbstractService {
+
+    public static final String STATS_TYPE = "monetaryStats";
+    public static final String STATS_STATE_TYPE = "monetaryStatsState";
+    public static final String STATS_STATE_ID = "state";
+
+    public static final String PERIOD_DAY = "day";
+    public static final String PERIOD_WEEK = "week";
+    public static final String PERIOD_MONTH = "month";
+    public static final String[] PERIODS = new String[]{PERIOD_DAY, PERIOD_WEEK, PERIOD_MONTH};
+
+    private static final String PROPERTY_NUMBER = "number";
+
+    private final BlockRepositoryService blockRepositoryService;
+
+    @Inject
+    public MonetaryStatsService(Client client, PluginSettings settings, BlockRepositoryService blockRepositoryService) {
+        super("duniter.blockchain", client, settings);
+        this.blockRepositoryService = blockRepositoryService;
+    }
+
+    public boolean isEnable() {
+        return pluginSettings.isIndexMonetaryStatsEnable();
+    }
+
+    public static boolean isPeriod(String period) {
+        return PERIOD_DAY.equals(period) || PERIOD_WEEK.equals(period) || PERIOD_MONTH.equals(period);
+    }
+
+    /**
+     * Create stats types, on an index created by an older version
+     */
+    public void createTypesIfNotExists(String currencyName) {
+        if (!isEnable()) return;
+
+        TypesExistsResponse response = client.admin().indices().prepareTypesExists(currencyName)
+                .setTypes(STATS_TYPE, STATS_STATE_TYPE)
+                .get();
+        if (!response.isExists()) {
+            logger.info(String.format("[%s] Creating types [%s, %s]", currencyName, STATS_TYPE, STATS_STATE_TYPE));
+            client.admin().indices().preparePutMapping(currencyName)
+                    .setType(STATS_TYPE)
+                    .setSource(createStatsType())
+                    .get();
+            client.admin().indices().preparePutMapping(currencyName)
+                    .setType(STATS_STATE_TYPE)
+                    .setSource(createStatsStateType())
+                    .get();
+        }
+    }
+
+    /**
+     * Get the stats series of a period
+     * @param fromTime min time (in seconds), or null
+     * @param toTime max time (in seconds), or null
+     */
+    public List<MonetaryStats> getStats(String currencyName, String period, Long fromTime, Long toTime, int size) {
+        ObjectUtils.checkArgument(isPeriod(period), "Invalid period: " + period);
+
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(STATS_TYPE)
+                .setQuery(QueryBuilders.boolQuery()
+                        .filter(QueryBuilders.termQuery(MonetaryStats.PROPERTY_PERIOD, period))
+                        .filter(QueryBuilders.rangeQuery(MonetaryStats.PROPERTY_TIME).gte(fromTime).lte(toTime)))
+                .addSort(MonetaryStats.PROPERTY_TIME, SortOrder.ASC)
+                .setSize(size)
+                .get();
+
+        List<MonetaryStats> result = new ArrayList<>();
+        for (SearchHit hit: response.getHits()) {
+            result.add(toStats(hit.getId(), hit.source()));
+        }
+        return result;
+    }
+
+    /**
+     * Apply indexed blocks to stats, from the last applied block to <code>toNumber</code>.
+     * Stop at the first block not indexed yet.
+     */
+    public synchronized void updateStats(String currencyName, int toNumber) {
+        if (!isEnable()) return;
+
+        int number = getStateNumber(currencyName);
+        int batchSize = pluginSettings.getIndexBulkSize();
+        while (number < toNumber) {
+            int count = Math.min(batchSize, toNumber - number);
+            int[] numbers = new int[count];
+            for (int i = 0; i < count; i++) {
+                numbers[i] = number + 1 + i;
+            }
+
+            List<BlockchainBlock> blocks = blockRepositoryService.getBlockHeaders(currencyName, numbers);
+            Map<String, MonetaryStats> statsById = new HashMap<>();
+            int lastNumber = number;
+            for (BlockchainBlock block: blocks) {
+                // Block not indexed yet: stop here (blocks must be applied in order)
+                if (block == null || block.getMedianTime() == null) break;
+                applyBlock(currencyName, block, statsById);
+                lastNumber = block.getNumber();
+            }
+            if (lastNumber == number) break;
+
+            saveStats(currencyName, statsById, lastNumber);
+            if (lastNumber < numbers[count - 1]) break;
+            number = lastNumber;
+        }
+    }
+
+    /**
+     * Delete stats of the periods that contain blocks from <code>fromNumber</code>, so they will be rebuilt.
+     * Must be called before indexed blocks are deleted (e.g. on fork).
+     */
+    public synchronized void revertStats(String currencyName, int fromNumber) {
+        if (!isEnable()) return;
+        if (getStateNumber(currencyName) < fromNumber) return;
+
+        BlockchainBlock block = blockRepositoryService.getBlockHeader(currencyName, fromNumber);
+        if (block == null || block.getMedianTime() == null) {
+            // Should never occur: rebuild all stats
+            logger.error(String.format("[%s] Unable to revert monetary stats: block #%s not found. Stats will be recomputed.", currencyName, fromNumber));
+            deleteStatsFromTime(currencyName, 0);
+            saveStateNumber(currencyName, -1);
+            return;
+        }
+
+        // Restart from the first block of the largest affected period
+        int restartNumber = fromNumber;
+        long fromTime = block.getMedianTime();
+        for (String period: PERIODS) {
+            GetResponse response = client.prepareGet(currencyName, STATS_TYPE, getStatsId(period, fromTime))
+                    .setRealtime(true)
+                    .get();
+            if (response.isExists()) {
+                MonetaryStats stats = toStats(response.getId(), response.getSourceAsBytes());
+                if (stats.getFirstBlock() != null) {
+                    restartNumber = Math.min(restartNumber, stats.getFirstBlock());
+                }
+            }
+        }
+
+        logger.info(String.format("[%s] Reverting monetary stats, from block #%s", currencyName, restartNumber));
+        deleteStatsFromTime(currencyName, fromTime);
+        saveStateNumber(currencyName, restartNumber - 1);
+    }
+
+    public XContentBuilder createStatsType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(STATS_TYPE)
+                    .startObject("properties")
+
+                    // period
+                    .startObject(MonetaryStats.PROPERTY_PERIOD)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // date
+                    .startObject(MonetaryStats.PROPERTY_DATE)
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // time
+                    .startObject(MonetaryStats.PROPERTY_TIME)
+                    .field("type", "long")
+                    .endObject()
+
+                    // first block
+                    .startObject(MonetaryStats.PROPERTY_FIRST_BLOCK)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // last block
+                    .startObject(MonetaryStats.PROPERTY_LAST_BLOCK)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // block count
+                    .startObject(MonetaryStats.PROPERTY_BLOCK_COUNT)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // members count
+                    .startObject(MonetaryStats.PROPERTY_MEMBERS_COUNT)
+                    .field("type", "integer")
+                    .endObject()
+                    .startObject(MonetaryStats.PROPERTY_MEMBERS_COUNT_MIN)
+                    .field("type", "integer")
+                    .endObject()
+                    .startObject(MonetaryStats.PROPERTY_MEMBERS_COUNT_MAX)
+                    .field("type", "integer")
+                    .endObject()
+
+                    // monetary mass
+                    .startObject(MonetaryStats.PROPERTY_MONETARY_MASS)
+                    .field("type", "long")
+                    .endObject()
+
+                    // dividend
+                    .startObject(MonetaryStats.PROPERTY_DIVIDEND)
+                    .field("type", "long")
+                    .endObject()
+
+                    // UD count
+                    .startObject(MonetaryStats.PROPERTY_UD_COUNT)
+                    .field("type", "integer")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for monetary stats type: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public XContentBuilder createStatsStateType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(STATS_STATE_TYPE)
+                    .startObject("properties")
+
+                    // last applied block number
+                    .startObject(PROPERTY_NUMBER)
+                    .field("type", "integer")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for monetary stats state type: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected void applyBlock(String currencyName, BlockchainBlock block, Map<String, MonetaryStats> statsById) {
+        long medianTime = block.getMedianTime();
+        for (String period: PERIODS) {
+            String id = getStatsId(period, medianTime);
+            MonetaryStats stats = statsById.get(id);
+            if (stats == null) {
+                stats = loadStats(currencyName, id);
+                if (stats == null) {
+                    stats = newStats(period, medianTime);
+                }
+                statsById.put(id, stats);
+            }
+
+            // Already counted
+            if (stats.getLastBlock() != null && stats.getLastBlock() >= block.getNumber()) continue;
+
+            if (stats.getFirstBlock() == null) {
+                stats.setFirstBlock(block.getNumber());
+            }
+            stats.setLastBlock(block.getNumber());
+            stats.setBlockCount(stats.getBlockCount() + 1);
+
+            if (block.getMembersCount() != null) {
+                int membersCount = block.getMembersCount();
+                stats.setMembersCount(membersCount);
+                stats.setMembersCountMin(stats.getMembersCountMin() == null ? membersCount : Math.min(stats.getMembersCountMin(), membersCount));
+                stats.setMembersCountMax(stats.getMembersCountMax() == null ? membersCount : Math.max(stats.getMembersCountMax(), membersCount));
+            }
+            if (block.getMonetaryMass() != null) {
+                stats.setMonetaryMass(block.getMonetaryMass().longValue());
+            }
+            if (block.getDividend() != null && block.getDividend().signum() > 0) {
+                int unitBase = block.getUnitBase() != null ? block.getUnitBase() : 0;
+                stats.setDividend(block.getDividend().multiply(BigInteger.TEN.pow(unitBase)).longValue());
+                stats.setUdCount(stats.getUdCount() + 1);
+            }
+        }
+    }
+
+    protected void saveStats(String currencyName, Map<String, MonetaryStats> statsById, int number) {
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        try {
+            for (Map.Entry<String, MonetaryStats> entry : statsById.entrySet()) {
+                bulkRequest.add(client.prepareIndex(currencyName, STATS_TYPE, entry.getKey())
+                        .setSource(objectMapper.writeValueAsBytes(entry.getValue())));
+            }
+        }
+        catch(JsonProcessingException e) {
+            throw new TechnicalException(e);
+        }
+        bulkRequest.add(prepareSaveState(currencyName, number));
+
+        BulkResponse bulkResponse = bulkRequest.get();
+        if (bulkResponse.hasFailures()) {
+            throw new TechnicalException(String.format("[%s] Error while saving monetary stats: %s", currencyName, bulkResponse.buildFailureMessage()));
+        }
+    }
+
+    protected int getStateNumber(String currencyName) {
+        GetResponse response = client.prepareGet(currencyName, STATS_STATE_TYPE, STATS_STATE_ID)
+                .setRealtime(true)
+                .get();
+        if (!response.isExists()) return -1;
+        Object number = response.getSource().get(PROPERTY_NUMBER);
+        return number instanceof Number ? ((Number)number).intValue() : -1;
+    }
+
+    protected void saveStateNumber(String currencyName, int number) {
+        prepareSaveState(currencyName, number).get();
+    }
+
+    protected IndexRequestBuilder prepareSaveState(String currencyName, int number) {
+        Map<String, Object> state = new HashMap<>();
+        state.put(PROPERTY_NUMBER, number);
+        return client.prepareIndex(currencyName, STATS_STATE_TYPE, STATS_STATE_ID)
+                .setSource(state);
+    }
+
+    /**
+     * Delete stats of all periods that end after <code>fromTime</code>
+     */
+    protected void deleteStatsFromTime(String currencyName, long fromTime) {
+        client.admin().indices().prepareRefresh(currencyName).get();
+
+        List<String> ids = new ArrayList<>();
+        for (String period: PERIODS) {
+            long periodStart = getPeriodStart(period, fromTime);
+            SearchResponse response = client.prepareSearch(currencyName)
+                    .setTypes(STATS_TYPE)
+                    .setQuery(QueryBuilders.boolQuery()
+                            .filter(QueryBuilders.termQuery(MonetaryStats.PROPERTY_PERIOD, period))
+                            .filter(QueryBuilders.rangeQuery(MonetaryStats.PROPERTY_TIME).gte(periodStart)))
+                    .setFetchSource(false)
+                    .setSize(10000)
+                    .get();
+            for (SearchHit hit: response.getHits()) {
+                ids.add(hit.getId());
+            }
+        }
+        if (ids.isEmpty()) return;
+
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        for (String id: ids) {
+            bulkRequest.add(client.prepareDelete(currencyName, STATS_TYPE, id));
+        }
+        bulkRequest.get();
+    }
+
+    protected MonetaryStats loadStats(String currencyName, String id) {
+        GetResponse response = client.prepareGet(currencyName, STATS_TYPE, id)
+                .setRealtime(true)
+                .get();
+        return response.isExists() ? toStats(id, response.getSourceAsBytes()) : null;
+    }
+
+    protected MonetaryStats toStats(String id, byte[] source) {
+        try {
+            return objectMapper.readValue(source, MonetaryStats.class);
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("Unable to read monetary stats [%s]: %s", id, e.getMessage()), e);
+        }
+    }
+
+    protected MonetaryStats newStats(String period, long medianTime) {
+        MonetaryStats stats = new MonetaryStats();
+        stats.setPeriod(period);
+        stats.setDate(getPeriodStartDate(period, medianTime).toString());
+        stats.setTime(getPeriodStart(period, medianTime));
+        stats.setBlockCount(0);
+        stats.setUdCount(0);
+        return stats;
+    }
+
+    protected String getStatsId(String period, long medianTime) {
+        return period + "-" + getPeriodStartDate(period, medianTime);
+    }
+
+    protected long getPeriodStart(String period, long medianTime) {
+        return getPeriodStartDate(period, medianTime).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+
+    protected LocalDate getPeriodStartDate(String period, long medianTime) {
+        LocalDate date = Instant.ofEpochSecond(medianTime).atZone(ZoneOffset.UTC).toLocalDate();
+        switch (period) {
+            case PERIOD_WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case PERIOD_MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+}
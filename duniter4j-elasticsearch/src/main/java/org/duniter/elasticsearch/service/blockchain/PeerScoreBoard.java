@@ -0,0 +1,110 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.local.Peer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keep download statistics of peers (success rate and latency), to choose the best peers first.
+ * Latency is a moving average, so a peer that becomes slow (or fast) is quickly re-ranked.
+ */
+public class PeerScoreBoard {
+
+    // Weight of the last request, in the latency moving average
+    private static final double LATENCY_ALPHA = 0.3;
+
+    // Latency of a peer without any successful request (ms)
+    private static final double DEFAULT_LATENCY = 1000;
+
+    private final Map<String, Score> scores = new ConcurrentHashMap<>();
+
+    public void onSuccess(Peer peer, long latencyMs) {
+        getOrCreate(peer).onSuccess(latencyMs);
+    }
+
+    public void onFailure(Peer peer) {
+        getOrCreate(peer).onFailure();
+    }
+
+    /**
+     * Peer score: success rate (smoothed, so that unknown peers get 0.5) divided by latency (in seconds).
+     * Higher is better
+     */
+    public double getScore(Peer peer) {
+        Score score = scores.get(peer.getUrl());
+        return score != null ? score.get() : 0.5 / (DEFAULT_LATENCY / 1000);
+    }
+
+    /**
+     * @return a new list of the given peers, the best first
+     */
+    public List<Peer> rank(List<Peer> peers) {
+        // Scores may change while sorting (other threads): sort using a snapshot
+        final Map<Peer, Double> snapshot = new IdentityHashMap<>(peers.size());
+        for (Peer peer : peers) {
+            snapshot.put(peer, getScore(peer));
+        }
+        List<Peer> result = new ArrayList<>(peers);
+        result.sort(Comparator.comparingDouble((Peer peer) -> snapshot.get(peer)).reversed());
+        return result;
+    }
+
+    public void clear() {
+        scores.clear();
+    }
+
+    /* -- internal methods -- */
+
+    private Score getOrCreate(Peer peer) {
+        return scores.computeIfAbsent(peer.getUrl(), url -> new Score());
+    }
+
+    private static class Score {
+        long successCount;
+        long failureCount;
+        double latency = DEFAULT_LATENCY;
+
+        synchronized void onSuccess(long latencyMs) {
+            latency = successCount == 0
+                    ? latencyMs
+                    : LATENCY_ALPHA * latencyMs + (1 - LATENCY_ALPHA) * latency;
+            successCount++;
+        }
+
+        synchronized void onFailure() {
+            failureCount++;
+        }
+
+        synchronized double get() {
+            double successRate = (successCount + 1d) / (successCount + failureCount + 2d);
+            return successRate / (Math.max(latency, 1d) / 1000);
+        }
+    }
+}
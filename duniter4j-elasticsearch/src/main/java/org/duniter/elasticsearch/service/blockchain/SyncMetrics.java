@@ -0,0 +1,286 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.local.Peer;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the blockchain sync, by currency (and by peer, for remote fetches):
+ * remote fetches, parsing, bulk requests, fork resolutions and missing blocks repairs.
+ * Throughput (blocks and bytes per second) is computed on indexed blocks, over the last minute.
+ */
+public class SyncMetrics implements ToXContent {
+
+    public static final String STAGE_FETCH = "fetch";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_BULK = "bulk";
+    public static final String STAGE_FORK = "fork";
+    public static final String STAGE_REPAIR = "repair";
+
+    private static final String[] STAGES = {STAGE_FETCH, STAGE_PARSE, STAGE_BULK, STAGE_FORK, STAGE_REPAIR};
+
+    private final Map<String, CurrencyMetrics> currencies = new ConcurrentHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+
+    public void onFetch(String currencyName, Peer peer, int blockCount, long bytes, long timeMs) {
+        CurrencyMetrics metrics = get(currencyName);
+        metrics.get(STAGE_FETCH).onSuccess(blockCount, bytes, timeMs);
+        metrics.getPeer(peer).onSuccess(blockCount, bytes, timeMs);
+    }
+
+    public void onFetchError(String currencyName, Peer peer, long timeMs) {
+        CurrencyMetrics metrics = get(currencyName);
+        metrics.get(STAGE_FETCH).onError(timeMs);
+        metrics.getPeer(peer).onError(timeMs);
+    }
+
+    public void onParse(String currencyName, int blockCount, long bytes, long timeMs) {
+        get(currencyName).get(STAGE_PARSE).onSuccess(blockCount, bytes, timeMs);
+    }
+
+    public void onBulk(String currencyName, int blockCount, long bytes, long timeMs) {
+        CurrencyMetrics metrics = get(currencyName);
+        metrics.get(STAGE_BULK).onSuccess(blockCount, bytes, timeMs);
+        metrics.blocksRate.mark(blockCount);
+        metrics.bytesRate.mark(bytes);
+    }
+
+    public void onBulkError(String currencyName, long timeMs) {
+        get(currencyName).get(STAGE_BULK).onError(timeMs);
+    }
+
+    public void onForkResolved(String currencyName, long timeMs) {
+        get(currencyName).get(STAGE_FORK).onSuccess(0, 0, timeMs);
+    }
+
+    public void onForkError(String currencyName, long timeMs) {
+        get(currencyName).get(STAGE_FORK).onError(timeMs);
+    }
+
+    public void onRepair(String currencyName, long blockCount, long timeMs) {
+        get(currencyName).get(STAGE_REPAIR).onSuccess(blockCount, 0, timeMs);
+    }
+
+    public void onRepairError(String currencyName, long timeMs) {
+        get(currencyName).get(STAGE_REPAIR).onError(timeMs);
+    }
+
+    public void clear(String currencyName) {
+        currencies.remove(currencyName);
+    }
+
+    /**
+     * Write metrics of all currencies
+     */
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        return toXContent(builder, params, null);
+    }
+
+    /**
+     * Write metrics of one currency (or all currencies, if null)
+     */
+    public XContentBuilder toXContent(XContentBuilder builder, Params params, String currencyName) throws IOException {
+        builder.field("startTime", startTime / 1000);
+        builder.startObject("currencies");
+        for (Map.Entry<String, CurrencyMetrics> entry: new TreeMap<>(currencies).entrySet()) {
+            if (currencyName != null && !currencyName.equals(entry.getKey())) continue;
+            builder.startObject(entry.getKey());
+            entry.getValue().toXContent(builder, params);
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    /* -- internal methods -- */
+
+    private CurrencyMetrics get(String currencyName) {
+        return currencies.computeIfAbsent(currencyName, k -> new CurrencyMetrics());
+    }
+
+    private static class CurrencyMetrics implements ToXContent {
+        final Map<String, StageMetrics> stages = new ConcurrentHashMap<>();
+        final Map<String, StageMetrics> peers = new ConcurrentHashMap<>();
+        final RateMeter blocksRate = new RateMeter();
+        final RateMeter bytesRate = new RateMeter();
+
+        StageMetrics get(String stage) {
+            return stages.computeIfAbsent(stage, k -> new StageMetrics());
+        }
+
+        StageMetrics getPeer(Peer peer) {
+            return peers.computeIfAbsent(peer.getUrl(), k -> new StageMetrics());
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            for (String stage: STAGES) {
+                StageMetrics metrics = stages.get(stage);
+                if (metrics == null) continue;
+                builder.startObject(stage);
+                metrics.toXContent(builder, params);
+                builder.endObject();
+            }
+
+            builder.startObject("throughput")
+                    .field("blocksPerSecond", blocksRate.getRate())
+                    .field("bytesPerSecond", bytesRate.getRate())
+                    .endObject();
+
+            builder.startObject("peers");
+            for (Map.Entry<String, StageMetrics> entry: new TreeMap<>(peers).entrySet()) {
+                builder.startObject(entry.getKey()).startObject(STAGE_FETCH);
+                entry.getValue().toXContent(builder, params);
+                builder.endObject().endObject();
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    private static class StageMetrics implements ToXContent {
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder blocks = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        void onSuccess(long blockCount, long byteCount, long timeMs) {
+            count.increment();
+            blocks.add(blockCount);
+            bytes.add(byteCount);
+            latency.record(timeMs);
+        }
+
+        void onError(long timeMs) {
+            count.increment();
+            errors.increment();
+            latency.record(timeMs);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("count", count.sum())
+                    .field("errors", errors.sum())
+                    .field("blocks", blocks.sum())
+                    .field("bytes", bytes.sum());
+            builder.startObject("latency");
+            latency.toXContent(builder, params);
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    /**
+     * Latency histogram (in ms), using fixed buckets. Percentiles are the upper bound of their bucket.
+     */
+    protected static class LatencyHistogram implements ToXContent {
+        static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+        final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+        final LongAdder sum = new LongAdder();
+        final LongAdder count = new LongAdder();
+        volatile long max;
+
+        void record(long timeMs) {
+            int index = 0;
+            while (index < BOUNDS.length && timeMs > BOUNDS[index]) index++;
+            counts.incrementAndGet(index);
+            sum.add(timeMs);
+            count.increment();
+            if (timeMs > max) max = timeMs; // approximate, under concurrent writes
+        }
+
+        long getPercentile(double percent) {
+            long total = count.sum();
+            if (total == 0) return 0;
+            long threshold = (long) Math.ceil(total * percent / 100);
+            long cumulated = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulated += counts.get(i);
+                if (cumulated >= threshold) return Math.min(BOUNDS[i], max);
+            }
+            return max;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            long total = count.sum();
+            builder.field("mean", total > 0 ? sum.sum() / total : 0)
+                    .field("p50", getPercentile(50))
+                    .field("p90", getPercentile(90))
+                    .field("p99", getPercentile(99))
+                    .field("max", max);
+
+            builder.startObject("histogram");
+            for (int i = 0; i < BOUNDS.length; i++) {
+                builder.field("<=" + BOUNDS[i], counts.get(i));
+            }
+            builder.field(">" + BOUNDS[BOUNDS.length - 1], counts.get(BOUNDS.length));
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    /**
+     * Count events over a sliding window of one minute, using 5 seconds slots
+     */
+    protected static class RateMeter {
+        static final long SLOT_MS = 5000;
+        static final int SLOT_COUNT = 12;
+
+        final long[] slotTimes = new long[SLOT_COUNT];
+        final long[] slotValues = new long[SLOT_COUNT];
+
+        synchronized void mark(long value) {
+            long slotTime = System.currentTimeMillis() / SLOT_MS;
+            int index = (int) (slotTime % SLOT_COUNT);
+            if (slotTimes[index] != slotTime) {
+                slotTimes[index] = slotTime;
+                slotValues[index] = 0;
+            }
+            slotValues[index] += value;
+        }
+
+        synchronized double getRate() {
+            long slotTime = System.currentTimeMillis() / SLOT_MS;
+            long total = 0;
+            for (int i = 0; i < SLOT_COUNT; i++) {
+                if (slotTime - slotTimes[i] < SLOT_COUNT) {
+                    total += slotValues[i];
+                }
+            }
+            return (double) total * 1000 / (SLOT_MS * SLOT_COUNT);
+        }
+    }
+}
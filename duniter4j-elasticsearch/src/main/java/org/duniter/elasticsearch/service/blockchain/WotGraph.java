@@ -0,0 +1,259 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The web of trust of a currency, as a graph of primitive arrays.
+ * Each pubkey gets an ordinal (an int, never reused). Certifications are stored twice (as issued and as received),
+ * in adjacency arrays indexed by ordinal, with the time (medianTime) of the block where they were written.
+ */
+public class WotGraph {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_DEGREE = 4;
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] pubkeys = new String[INITIAL_CAPACITY];
+    private final BitSet members = new BitSet();
+    private int size = 0;
+
+    // Issued certifications
+    private int[][] certified = new int[INITIAL_CAPACITY][];
+    private long[][] certifiedTimes = new long[INITIAL_CAPACITY][];
+    private int[] certifiedCounts = new int[INITIAL_CAPACITY];
+
+    // Received certifications
+    private int[][] certifiers = new int[INITIAL_CAPACITY][];
+    private long[][] certifierTimes = new long[INITIAL_CAPACITY][];
+    private int[] certifierCounts = new int[INITIAL_CAPACITY];
+
+    // Last applied block
+    private int number = -1;
+    private long medianTime = 0;
+
+    public synchronized int getNumber() {
+        return number;
+    }
+
+    public synchronized long getMedianTime() {
+        return medianTime;
+    }
+
+    public synchronized void setBlock(int number, long medianTime) {
+        this.number = number;
+        this.medianTime = medianTime;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the ordinal of a pubkey, or -1 if unknown
+     */
+    public synchronized int getOrdinal(String pubkey) {
+        Integer ordinal = ordinals.get(pubkey);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public synchronized String getPubkey(int ordinal) {
+        return ordinal >= 0 && ordinal < size ? pubkeys[ordinal] : null;
+    }
+
+    public synchronized void setMember(String pubkey, boolean member) {
+        members.set(getOrCreateOrdinal(pubkey), member);
+    }
+
+    public synchronized boolean isMember(int ordinal) {
+        return ordinal >= 0 && members.get(ordinal);
+    }
+
+    public synchronized int getMembersCount() {
+        return members.cardinality();
+    }
+
+    /**
+     * Add (or renew) a certification
+     * @param time medianTime of the block where the certification was written
+     */
+    public synchronized void addCertification(String from, String to, long time) {
+        int fromOrdinal = getOrCreateOrdinal(from);
+        int toOrdinal = getOrCreateOrdinal(to);
+
+        // Renewal: update the time
+        int index = indexOf(certified[fromOrdinal], certifiedCounts[fromOrdinal], toOrdinal);
+        if (index != -1) {
+            certifiedTimes[fromOrdinal][index] = time;
+            certifierTimes[toOrdinal][indexOf(certifiers[toOrdinal], certifierCounts[toOrdinal], fromOrdinal)] = time;
+            return;
+        }
+
+        ensureDegree(certified, certifiedTimes, certifiedCounts, fromOrdinal);
+        certified[fromOrdinal][certifiedCounts[fromOrdinal]] = toOrdinal;
+        certifiedTimes[fromOrdinal][certifiedCounts[fromOrdinal]++] = time;
+
+        ensureDegree(certifiers, certifierTimes, certifierCounts, toOrdinal);
+        certifiers[toOrdinal][certifierCounts[toOrdinal]] = fromOrdinal;
+        certifierTimes[toOrdinal][certifierCounts[toOrdinal]++] = time;
+    }
+
+    /**
+     * @param minTime certifications written before this time are expired
+     * @return ordinals of the certifiers of <code>ordinal</code>
+     */
+    public synchronized int[] getCertifiers(int ordinal, long minTime) {
+        return filter(certifiers[ordinal], certifierTimes[ordinal], certifierCounts[ordinal], minTime);
+    }
+
+    /**
+     * @param minTime certifications written before this time are expired
+     * @return ordinals certified by <code>ordinal</code>
+     */
+    public synchronized int[] getCertified(int ordinal, long minTime) {
+        return filter(certified[ordinal], certifiedTimes[ordinal], certifiedCounts[ordinal], minTime);
+    }
+
+    /**
+     * @return time of the certification (medianTime of its block), or -1 if not exists
+     */
+    public synchronized long getCertificationTime(int fromOrdinal, int toOrdinal) {
+        int index = indexOf(certified[fromOrdinal], certifiedCounts[fromOrdinal], toOrdinal);
+        return index != -1 ? certifiedTimes[fromOrdinal][index] : -1;
+    }
+
+    /**
+     * A sentry is a member that has issued and received at least <code>ySentries</code> valid certifications
+     */
+    public synchronized boolean isSentry(int ordinal, int ySentries, long minTime) {
+        return members.get(ordinal)
+                && countValid(certifiedTimes[ordinal], certifiedCounts[ordinal], minTime) >= ySentries
+                && countValid(certifierTimes[ordinal], certifierCounts[ordinal], minTime) >= ySentries;
+    }
+
+    /**
+     * @return all sentries
+     */
+    public synchronized BitSet getSentries(int ySentries, long minTime) {
+        BitSet result = new BitSet(size);
+        for (int ordinal = members.nextSetBit(0); ordinal >= 0; ordinal = members.nextSetBit(ordinal + 1)) {
+            if (isSentry(ordinal, ySentries, minTime)) {
+                result.set(ordinal);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mark members that can reach <code>ordinal</code> in at most <code>stepMax</code> valid certifications
+     * (breadth-first search, following received certifications from members only)
+     */
+    public synchronized BitSet getReachable(int ordinal, int stepMax, long minTime) {
+        BitSet visited = new BitSet(size);
+        visited.set(ordinal);
+
+        int[] frontier = new int[]{ordinal};
+        int frontierSize = 1;
+        for (int step = 0; step < stepMax && frontierSize > 0; step++) {
+            int[] next = new int[INITIAL_CAPACITY];
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int node = frontier[i];
+                for (int j = 0; j < certifierCounts[node]; j++) {
+                    int certifier = certifiers[node][j];
+                    if (certifierTimes[node][j] < minTime || visited.get(certifier) || !members.get(certifier)) continue;
+                    visited.set(certifier);
+                    if (nextSize == next.length) next = Arrays.copyOf(next, nextSize * 2);
+                    next[nextSize++] = certifier;
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+        }
+
+        visited.clear(ordinal);
+        return visited;
+    }
+
+    /* -- Internal methods -- */
+
+    protected int getOrCreateOrdinal(String pubkey) {
+        Integer ordinal = ordinals.get(pubkey);
+        if (ordinal != null) return ordinal;
+
+        if (size == pubkeys.length) {
+            int capacity = size * 2;
+            pubkeys = Arrays.copyOf(pubkeys, capacity);
+            certified = Arrays.copyOf(certified, capacity);
+            certifiedTimes = Arrays.copyOf(certifiedTimes, capacity);
+            certifiedCounts = Arrays.copyOf(certifiedCounts, capacity);
+            certifiers = Arrays.copyOf(certifiers, capacity);
+            certifierTimes = Arrays.copyOf(certifierTimes, capacity);
+            certifierCounts = Arrays.copyOf(certifierCounts, capacity);
+        }
+
+        int newOrdinal = size++;
+        pubkeys[newOrdinal] = pubkey;
+        ordinals.put(pubkey, newOrdinal);
+        return newOrdinal;
+    }
+
+    private static void ensureDegree(int[][] adjacency, long[][] times, int[] counts, int ordinal) {
+        if (adjacency[ordinal] == null) {
+            adjacency[ordinal] = new int[INITIAL_DEGREE];
+            times[ordinal] = new long[INITIAL_DEGREE];
+        }
+        else if (counts[ordinal] == adjacency[ordinal].length) {
+            adjacency[ordinal] = Arrays.copyOf(adjacency[ordinal], counts[ordinal] * 2);
+            times[ordinal] = Arrays.copyOf(times[ordinal], counts[ordinal] * 2);
+        }
+    }
+
+    private static int indexOf(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static int[] filter(int[] values, long[] times, int count, long minTime) {
+        if (count == 0) return new int[0];
+        int[] result = new int[count];
+        int resultSize = 0;
+        for (int i = 0; i < count; i++) {
+            if (times[i] >= minTime) result[resultSize++] = values[i];
+        }
+        return resultSize == count ? result : Arrays.copyOf(result, resultSize);
+    }
+
+    private static int countValid(long[] times, int count, long minTime) {
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            if (times[i] >= minTime) result++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,315 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import com.google.gson.Gson;
+import org.duniter.core.client.model.bma.BlockchainBlock;
+import org.duniter.core.client.model.bma.BlockchainParameters;
+import org.duniter.core.client.model.bma.gson.GsonUtils;
+import org.duniter.core.util.StringUtils;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.service.AbstractService;
+import org.duniter.elasticsearch.service.BlockchainService;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keep the web of trust of each currency in memory (see WotGraph), built from indexed blocks
+ * (joiners, excluded and certifications), then updated block by block.
+ * On a fork rollback, the graph is dropped and rebuilt on next access.
+ */
+public class WotService extends AbstractService {
+
+    private static final String[] WOT_BLOCK_FIELDS = new String[]{
+            "number", "medianTime", "joiners", "excluded", "certifications"
+    };
+
+    private final BlockRepositoryService blockRepositoryService;
+    private final Gson gson;
+
+    private final Map<String, WotGraph> graphs = new ConcurrentHashMap<>();
+    private final Map<String, BlockchainParameters> parameters = new ConcurrentHashMap<>();
+
+    @Inject
+    public WotService(Client client, PluginSettings settings, BlockRepositoryService blockRepositoryService) {
+        super("duniter.blockchain", client, settings);
+        this.blockRepositoryService = blockRepositoryService;
+        this.gson = GsonUtils.newBuilder().create();
+    }
+
+    public boolean isEnable() {
+        return pluginSettings.isWotGraphEnable();
+    }
+
+    /**
+     * Get the graph of a currency (built on first call)
+     */
+    public WotGraph getGraph(String currencyName) {
+        WotGraph graph = graphs.get(currencyName);
+        if (graph != null) return graph;
+
+        synchronized (this) {
+            graph = graphs.get(currencyName);
+            if (graph == null) {
+                graph = loadGraph(currencyName);
+                graphs.put(currencyName, graph);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Get currency parameters (from the block #0)
+     * @return parameters, or null if block #0 is not indexed yet
+     */
+    public BlockchainParameters getParameters(String currencyName) {
+        BlockchainParameters result = parameters.get(currencyName);
+        if (result != null) return result;
+
+        BlockchainBlock block = blockRepositoryService.getBlockHeader(currencyName, 0);
+        if (block == null || StringUtils.isBlank(block.getParameters())) return null;
+        result = parseParameters(currencyName, block.getParameters());
+        parameters.put(currencyName, result);
+        return result;
+    }
+
+    /**
+     * Apply indexed blocks to the graph, up to <code>toNumber</code> (only if the graph has been loaded)
+     */
+    public synchronized void updateGraph(String currencyName, int toNumber) {
+        WotGraph graph = graphs.get(currencyName);
+        if (graph == null || graph.getNumber() >= toNumber) return;
+
+        int number = graph.getNumber();
+        int batchSize = pluginSettings.getIndexBulkSize();
+        while (number < toNumber) {
+            int count = Math.min(batchSize, toNumber - number);
+            int[] numbers = new int[count];
+            for (int i = 0; i < count; i++) {
+                numbers[i] = number + 1 + i;
+            }
+
+            List<BlockchainBlock> blocks = blockRepositoryService.getBlocks(currencyName, numbers);
+            for (BlockchainBlock block: blocks) {
+                // Block not indexed yet: stop here (blocks must be applied in order)
+                if (block == null) return;
+                applyBlock(graph, block);
+                number = block.getNumber();
+            }
+        }
+    }
+
+    /**
+     * Drop the graph if it contains blocks from <code>fromNumber</code> (e.g. on a fork)
+     */
+    public synchronized void invalidate(String currencyName, int fromNumber) {
+        WotGraph graph = graphs.get(currencyName);
+        if (graph != null && graph.getNumber() >= fromNumber) {
+            graphs.remove(currencyName);
+        }
+        if (fromNumber == 0) {
+            parameters.remove(currencyName);
+        }
+    }
+
+    public synchronized void clearCache(String currencyName) {
+        graphs.remove(currencyName);
+        parameters.remove(currencyName);
+    }
+
+    /**
+     * @return the min time of a valid certification (older certifications are expired)
+     */
+    public long getMinCertificationTime(String currencyName) {
+        BlockchainParameters params = getParameters(currencyName);
+        WotGraph graph = getGraph(currencyName);
+        if (params == null || params.getSigValidity() == null) return 0;
+        return graph.getMedianTime() - params.getSigValidity();
+    }
+
+    /**
+     * @return the number of certifications (issued and received) needed to be a sentry: ceil(N^(1/stepMax))
+     */
+    public int getYSentries(String currencyName) {
+        int stepMax = getStepMax(currencyName);
+        int membersCount = getGraph(currencyName).getMembersCount();
+        return (int) Math.ceil(Math.pow(membersCount, 1.0 / stepMax));
+    }
+
+    /**
+     * Check the distance rule: at least <code>xpercent</code> of sentries must reach the pubkey
+     * in at most <code>stepMax</code> steps
+     * @return the result, or null if the pubkey is unknown
+     */
+    public Distance getDistance(String currencyName, String pubkey) {
+        WotGraph graph = getGraph(currencyName);
+        int ordinal = graph.getOrdinal(pubkey);
+        if (ordinal == -1) return null;
+
+        BlockchainParameters params = getParameters(currencyName);
+        double xpercent = params != null && params.getXpercent() != null ? params.getXpercent() : 0.8;
+        int stepMax = getStepMax(currencyName);
+        long minTime = getMinCertificationTime(currencyName);
+
+        BitSet sentries = graph.getSentries(getYSentries(currencyName), minTime);
+        sentries.clear(ordinal); // the pubkey itself is not counted
+        BitSet reached = graph.getReachable(ordinal, stepMax, minTime);
+        reached.and(sentries);
+
+        Distance result = new Distance();
+        result.sentries = sentries.cardinality();
+        result.reached = reached.cardinality();
+        result.xpercent = xpercent;
+        result.stepMax = stepMax;
+        result.outdistanced = result.reached < Math.floor(xpercent * result.sentries);
+        return result;
+    }
+
+    /* -- Internal methods -- */
+
+    protected int getStepMax(String currencyName) {
+        BlockchainParameters params = getParameters(currencyName);
+        return params != null && params.getStepMax() != null ? params.getStepMax() : 5;
+    }
+
+    /**
+     * Build the graph, reading all indexed blocks (only fields need)
+     */
+    protected WotGraph loadGraph(String currencyName) {
+        long timeStart = System.currentTimeMillis();
+        WotGraph graph = new WotGraph();
+
+        // Make sure all blocks are visible to search
+        client.admin().indices().prepareRefresh(currencyName).get();
+
+        TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(BlockchainService.BLOCK_TYPE)
+                .setFetchSource(WOT_BLOCK_FIELDS, null)
+                .addSort("number", SortOrder.ASC)
+                .setSize(pluginSettings.getIndexBulkSize())
+                .setScroll(scrollTimeout)
+                .get();
+        while (response.getHits().getHits().length > 0) {
+            for (SearchHit hit: response.getHits().getHits()) {
+                if (BlockchainService.CURRENT_BLOCK_ID.equals(hit.getId())) continue;
+                BlockchainBlock block = gson.fromJson(hit.getSourceAsString(), BlockchainBlock.class);
+                // Stop at the first missing block (next blocks will be applied by updateGraph)
+                if (block.getNumber() != graph.getNumber() + 1) {
+                    logger.warn(String.format("[%s] Block #%s not indexed: WoT graph loaded up to block #%s", currencyName, graph.getNumber() + 1, graph.getNumber()));
+                    client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+                    return graph;
+                }
+                applyBlock(graph, block);
+            }
+            response = client.prepareSearchScroll(response.getScrollId())
+                    .setScroll(scrollTimeout)
+                    .get();
+        }
+        client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+
+        logger.info(String.format("[%s] WoT graph loaded (%s members, %s identities) up to block #%s, in %s ms", currencyName,
+                graph.getMembersCount(), graph.size(), graph.getNumber(), System.currentTimeMillis() - timeStart));
+        return graph;
+    }
+
+    protected void applyBlock(WotGraph graph, BlockchainBlock block) {
+        if (block.getJoiners() != null) {
+            for (BlockchainBlock.Joiner joiner: block.getJoiners()) {
+                graph.setMember(joiner.getPublicKey(), true);
+            }
+        }
+        if (block.getExcluded() != null) {
+            for (String pubkey: block.getExcluded()) {
+                graph.setMember(pubkey, false);
+            }
+        }
+
+        long medianTime = block.getMedianTime() != null ? block.getMedianTime() : graph.getMedianTime();
+        if (block.getCertifications() != null) {
+            for (String certification: block.getCertifications()) {
+                // Format: 'from:to:blockNumber:signature'
+                String[] parts = certification.split(":");
+                if (parts.length == 4) {
+                    graph.addCertification(parts[0], parts[1], medianTime);
+                }
+            }
+        }
+
+        graph.setBlock(block.getNumber(), medianTime);
+    }
+
+    /**
+     * Parse currency parameters, from the block #0 field 'parameters'
+     * (c:dt:ud0:sigPeriod:sigStock:sigWindow:sigValidity:sigQty:idtyWindow:msWindow:xpercent:msValidity:stepMax:medianTimeBlocks:avgGenTime:dtDiffEval:blocksRot:percentRot)
+     */
+    protected BlockchainParameters parseParameters(String currencyName, String value) {
+        String[] parts = value.split(":");
+        BlockchainParameters result = new BlockchainParameters();
+        result.setCurrency(currencyName);
+        try {
+            int i = 0;
+            if (parts.length > i) result.setC(Double.parseDouble(parts[i++]));
+            if (parts.length > i) result.setDt(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setUd0(Long.parseLong(parts[i++]));
+            if (parts.length > i) result.setSigPeriod(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setSigStock(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setSigWindow(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setSigValidity(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setSigQty(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setIdtyWindow(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setMsWindow(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setXpercent(Double.parseDouble(parts[i++]));
+            if (parts.length > i) result.setMsValidity(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setStepMax(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setMedianTimeBlocks(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setAvgGenTime(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setDtDiffEval(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setBlocksRot(Integer.parseInt(parts[i++]));
+            if (parts.length > i) result.setPercentRot(Double.parseDouble(parts[i++]));
+        }
+        catch(NumberFormatException e) {
+            logger.warn(String.format("[%s] Invalid currency parameters [%s]: %s", currencyName, value, e.getMessage()));
+        }
+        return result;
+    }
+
+    /**
+     * Result of a distance rule check
+     */
+    public static class Distance {
+        public int sentries;
+        public int reached;
+        public double xpercent;
+        public int stepMax;
+        public boolean outdistanced;
+    }
+}
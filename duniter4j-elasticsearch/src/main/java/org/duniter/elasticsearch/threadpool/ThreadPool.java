@@ -148,6 +148,28 @@ public class ThreadPool extends AbstractLifecycleComponent<ThreadPool> {
         return scheduler.scheduleWithFixedDelay(new LoggingRunnable(command), interval.millis(), interval.millis(), TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Create a new fixed size executor, using daemon threads. The caller is responsible for its shutdown.
+     *
+     * @param name the threads name
+     * @param poolSize the number of threads
+     * @return a new executor service
+     */
+    public ExecutorService newFixedThreadPool(String name, int poolSize) {
+        Preconditions.checkArgument(poolSize > 0);
+        return Executors.newFixedThreadPool(poolSize, EsExecutors.daemonThreadFactory(settings, name));
+    }
+
+    /**
+     * Create a new executor that reuses idle threads (stopped after 60s), using daemon threads.
+     * The caller is responsible for its shutdown.
+     *
+     * @param name the threads name
+     * @return a new executor service
+     */
+    public ExecutorService newCachedThreadPool(String name) {
+        return Executors.newCachedThreadPool(EsExecutors.daemonThreadFactory(settings, name));
+    }
 
     /* -- protected methods  -- */
 
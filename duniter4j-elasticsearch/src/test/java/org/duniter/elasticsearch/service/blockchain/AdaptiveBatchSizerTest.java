@@ -0,0 +1,104 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.local.Peer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+
+    private static final int MIN_SIZE = 10;
+    private static final int MAX_SIZE = 1000;
+
+    // Target: 1 MB or 1 s per response
+    private final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, MIN_SIZE, MAX_SIZE, 1000000, 1000);
+
+    private final Peer peer = new Peer("localhost", 10901);
+
+    @Test
+    public void initialSize() {
+        Assert.assertEquals(100, sizer.getBatchSize(peer));
+
+        // Out of bounds
+        Assert.assertEquals(MIN_SIZE, new AdaptiveBatchSizer(1, MIN_SIZE, MAX_SIZE, 1000000, 1000).getBatchSize(peer));
+        Assert.assertEquals(MAX_SIZE, new AdaptiveBatchSizer(5000, MIN_SIZE, MAX_SIZE, 1000000, 1000).getBatchSize(peer));
+    }
+
+    @Test
+    public void grow() {
+        // Small and fast blocks (1 KB, 1 ms): size doubles on each response, up to the max size
+        sizer.onSuccess(peer, 100, 100 * 1000, 100);
+        Assert.assertEquals(200, sizer.getBatchSize(peer));
+        sizer.onSuccess(peer, 200, 200 * 1000, 200);
+        Assert.assertEquals(400, sizer.getBatchSize(peer));
+
+        for (int i = 0; i < 10; i++) {
+            int size = sizer.getBatchSize(peer);
+            sizer.onSuccess(peer, size, size * 1000L, size);
+        }
+        Assert.assertEquals(MAX_SIZE, sizer.getBatchSize(peer));
+    }
+
+    @Test
+    public void shrink() {
+        // Large blocks (50 KB): 1 MB target gives 20 blocks
+        sizer.onSuccess(peer, 100, 100 * 50000, 100);
+        Assert.assertEquals(20, sizer.getBatchSize(peer));
+
+        // Very large and slow blocks: never under the min size
+        for (int i = 0; i < 10; i++) {
+            sizer.onSuccess(peer, 10, 10 * 1000000, 10 * 1000);
+        }
+        Assert.assertEquals(MIN_SIZE, sizer.getBatchSize(peer));
+    }
+
+    @Test
+    public void shrinkOnSlowPeer() {
+        // Small blocks, but 100 ms per block: 1 s target gives 10 blocks
+        sizer.onSuccess(peer, 100, 100 * 1000, 100 * 100);
+        Assert.assertEquals(MIN_SIZE, sizer.getBatchSize(peer));
+    }
+
+    @Test
+    public void failure() {
+        sizer.onFailure(peer);
+        Assert.assertEquals(50, sizer.getBatchSize(peer));
+        sizer.onFailure(peer);
+        sizer.onFailure(peer);
+        Assert.assertEquals(12, sizer.getBatchSize(peer));
+
+        // Never under the min size
+        sizer.onFailure(peer);
+        sizer.onFailure(peer);
+        Assert.assertEquals(MIN_SIZE, sizer.getBatchSize(peer));
+
+        // Other peers are not affected
+        Assert.assertEquals(100, sizer.getBatchSize(new Peer("otherhost", 10901)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBounds() {
+        new AdaptiveBatchSizer(100, 100, 10, 1000000, 1000);
+    }
+}
@@ -0,0 +1,201 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.bma.BlockchainBlock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class BalanceLedgerTest {
+
+    private static final String CONDITION = "SIG(A) && XHX(1234)";
+
+    private Set<String> members;
+    private BlockchainBlock block1;
+    private BlockchainBlock block2;
+    private BlockchainBlock block3;
+
+    @Before
+    public void setUp() {
+        members = new HashSet<>();
+
+        // #1: A and B join, then a dividend of 100
+        block1 = createBlock(1);
+        block1.setJoiners(new BlockchainBlock.Joiner[]{createJoiner("A"), createJoiner("B")});
+        block1.setDividend(BigInteger.valueOf(100));
+        block1.setUnitBase(0);
+
+        // #2: A spends its dividend (D input) to C (SIG output) and to a condition (non-SIG output)
+        block2 = createBlock(2);
+        block2.setTransactions(new BlockchainBlock.Transaction[]{
+                createTransaction(block2, "TX1", new String[]{"A"},
+                        new String[]{"100:0:D:A:1"},
+                        new String[]{"0:SIG(0)"},
+                        new String[]{"60:0:SIG(C)", "40:0:" + CONDITION})
+        });
+
+        // #3: B and C spend both outputs (T inputs) to B
+        block3 = createBlock(3);
+        block3.setTransactions(new BlockchainBlock.Transaction[]{
+                createTransaction(block3, "TX2", new String[]{"B", "C"},
+                        new String[]{"40:0:T:TX1:1", "60:0:T:TX1:0"},
+                        new String[]{"0:XHX(5678)", "1:SIG(1)"},
+                        new String[]{"100:0:SIG(B)"})
+        });
+    }
+
+    @Test
+    public void applyBlocks() {
+        BalanceLedger ledger = new BalanceLedger(members);
+        ledger.applyBlock(block1);
+        ledger.applyBlock(block2);
+
+        Assert.assertEquals(0, getAmount(ledger, "A"));
+        Assert.assertEquals(100, getAmount(ledger, "B"));
+        Assert.assertEquals(60, getAmount(ledger, "C"));
+        Assert.assertEquals(40, getAmount(ledger, CONDITION));
+        Assert.assertEquals(1, ledger.getDeltas().get("A").getUdCount());
+        Assert.assertEquals(2, ledger.getDeltas().get("A").getBlockNumber());
+        Assert.assertTrue(ledger.getAddedSources().containsKey("TX1:1"));
+        Assert.assertEquals(CONDITION, ledger.getAddedSources().get("TX1:1").getCondition());
+
+        // Spend the condition output, in the same batch
+        ledger.applyBlock(block3);
+        Assert.assertEquals(0, getAmount(ledger, CONDITION));
+        Assert.assertEquals(0, getAmount(ledger, "C"));
+        Assert.assertEquals(200, getAmount(ledger, "B"));
+        Assert.assertEquals(200, getTotal(ledger));
+    }
+
+    @Test
+    public void applyWithLoadedSources() {
+        BalanceLedger ledger = new BalanceLedger(members);
+        ledger.applyBlock(block1);
+        ledger.applyBlock(block2);
+        Assert.assertEquals(2, BalanceLedger.getSourceRefs(block3).size());
+
+        // Next batch: the condition source is loaded from the index
+        BalanceLedger nextLedger = new BalanceLedger(members);
+        nextLedger.addSources(ledger.getAddedSources());
+        nextLedger.applyBlock(block3);
+
+        Assert.assertEquals(-40, getAmount(nextLedger, CONDITION));
+        Assert.assertEquals(-60, getAmount(nextLedger, "C"));
+        Assert.assertEquals(100, getAmount(nextLedger, "B"));
+        Assert.assertEquals(0, getAmount(nextLedger, "A"));
+    }
+
+    @Test
+    public void revertBlocks() {
+        BalanceLedger ledger = new BalanceLedger(members);
+        ledger.applyBlock(block1);
+        ledger.applyBlock(block2);
+        ledger.applyBlock(block3);
+
+        // Revert all blocks, in reverse order (sources loaded from the index)
+        BalanceLedger revertLedger = new BalanceLedger(members);
+        revertLedger.addSources(ledger.getAddedSources());
+        revertLedger.revertBlock(block3);
+        revertLedger.revertBlock(block2);
+        revertLedger.revertBlock(block1);
+
+        for (String account : new String[]{"A", "B", "C", CONDITION}) {
+            Assert.assertEquals(account, -getAmount(ledger, account), getAmount(revertLedger, account));
+        }
+        Assert.assertEquals(-1, revertLedger.getDeltas().get("A").getUdCount());
+        Assert.assertEquals(0, revertLedger.getDeltas().get("A").getBlockNumber());
+        Assert.assertTrue(members.isEmpty());
+        Assert.assertTrue(revertLedger.getRemovedSources().contains("TX1:1"));
+        Assert.assertTrue(revertLedger.getAddedSources().isEmpty());
+    }
+
+    @Test
+    public void conditionWithoutTxHash() {
+        block2.getTransactions()[0].setHash(null);
+
+        BalanceLedger ledger = new BalanceLedger(members);
+        ledger.applyBlock(block1);
+        ledger.applyBlock(block2);
+
+        // Money is kept on the condition, even if the source could not be stored
+        Assert.assertEquals(40, getAmount(ledger, CONDITION));
+        Assert.assertEquals(200, getTotal(ledger));
+        Assert.assertTrue(ledger.getAddedSources().isEmpty());
+    }
+
+    @Test
+    public void accountId() {
+        Assert.assertEquals("A", BalanceLedger.getAccountId("A"));
+        Assert.assertFalse(BalanceLedger.isCondition("A"));
+        Assert.assertTrue(BalanceLedger.isCondition(CONDITION));
+
+        String id = BalanceLedger.getAccountId(CONDITION);
+        Assert.assertNotEquals(CONDITION, id);
+        Assert.assertEquals(id, BalanceLedger.getAccountId(CONDITION));
+    }
+
+    /* -- Internal methods -- */
+
+    private long getAmount(BalanceLedger ledger, String account) {
+        BalanceLedger.Delta delta = ledger.getDeltas().get(account);
+        return delta != null ? delta.getAmount() : 0;
+    }
+
+    private long getTotal(BalanceLedger ledger) {
+        long total = 0;
+        for (Map.Entry<String, BalanceLedger.Delta> entry : ledger.getDeltas().entrySet()) {
+            total += entry.getValue().getAmount();
+        }
+        return total;
+    }
+
+    private BlockchainBlock createBlock(int number) {
+        BlockchainBlock block = new BlockchainBlock();
+        block.setNumber(number);
+        block.setHash("HASH" + number);
+        return block;
+    }
+
+    private BlockchainBlock.Joiner createJoiner(String pubkey) {
+        BlockchainBlock.Joiner joiner = new BlockchainBlock.Joiner();
+        joiner.setPublicKey(pubkey);
+        return joiner;
+    }
+
+    private BlockchainBlock.Transaction createTransaction(BlockchainBlock block, String hash, String[] issuers,
+                                                         String[] inputs, String[] unlocks, String[] outputs) {
+        BlockchainBlock.Transaction tx = block.new Transaction();
+        tx.setHash(hash);
+        tx.setIssuers(issuers);
+        tx.setInputs(inputs);
+        tx.setUnlocks(unlocks);
+        tx.setOutputs(outputs);
+        return tx;
+    }
+}
@@ -0,0 +1,115 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockHashRingTest {
+
+    private static final String HASH_A = "00000A4C2B2A6AFA3C5B2A4F30D4B70A1CDB5F12EAAF3D0E1C8A5E67A2B9EA35";
+    private static final String HASH_B = "000005B64C1F0E6B5D8E8B9AE7A1C6D9E4F0B1A2C3D4E5F60718293A4B5C6D7E";
+
+    @Test
+    public void putAndGet() {
+        BlockHashRing ring = new BlockHashRing(10);
+        ring.put(3, HASH_A);
+
+        Assert.assertTrue(ring.contains(3));
+        Assert.assertEquals(HASH_A, ring.getHash(3));
+        Assert.assertTrue(ring.isSameHash(3, HASH_A));
+        Assert.assertTrue(ring.isSameHash(3, HASH_A.toLowerCase()));
+        Assert.assertFalse(ring.isSameHash(3, HASH_B));
+        Assert.assertFalse(ring.isSameHash(3, "invalid"));
+
+        // Unknown blocks
+        Assert.assertNull(ring.getHash(4));
+        Assert.assertNull(ring.isSameHash(4, HASH_A));
+        Assert.assertNull(ring.getHash(-1));
+    }
+
+    @Test
+    public void wrapAround() {
+        BlockHashRing ring = new BlockHashRing(10);
+        ring.put(5, HASH_A);
+
+        // Same slot (15 % 10): the oldest block is evicted
+        ring.put(15, HASH_B);
+        Assert.assertFalse(ring.contains(5));
+        Assert.assertNull(ring.isSameHash(5, HASH_A));
+        Assert.assertEquals(HASH_B, ring.getHash(15));
+
+        // An older block never evicts a more recent one
+        ring.put(5, HASH_A);
+        Assert.assertFalse(ring.contains(5));
+        Assert.assertEquals(HASH_B, ring.getHash(15));
+    }
+
+    @Test
+    public void keepLastBlocks() {
+        BlockHashRing ring = new BlockHashRing(10);
+        for (int number = 0; number < 25; number++) {
+            ring.put(number, HASH_A);
+        }
+
+        // Only the last 10 blocks are kept
+        for (int number = 0; number < 15; number++) {
+            Assert.assertFalse(ring.contains(number));
+        }
+        for (int number = 15; number < 25; number++) {
+            Assert.assertTrue(ring.contains(number));
+        }
+    }
+
+    @Test
+    public void remove() {
+        BlockHashRing ring = new BlockHashRing(10);
+        for (int number = 0; number < 10; number++) {
+            ring.put(number, HASH_A);
+        }
+
+        // Removing an evicted block has no effect on the slot
+        ring.remove(13);
+        Assert.assertTrue(ring.contains(3));
+
+        ring.remove(3);
+        Assert.assertFalse(ring.contains(3));
+
+        // An invalid hash removes the block
+        ring.put(4, null);
+        Assert.assertFalse(ring.contains(4));
+
+        ring.removeFrom(7);
+        Assert.assertTrue(ring.contains(6));
+        Assert.assertFalse(ring.contains(7));
+        Assert.assertFalse(ring.contains(9));
+
+        ring.clear();
+        Assert.assertFalse(ring.contains(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacity() {
+        new BlockHashRing(0);
+    }
+}
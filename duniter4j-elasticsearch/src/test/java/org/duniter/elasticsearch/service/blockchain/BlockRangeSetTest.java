@@ -0,0 +1,112 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class BlockRangeSetTest {
+
+    @Test
+    public void addAdjacent() {
+        BlockRangeSet set = new BlockRangeSet();
+        set.add(5);
+        set.add(6);
+        set.add(3, 4);
+        set.add(8);
+
+        Assert.assertEquals(Arrays.asList("3-6", "8"), set.toStrings());
+        Assert.assertEquals(5, set.size());
+
+        // Fill the gap: all ranges are merged
+        set.add(7);
+        Assert.assertEquals(Arrays.asList("3-8"), set.toStrings());
+    }
+
+    @Test
+    public void addOverlapping() {
+        BlockRangeSet set = new BlockRangeSet();
+        set.add(10, 20);
+        set.add(15, 25);
+        set.add(0, 2);
+        set.add(30, 40);
+        Assert.assertEquals(Arrays.asList("0-2", "10-25", "30-40"), set.toStrings());
+
+        // Cover many ranges
+        set.add(1, 35);
+        Assert.assertEquals(Arrays.asList("0-40"), set.toStrings());
+        Assert.assertEquals(41, set.size());
+
+        // Already included
+        set.add(5, 6);
+        Assert.assertEquals(Arrays.asList("0-40"), set.toStrings());
+    }
+
+    @Test
+    public void removeSplit() {
+        BlockRangeSet set = new BlockRangeSet();
+        set.add(0, 10);
+
+        set.remove(5);
+        Assert.assertEquals(Arrays.asList("0-4", "6-10"), set.toStrings());
+        Assert.assertFalse(set.contains(5));
+        Assert.assertTrue(set.contains(4));
+        Assert.assertTrue(set.contains(6));
+
+        set.remove(7, 8);
+        Assert.assertEquals(Arrays.asList("0-4", "6", "9-10"), set.toStrings());
+
+        // Bounds of ranges
+        set.remove(0);
+        set.remove(10);
+        Assert.assertEquals(Arrays.asList("1-4", "6", "9"), set.toStrings());
+    }
+
+    @Test
+    public void removeOverlapping() {
+        BlockRangeSet set = BlockRangeSet.parse(Arrays.asList("0-10", "20-30", "40-50"));
+
+        set.remove(5, 45);
+        Assert.assertEquals(Arrays.asList("0-4", "46-50"), set.toStrings());
+
+        BlockRangeSet other = BlockRangeSet.parse(Arrays.asList("0-1", "48"));
+        set.removeAll(other);
+        Assert.assertEquals(Arrays.asList("2-4", "46-47", "49-50"), set.toStrings());
+
+        set.remove(0, Integer.MAX_VALUE);
+        Assert.assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void parse() {
+        BlockRangeSet set = BlockRangeSet.parse(Arrays.asList("12", " 3-5 ", "4-8", "invalid", "9-1"));
+        Assert.assertEquals(Arrays.asList("3-8", "12"), set.toStrings());
+
+        Assert.assertTrue(BlockRangeSet.parse(null).isEmpty());
+
+        int[] range = set.getRanges().get(0);
+        Assert.assertArrayEquals(new int[]{3, 8}, range);
+    }
+}
@@ -0,0 +1,141 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class BlockSnapshotTest {
+
+    private static final String CURRENCY = "test_net";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("duniter4j-snapshot", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void writeThenRead() throws IOException {
+        // 25 blocks, in chunks of 10 blocks (the last chunk is not full)
+        try (BlockSnapshotWriter writer = new BlockSnapshotWriter(file, CURRENCY, 10)) {
+            for (int number = 0; number < 25; number++) {
+                writer.add(number, createBlockJson(number));
+            }
+            Assert.assertEquals(24, writer.getLastNumber());
+        }
+
+        try (BlockSnapshotReader reader = new BlockSnapshotReader(file)) {
+            Assert.assertEquals(CURRENCY, reader.getCurrency());
+            Assert.assertEquals(3, reader.getChunkCount());
+            Assert.assertEquals(0, reader.getFirstNumber());
+            Assert.assertEquals(24, reader.getLastNumber());
+
+            Assert.assertEquals(0, reader.getChunkIndex(9));
+            Assert.assertEquals(1, reader.getChunkIndex(10));
+            Assert.assertEquals(2, reader.getChunkIndex(24));
+            Assert.assertEquals(-1, reader.getChunkIndex(25));
+
+            BlockSnapshotReader.Chunk chunk = reader.getChunk(2);
+            Assert.assertEquals(20, chunk.firstNumber);
+            Assert.assertEquals(5, chunk.size());
+
+            for (int number = 0; number < 25; number++) {
+                Assert.assertEquals(createBlockJson(number), reader.getBlockAsJson(number));
+            }
+            Assert.assertNull(reader.getBlockAsJson(25));
+        }
+    }
+
+    @Test
+    public void writeEmpty() throws IOException {
+        new BlockSnapshotWriter(file, CURRENCY, 10).close();
+
+        try (BlockSnapshotReader reader = new BlockSnapshotReader(file)) {
+            Assert.assertEquals(0, reader.getChunkCount());
+            Assert.assertEquals(-1, reader.getFirstNumber());
+            Assert.assertEquals(-1, reader.getLastNumber());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writeWithGap() throws IOException {
+        try (BlockSnapshotWriter writer = new BlockSnapshotWriter(file, CURRENCY, 10)) {
+            writer.add(0, createBlockJson(0));
+            writer.add(2, createBlockJson(2));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedFooter() throws IOException {
+        try (BlockSnapshotWriter writer = new BlockSnapshotWriter(file, CURRENCY, 10)) {
+            for (int number = 0; number < 5; number++) {
+                writer.add(number, createBlockJson(number));
+            }
+        }
+
+        // Overwrite the footer magic number
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 4);
+            raf.writeInt(0);
+        }
+
+        new BlockSnapshotReader(file).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFile() throws IOException {
+        try (BlockSnapshotWriter writer = new BlockSnapshotWriter(file, CURRENCY, 10)) {
+            for (int number = 0; number < 5; number++) {
+                writer.add(number, createBlockJson(number));
+            }
+        }
+
+        // Remove the footer (e.g. an interrupted export)
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 12);
+        }
+
+        new BlockSnapshotReader(file).close();
+    }
+
+    /* -- internal methods -- */
+
+    private String createBlockJson(int number) {
+        return String.format("{\"currency\":\"%s\",\"number\":%s,\"hash\":\"HASH%s\"}", CURRENCY, number, number);
+    }
+}
@@ -0,0 +1,149 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * Duniter4j :: ElasticSearch Plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class WotGraphTest {
+
+    private WotGraph graph;
+
+    @Before
+    public void setUp() {
+        // A chain of members: A <- B <- C <- D (B certifies A, C certifies B, ...), and E that is not a member
+        graph = new WotGraph();
+        for (String pubkey : new String[]{"A", "B", "C", "D"}) {
+            graph.setMember(pubkey, true);
+        }
+        graph.setMember("E", false);
+        graph.addCertification("B", "A", 100);
+        graph.addCertification("C", "B", 100);
+        graph.addCertification("D", "C", 100);
+        graph.addCertification("E", "D", 100);
+    }
+
+    @Test
+    public void ordinals() {
+        Assert.assertEquals(5, graph.size());
+        Assert.assertEquals(4, graph.getMembersCount());
+        Assert.assertEquals(0, graph.getOrdinal("A"));
+        Assert.assertEquals("E", graph.getPubkey(4));
+        Assert.assertEquals(-1, graph.getOrdinal("unknown"));
+        Assert.assertNull(graph.getPubkey(5));
+        Assert.assertFalse(graph.isMember(graph.getOrdinal("E")));
+    }
+
+    @Test
+    public void certifications() {
+        int a = graph.getOrdinal("A");
+        int b = graph.getOrdinal("B");
+
+        Assert.assertArrayEquals(new int[]{b}, graph.getCertifiers(a, 0));
+        Assert.assertArrayEquals(new int[]{a}, graph.getCertified(b, 0));
+        Assert.assertEquals(100, graph.getCertificationTime(b, a));
+        Assert.assertEquals(-1, graph.getCertificationTime(a, b));
+
+        // Expired
+        Assert.assertEquals(0, graph.getCertifiers(a, 101).length);
+
+        // Renewal: time is updated, not duplicated
+        graph.addCertification("B", "A", 200);
+        Assert.assertEquals(200, graph.getCertificationTime(b, a));
+        Assert.assertArrayEquals(new int[]{b}, graph.getCertifiers(a, 101));
+    }
+
+    @Test
+    public void reachable() {
+        int a = graph.getOrdinal("A");
+
+        // Distance 1: only B
+        BitSet reachable = graph.getReachable(a, 1, 0);
+        Assert.assertEquals(1, reachable.cardinality());
+        Assert.assertTrue(reachable.get(graph.getOrdinal("B")));
+
+        // Distance 3: B, C and D (E is not a member, and A itself is excluded)
+        reachable = graph.getReachable(a, 3, 0);
+        Assert.assertEquals(3, reachable.cardinality());
+        Assert.assertTrue(reachable.get(graph.getOrdinal("D")));
+        Assert.assertFalse(reachable.get(graph.getOrdinal("E")));
+        Assert.assertFalse(reachable.get(a));
+
+        // An expired certification breaks the path
+        graph.addCertification("C", "B", 50);
+        reachable = graph.getReachable(a, 3, 60);
+        Assert.assertEquals(1, reachable.cardinality());
+        Assert.assertTrue(reachable.get(graph.getOrdinal("B")));
+    }
+
+    @Test
+    public void reachableWithCycle() {
+        graph.addCertification("A", "D", 100);
+        int a = graph.getOrdinal("A");
+
+        BitSet reachable = graph.getReachable(a, 10, 0);
+        Assert.assertEquals(3, reachable.cardinality());
+    }
+
+    @Test
+    public void sentries() {
+        // B, C and D have issued and received a certification (D received it from a non-member, but it still counts)
+        BitSet sentries = graph.getSentries(1, 0);
+        Assert.assertEquals(3, sentries.cardinality());
+        Assert.assertFalse(sentries.get(graph.getOrdinal("A")));
+        Assert.assertTrue(sentries.get(graph.getOrdinal("B")));
+        Assert.assertTrue(sentries.get(graph.getOrdinal("D")));
+
+        // Both issued and received certifications must reach ySentries
+        graph.addCertification("D", "A", 100);
+        Assert.assertFalse(graph.isSentry(graph.getOrdinal("D"), 2, 0));
+        graph.addCertification("B", "D", 100);
+        Assert.assertTrue(graph.isSentry(graph.getOrdinal("D"), 2, 0));
+
+        // A non-member is never a sentry
+        graph.addCertification("A", "E", 100);
+        Assert.assertFalse(graph.isSentry(graph.getOrdinal("E"), 1, 0));
+
+        // Expired certifications are not counted
+        Assert.assertEquals(0, graph.getSentries(1, 101).cardinality());
+
+        // Membership loss
+        graph.setMember("B", false);
+        Assert.assertFalse(graph.getSentries(1, 0).get(graph.getOrdinal("B")));
+    }
+
+    @Test
+    public void grow() {
+        // More pubkeys and certifications than the initial capacities
+        for (int i = 0; i < 3000; i++) {
+            graph.setMember("M" + i, true);
+            graph.addCertification("M" + i, "A", 100);
+        }
+        Assert.assertEquals(3005, graph.size());
+        Assert.assertEquals(3001, graph.getCertifiers(graph.getOrdinal("A"), 0).length);
+        Assert.assertEquals(3001, graph.getReachable(graph.getOrdinal("A"), 1, 0).cardinality());
+    }
+}